@@ -0,0 +1,66 @@
+package com.equitrack.benchmark;
+
+import com.equitrack.model.Transaction;
+import com.equitrack.service.PositionService;
+import com.equitrack.service.ShardedTransactionProcessor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-batch replay through {@link PositionService#processTransactions} and the sharded processor
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class BatchProcessingBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    @Param({"0.3"})
+    private double updateRatio;
+
+    @Param({"0.05"})
+    private double cancelRatio;
+
+    @Param({"0.01"})
+    private double outOfOrderRate;
+
+    private List<Transaction> batch;
+    private PositionService engine;
+    private ShardedTransactionProcessor sharded;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        batch = new WorkloadGenerator(10_000, 1.0, updateRatio, cancelRatio, outOfOrderRate, 42).generate(size);
+        engine = new PositionService();
+        sharded = new ShardedTransactionProcessor(engine, 0, 16, 0);
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        engine.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        sharded.shutdown();
+    }
+
+    @Benchmark
+    public PositionService processTransactions() {
+        engine.processTransactions(batch);
+        return engine;
+    }
+
+    @Benchmark
+    public PositionService processTransactionsSharded() {
+        sharded.processTransactions(batch);
+        return engine;
+    }
+}
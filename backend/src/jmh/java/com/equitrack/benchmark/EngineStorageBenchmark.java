@@ -0,0 +1,126 @@
+package com.equitrack.benchmark;
+
+import com.equitrack.model.Transaction;
+import com.equitrack.service.PositionService;
+import com.equitrack.symbol.SymbolTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Engine ingest on heap versus off-heap storage over a large book.
+ * <p>
+ * Every trial loads {@code size} trades, then {@code ingestBatch} adds batches of new ones.
+ * Alongside throughput, the {@code gcCount} and {@code gcMillis} counters report the
+ * collections and pause time per iteration, which is where keeping the book off the heap
+ * should show. Run with a fixed heap to compare like for like:
+ * {@code mvn -Pbenchmark -DskipTests verify -Djmh.args="EngineStorageBenchmark -jvmArgs -Xmx4g"}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EngineStorageBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"heap", "off-heap"})
+    private String storage;
+
+    @Param({"2000000"})
+    private int size;
+
+    private PositionService engine;
+    private List<Transaction> batch;
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void start() {
+        engine = new PositionService(new SymbolTable(), PositionService.Storage.valueOf(storage.toUpperCase().replace('-', '_')),
+                null, 60_000L, 100_000);
+        WorkloadGenerator generator = new WorkloadGenerator(10_000, 1.0, 0.3, 0.05, 0.0, 42);
+        for (int loaded = 0; loaded < size; loaded += 100_000) {
+            List<Transaction> chunk = generator.generate(Math.min(100_000, size - loaded));
+            long offset = loaded;
+            engine.processTransactions(shift(chunk, offset));
+        }
+        batch = generator.generate(BATCH_SIZE);
+        nextId = size;
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        engine.close();
+    }
+
+    /**
+     * One batch of transactions, each against a trade the book does not have yet
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public PositionService ingestBatch(GcCounters counters) {
+        List<Transaction> shifted = shift(batch, nextId);
+        nextId += batch.size();
+        engine.processTransactions(shifted);
+        return engine;
+    }
+
+    private static List<Transaction> shift(List<Transaction> transactions, long offset) {
+        List<Transaction> shifted = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            shifted.add(new Transaction(transaction.getTransactionId() + offset, transaction.getTradeId() + offset,
+                    transaction.getVersion(), transaction.getSecurityCode(), transaction.getQuantity(),
+                    transaction.getAction(), transaction.getSide()));
+        }
+        return shifted;
+    }
+
+    /**
+     * Collections and pause time across all collectors during each iteration
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class GcCounters {
+        public long gcCount;
+        public long gcMillis;
+
+        private long startCount;
+        private long startMillis;
+
+        @Setup(Level.Iteration)
+        public void begin() {
+            gcCount = 0;
+            gcMillis = 0;
+            startCount = totalCount();
+            startMillis = totalMillis();
+        }
+
+        @TearDown(Level.Iteration)
+        public void end() {
+            gcCount = totalCount() - startCount;
+            gcMillis = totalMillis() - startMillis;
+        }
+
+        private static long totalCount() {
+            long count = 0;
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                count += Math.max(0, collector.getCollectionCount());
+            }
+            return count;
+        }
+
+        private static long totalMillis() {
+            long millis = 0;
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                millis += Math.max(0, collector.getCollectionTime());
+            }
+            return millis;
+        }
+    }
+}
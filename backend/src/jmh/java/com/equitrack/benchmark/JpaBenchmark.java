@@ -0,0 +1,75 @@
+package com.equitrack.benchmark;
+
+import com.equitrack.EquiTrackApplication;
+import com.equitrack.model.Position;
+import com.equitrack.model.Transaction;
+import com.equitrack.service.PositionServiceJPA;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The JPA path against the in-memory H2 database: one transaction at a time versus the bulk path
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JpaBenchmark {
+
+    @Param({"1000", "10000"})
+    private int size;
+
+    private ConfigurableApplicationContext context;
+    private PositionServiceJPA service;
+    private List<Transaction> batch;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(EquiTrackApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "equitrack.engine.mode=jpa",
+                        "logging.level.root=WARN",
+                        "logging.level.com.equitrack=WARN")
+                .run();
+        service = context.getBean(PositionServiceJPA.class);
+        batch = new WorkloadGenerator(1_000, 1.0, 0.3, 0.05, 0.0, 42).generate(size);
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        service.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public PositionServiceJPA processTransactionsOneByOne() {
+        for (Transaction transaction : batch) {
+            service.processTransaction(transaction);
+        }
+        return service;
+    }
+
+    @Benchmark
+    public PositionServiceJPA processTransactionsBulk() {
+        service.processTransactions(batch);
+        return service;
+    }
+
+    @Benchmark
+    public List<Position> processThenGetPositions() {
+        service.processTransactions(batch);
+        return service.getPositions();
+    }
+}
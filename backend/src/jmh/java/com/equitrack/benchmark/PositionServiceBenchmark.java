@@ -0,0 +1,63 @@
+package com.equitrack.benchmark;
+
+import com.equitrack.model.Transaction;
+import com.equitrack.service.PositionService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-event throughput of {@link PositionService#processTransaction} for different action mixes.
+ * Each iteration starts from an empty engine and walks a pre-generated stream; the engine is
+ * reset if the stream runs out so every event is applied as a fresh version.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PositionServiceBenchmark {
+
+    private static final int STREAM_LENGTH = 1 << 21;
+
+    @Param({"0.0", "0.5"})
+    private double updateRatio;
+
+    @Param({"0.0", "0.2"})
+    private double cancelRatio;
+
+    @Param({"0.0", "0.01"})
+    private double outOfOrderRate;
+
+    @Param({"1.0"})
+    private double skew;
+
+    @Param({"10000"})
+    private int securities;
+
+    private Transaction[] stream;
+    private PositionService engine;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        stream = new WorkloadGenerator(securities, skew, updateRatio, cancelRatio, outOfOrderRate, 42)
+                .generate(STREAM_LENGTH)
+                .toArray(new Transaction[0]);
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        engine = new PositionService();
+        cursor = 0;
+    }
+
+    @Benchmark
+    public void processTransaction() {
+        if (cursor == stream.length) {
+            reset();
+        }
+        engine.processTransaction(stream[cursor++]);
+    }
+}
@@ -0,0 +1,64 @@
+package com.equitrack.benchmark;
+
+import com.equitrack.model.Position;
+import com.equitrack.model.Trade;
+import com.equitrack.model.Transaction;
+import com.equitrack.model.TransactionAction;
+import com.equitrack.model.TransactionSide;
+import com.equitrack.service.PositionService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read paths of {@link PositionService} over a large book
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+
+    @Param({"10000", "100000"})
+    private int securities;
+
+    @Param({"4"})
+    private int tradesPerSecurity;
+
+    private PositionService engine;
+    private String hotSecurity;
+
+    @Setup(Level.Trial)
+    public void load() {
+        engine = new PositionService();
+        long id = 1;
+        for (int i = 0; i < securities; i++) {
+            String code = WorkloadGenerator.securityCode(i);
+            for (int t = 0; t < tradesPerSecurity; t++, id++) {
+                engine.processTransaction(new Transaction(id, id, 1, code, 100,
+                        TransactionAction.INSERT, t % 2 == 0 ? TransactionSide.Buy : TransactionSide.Sell));
+            }
+        }
+        hotSecurity = WorkloadGenerator.securityCode(securities / 2);
+    }
+
+    @Benchmark
+    public List<Position> getPositions() {
+        return engine.getPositions();
+    }
+
+    @Benchmark
+    public List<Trade> getTrades() {
+        return engine.getTrades();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Optional<Position> getPositionBySecurityCode() {
+        return engine.getPositionBySecurityCode(hotSecurity);
+    }
+}
@@ -0,0 +1,131 @@
+package com.equitrack.benchmark;
+
+import com.equitrack.EquiTrackApplication;
+import com.equitrack.entity.Trade;
+import com.equitrack.entity.Transaction;
+import com.equitrack.repository.TradeRepository;
+import com.equitrack.repository.TransactionRepository;
+import com.equitrack.service.PositionManager;
+import com.equitrack.service.PositionServiceJPA;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repository lookups against the Flyway schema in H2, with and without its secondary indexes.
+ * <p>
+ * The tables are filled with SQL rather than through the service so that large books load in
+ * seconds: three versions per trade, trades spread over {@code securities} codes and every
+ * tenth trade cancelled. {@code cachedHistoryByTrade} serves {@code transactionsByTrade} from the version
+ * chain cache, which holds every trade once warmed up, and {@code cachedLatestVersionByTrade} reads each
+ * trade's latest version from it. For the
+ * 10M row figures:
+ * {@code mvn -Pbenchmark -DskipTests verify -Djmh.args="SchemaQueryBenchmark -p transactions=10000000 -jvmArgs -Xmx8g"}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SchemaQueryBenchmark {
+
+    private static final int VERSIONS_PER_TRADE = 3;
+
+    @Param({"1000000"})
+    private int transactions;
+
+    @Param({"10000"})
+    private int securities;
+
+    @Param({"true", "false"})
+    private boolean indexed;
+
+    private ConfigurableApplicationContext context;
+    private TransactionRepository transactionRepository;
+    private TradeRepository tradeRepository;
+    private PositionServiceJPA positionService;
+    private SplittableRandom random;
+    private long trades;
+
+    @Setup(Level.Trial)
+    public void load() {
+        context = new SpringApplicationBuilder(EquiTrackApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--equitrack.engine.mode=jpa",
+                        "--spring.datasource.url=jdbc:h2:mem:schemabench",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.equitrack=WARN");
+        transactionRepository = context.getBean(TransactionRepository.class);
+        tradeRepository = context.getBean(TradeRepository.class);
+        positionService = context.getBean(PositionServiceJPA.class);
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        // Drop the sample data loaded at startup
+        context.getBean(PositionManager.class).clear();
+
+        trades = transactions / VERSIONS_PER_TRADE;
+        jdbc.update("INSERT INTO transactions (id, transaction_id, trade_id, version, security_code, quantity, action, side) "
+                + "SELECT X, X, (X - 1) / ? + 1, MOD(X - 1, ?) + 1, "
+                + "'SEC' || LPAD(CAST(MOD((X - 1) / ? + 1, ?) AS VARCHAR), 6, '0'), 100, "
+                + "CASE WHEN MOD(X - 1, ?) = 0 THEN 0 ELSE 1 END, MOD((X - 1) / ?, 2) "
+                + "FROM SYSTEM_RANGE(1, ?)",
+                VERSIONS_PER_TRADE, VERSIONS_PER_TRADE, VERSIONS_PER_TRADE, securities, VERSIONS_PER_TRADE,
+                VERSIONS_PER_TRADE, transactions);
+        jdbc.update("INSERT INTO trades (id, trade_id, current_version, security_code, quantity, side, is_cancelled) "
+                + "SELECT X, X, ?, 'SEC' || LPAD(CAST(MOD(X, ?) AS VARCHAR), 6, '0'), 100, MOD(X - 1, 2), MOD(X, 10) = 0 "
+                + "FROM SYSTEM_RANGE(1, ?)",
+                VERSIONS_PER_TRADE, securities, trades);
+        if (!indexed) {
+            jdbc.execute("DROP INDEX ix_transactions_trade_id_version");
+            jdbc.execute("DROP INDEX ix_transactions_security_code");
+            jdbc.execute("DROP INDEX ix_trades_security_code_cancelled");
+        }
+        jdbc.execute("ANALYZE");
+        random = new SplittableRandom(42);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    private long randomTradeId() {
+        return random.nextLong(trades) + 1;
+    }
+
+    private String randomSecurity() {
+        return WorkloadGenerator.securityCode(random.nextInt(securities));
+    }
+
+    @Benchmark
+    public List<Transaction> transactionsByTrade() {
+        return transactionRepository.findByTradeIdOrderByVersionAsc(randomTradeId());
+    }
+
+    @Benchmark
+    public List<com.equitrack.model.Transaction> cachedHistoryByTrade() {
+        return positionService.getTradeHistory(randomTradeId());
+    }
+
+    @Benchmark
+    public Optional<com.equitrack.model.Transaction> cachedLatestVersionByTrade() {
+        return positionService.getLatestVersion(randomTradeId());
+    }
+
+    @Benchmark
+    public long activeTradeCountBySecurity() {
+        return tradeRepository.countBySecurityCodeAndIsCancelledFalse(randomSecurity());
+    }
+
+    @Benchmark
+    public List<Trade> tradesBySecurity() {
+        return tradeRepository.findBySecurityCodeOrderByTradeIdAsc(randomSecurity());
+    }
+}
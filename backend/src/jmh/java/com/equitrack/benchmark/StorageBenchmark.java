@@ -0,0 +1,113 @@
+package com.equitrack.benchmark;
+
+import com.equitrack.EquiTrackApplication;
+import com.equitrack.model.Position;
+import com.equitrack.model.Trade;
+import com.equitrack.model.Transaction;
+import com.equitrack.service.PositionManager;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingest and read throughput of the JPA engine on each storage backend.
+ * <p>
+ * Every trial starts from a book of {@code size} transactions. {@code ingestBatch} then adds
+ * batches of new trades, so the book keeps growing as it would in production. The {@code jdbc}
+ * backend needs a database to talk to:
+ * {@code EQUITRACK_DB_URL=jdbc:postgresql://localhost/equitrack mvn -Pbenchmark -DskipTests verify -Djmh.args="StorageBenchmark -p backend=jdbc"}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StorageBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"memory", "file"})
+    private String backend;
+
+    @Param({"100000"})
+    private int size;
+
+    private ConfigurableApplicationContext context;
+    private PositionManager service;
+    private Path directory;
+    private List<Transaction> batch;
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        List<String> args = new ArrayList<>(List.of(
+                "--equitrack.engine.mode=jpa",
+                "--logging.level.root=WARN",
+                "--logging.level.com.equitrack=WARN"));
+        if (backend.equals("file")) {
+            directory = Files.createTempDirectory("equitrack-storage");
+            args.add("--equitrack.storage.directory=" + directory);
+        }
+        context = new SpringApplicationBuilder(EquiTrackApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles(backend.equals("memory") ? new String[0] : new String[] {backend})
+                .run(args.toArray(new String[0]));
+        service = context.getBean(PositionManager.class);
+        service.clear();
+
+        WorkloadGenerator generator = new WorkloadGenerator(1_000, 1.0, 0.3, 0.05, 0.0, 42);
+        List<Transaction> book = generator.generate(size);
+        for (int from = 0; from < book.size(); from += 10_000) {
+            service.processTransactions(book.subList(from, Math.min(book.size(), from + 10_000)));
+        }
+        batch = generator.generate(BATCH_SIZE);
+        nextId = size;
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        service.clear();
+        context.close();
+        if (directory != null) {
+            FileSystemUtils.deleteRecursively(directory);
+        }
+    }
+
+    /**
+     * One batch of transactions, each against a trade the book does not have yet
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public PositionManager ingestBatch() {
+        long offset = nextId;
+        List<Transaction> shifted = new ArrayList<>(batch.size());
+        for (Transaction transaction : batch) {
+            shifted.add(new Transaction(transaction.getTransactionId() + offset, transaction.getTradeId() + offset,
+                    transaction.getVersion(), transaction.getSecurityCode(), transaction.getQuantity(),
+                    transaction.getAction(), transaction.getSide()));
+        }
+        nextId += batch.size();
+        service.processTransactions(shifted);
+        return service;
+    }
+
+    @Benchmark
+    public List<Position> getPositions() {
+        return service.getPositions();
+    }
+
+    @Benchmark
+    public List<Trade> getTrades() {
+        return service.getTrades();
+    }
+}
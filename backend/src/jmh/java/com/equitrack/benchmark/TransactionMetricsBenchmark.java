@@ -0,0 +1,46 @@
+package com.equitrack.benchmark;
+
+import com.equitrack.metrics.TransactionMetrics;
+import com.equitrack.model.Transaction;
+import com.equitrack.model.TransactionAction;
+import com.equitrack.model.TransactionSide;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-event cost of {@link TransactionMetrics} against the Prometheus registry (budget: under 100ns)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionMetricsBenchmark {
+
+    @Param({"1", "16"})
+    private int sampleRate;
+
+    private TransactionMetrics metrics;
+    private Transaction transaction;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        metrics = new TransactionMetrics(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT), sampleRate);
+        transaction = new Transaction(1L, 1L, 2, "REL", 50, TransactionAction.UPDATE, TransactionSide.Buy);
+    }
+
+    @Benchmark
+    public void recordTransaction() {
+        metrics.recordTransaction(transaction, metrics.start());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordTransactionContended() {
+        metrics.recordTransaction(transaction, metrics.start());
+    }
+}
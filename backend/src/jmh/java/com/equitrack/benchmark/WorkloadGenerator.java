@@ -0,0 +1,116 @@
+package com.equitrack.benchmark;
+
+import com.equitrack.model.Transaction;
+import com.equitrack.model.TransactionAction;
+import com.equitrack.model.TransactionSide;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic transaction streams for the benchmarks.
+ * <ul>
+ *   <li>{@code skew}: Zipf exponent of security popularity (0 = uniform, ~1 = a few hot securities)</li>
+ *   <li>{@code updateRatio} / {@code cancelRatio}: share of events that update or cancel a live trade;
+ *       the rest insert new trades</li>
+ *   <li>{@code outOfOrderRate}: share of events swapped with one up to {@code MAX_DISPLACEMENT}
+ *       positions later, which makes some versions arrive before the one they follow</li>
+ * </ul>
+ */
+public final class WorkloadGenerator {
+
+    private static final int MAX_DISPLACEMENT = 8;
+
+    private final int securities;
+    private final double[] popularity;
+    private final double updateRatio;
+    private final double cancelRatio;
+    private final double outOfOrderRate;
+    private final long seed;
+
+    public WorkloadGenerator(int securities, double skew, double updateRatio, double cancelRatio,
+                             double outOfOrderRate, long seed) {
+        this.securities = securities;
+        this.updateRatio = updateRatio;
+        this.cancelRatio = cancelRatio;
+        this.outOfOrderRate = outOfOrderRate;
+        this.seed = seed;
+        this.popularity = new double[securities];
+        double total = 0;
+        for (int i = 0; i < securities; i++) {
+            total += 1.0 / Math.pow(i + 1, skew);
+            popularity[i] = total;
+        }
+        for (int i = 0; i < securities; i++) {
+            popularity[i] /= total;
+        }
+    }
+
+    /**
+     * Security code for an index, e.g. {@code SEC000042}
+     */
+    public static String securityCode(int index) {
+        return String.format("SEC%06d", index);
+    }
+
+    /**
+     * Generate {@code count} transactions with IDs starting at 1
+     */
+    public List<Transaction> generate(int count) {
+        SplittableRandom random = new SplittableRandom(seed);
+        String[] codes = new String[securities];
+        for (int i = 0; i < securities; i++) {
+            codes[i] = securityCode(i);
+        }
+
+        List<Transaction> transactions = new ArrayList<>(count);
+        List<Transaction> live = new ArrayList<>();
+        long nextTradeId = 1;
+        for (long transactionId = 1; transactionId <= count; transactionId++) {
+            double action = random.nextDouble();
+            Transaction transaction;
+            if (live.isEmpty() || action >= updateRatio + cancelRatio) {
+                transaction = new Transaction(transactionId, nextTradeId++, 1, codes[pickSecurity(random)],
+                        1 + random.nextInt(1000), TransactionAction.INSERT, pickSide(random));
+                live.add(transaction);
+            } else {
+                int index = random.nextInt(live.size());
+                Transaction latest = live.get(index);
+                if (action < updateRatio) {
+                    transaction = new Transaction(transactionId, latest.getTradeId(), latest.getVersion() + 1,
+                            random.nextInt(4) == 0 ? codes[pickSecurity(random)] : latest.getSecurityCode(),
+                            1 + random.nextInt(1000), TransactionAction.UPDATE, latest.getSide());
+                    live.set(index, transaction);
+                } else {
+                    transaction = new Transaction(transactionId, latest.getTradeId(), latest.getVersion() + 1,
+                            latest.getSecurityCode(), latest.getQuantity(), TransactionAction.CANCEL, latest.getSide());
+                    Collections.swap(live, index, live.size() - 1);
+                    live.remove(live.size() - 1);
+                }
+            }
+            transactions.add(transaction);
+        }
+
+        if (outOfOrderRate > 0) {
+            for (int i = 0; i < transactions.size() - 1; i++) {
+                if (random.nextDouble() < outOfOrderRate) {
+                    int other = Math.min(transactions.size() - 1, i + 1 + random.nextInt(MAX_DISPLACEMENT));
+                    Collections.swap(transactions, i, other);
+                }
+            }
+        }
+        return transactions;
+    }
+
+    private int pickSecurity(SplittableRandom random) {
+        int index = Arrays.binarySearch(popularity, random.nextDouble());
+        return Math.min(securities - 1, index >= 0 ? index : -index - 1);
+    }
+
+    private static TransactionSide pickSide(SplittableRandom random) {
+        return random.nextBoolean() ? TransactionSide.Buy : TransactionSide.Sell;
+    }
+}
@@ -3,20 +3,22 @@ package com.equitrack;
 import com.equitrack.model.Transaction;
 import com.equitrack.model.TransactionAction;
 import com.equitrack.model.TransactionSide;
-import com.equitrack.service.PositionServiceJPA;
+import com.equitrack.service.PositionManager;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.util.List;
 
 @SpringBootApplication
+@EnableScheduling
 public class EquiTrackApplication {
 
     @Autowired
-    private PositionServiceJPA positionService;
+    private PositionManager positionService;
 
     public static void main(String[] args) {
         SpringApplication.run(EquiTrackApplication.class, args);
@@ -26,6 +28,11 @@ public class EquiTrackApplication {
     @Bean
     public CommandLineRunner loadSampleData() {
         return args -> {
+            // State recovered from the journal survives restarts; only seed an empty engine
+            if (!positionService.getTrades().isEmpty()) {
+                return;
+            }
+
             // Load sample data on startup
             List<Transaction> sampleTransactions = List.of(
                 new Transaction(1L, 1L, 1, "REL", 50, TransactionAction.INSERT, TransactionSide.Buy),
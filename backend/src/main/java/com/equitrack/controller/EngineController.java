@@ -0,0 +1,63 @@
+package com.equitrack.controller;
+
+import com.equitrack.service.PositionReconciler;
+import com.equitrack.service.ShardedTransactionProcessor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/engine")
+@CrossOrigin(origins = "*")
+public class EngineController {
+
+    private final ShardedTransactionProcessor shardedProcessor;
+    private final PositionReconciler reconciler;
+
+    @Autowired
+    public EngineController(ShardedTransactionProcessor shardedProcessor, PositionReconciler reconciler) {
+        this.shardedProcessor = shardedProcessor;
+        this.reconciler = reconciler;
+    }
+
+    /**
+     * Get per-shard throughput of the parallel bulk processor
+     */
+    @GetMapping("/shards")
+    public ResponseEntity<List<ShardedTransactionProcessor.ShardStats>> getShardStats() {
+        try {
+            return ResponseEntity.ok(shardedProcessor.getShardStats());
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Get the report of the last position reconciliation; 404 if none has run
+     */
+    @GetMapping("/reconciliation")
+    public ResponseEntity<PositionReconciler.Report> getReconciliation() {
+        return reconciler.getLastReport()
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Reconcile positions against trades now; repair=true also corrects drifted positions.
+     * 409 if a run is already in progress or the engine is not in jpa mode.
+     */
+    @PostMapping("/reconciliation")
+    public ResponseEntity<PositionReconciler.Report> reconcile(@RequestParam(defaultValue = "false") boolean repair) {
+        try {
+            return reconciler.reconcile(repair)
+                    .map(ResponseEntity::ok)
+                    .orElseGet(() -> ResponseEntity.status(409).build());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).build();
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
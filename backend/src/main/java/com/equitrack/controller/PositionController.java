@@ -1,88 +1,286 @@
 package com.equitrack.controller;
 
+import com.equitrack.ids.TransactionIdGenerator;
 import com.equitrack.model.Position;
-import com.equitrack.service.PositionServiceJPA;
+import com.equitrack.model.TradeFilter;
+import com.equitrack.model.TransactionFilter;
+import com.equitrack.service.DuplicateTransactionException;
+import com.equitrack.service.PositionDeltaPublisher;
+import com.equitrack.service.PositionHistory;
+import com.equitrack.service.PositionManager;
+import com.equitrack.service.ReadModel;
+import com.equitrack.service.SingleWriterIngestor;
+import com.equitrack.service.StreamingIngestionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api")
 @CrossOrigin(origins = "*")
 public class PositionController {
 
-    private final PositionServiceJPA positionService;
+    /** Page size when a paged request does not give one */
+    static final int DEFAULT_PAGE_SIZE = 100;
+
+    /** Largest page a client may ask for */
+    static final int MAX_PAGE_SIZE = 1000;
+
+    /** Response header carrying the cursor for the next page, absent on the last page */
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private final PositionManager positionService;
+    private final StreamingIngestionService ingestionService;
+    private final SingleWriterIngestor writer;
+    private final TransactionIdGenerator idGenerator;
+    private final PositionDeltaPublisher deltaPublisher;
+    private final ReadModel readModel;
+    private final PositionHistory positionHistory;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public PositionController(PositionServiceJPA positionService) {
+    public PositionController(PositionManager positionService, StreamingIngestionService ingestionService,
+                              SingleWriterIngestor writer, TransactionIdGenerator idGenerator,
+                              PositionDeltaPublisher deltaPublisher, ReadModel readModel,
+                              PositionHistory positionHistory, ObjectMapper objectMapper) {
         this.positionService = positionService;
+        this.ingestionService = ingestionService;
+        this.writer = writer;
+        this.idGenerator = idGenerator;
+        this.deltaPublisher = deltaPublisher;
+        this.readModel = readModel;
+        this.positionHistory = positionHistory;
+        this.objectMapper = objectMapper;
     }
 
     /**
-     * Get all current positions
+     * Get all current positions (304 when If-None-Match carries the current ETag), or the positions
+     * as of a transaction ID or a time
      */
     @GetMapping("/positions")
-    public ResponseEntity<List<Position>> getPositions() {
+    public ResponseEntity<byte[]> getPositions(@RequestParam(required = false) String asOf, WebRequest request) {
+        if (asOf != null) {
+            return getPositionsAsOf(asOf);
+        }
         try {
-            List<Position> positions = positionService.getPositions();
-            return ResponseEntity.ok(positions);
+            return cachedView(readModel.getPositions(), request);
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
 
     /**
-     * Get all trades
+     * Positions right after a transaction ID (all digits) or at an ISO-8601 time, with or without an offset
+     */
+    private ResponseEntity<byte[]> getPositionsAsOf(String asOf) {
+        Optional<List<Position>> positions;
+        try {
+            if (asOf.chars().allMatch(Character::isDigit)) {
+                positions = positionHistory.getPositionsAsOfTransaction(Long.parseLong(asOf));
+            } else {
+                positions = Optional.of(positionHistory.getPositionsAsOf(parseTime(asOf)));
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (positions.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(objectMapper.writeValueAsBytes(positions.get()));
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    private static LocalDateTime parseTime(String time) {
+        try {
+            return OffsetDateTime.parse(time).atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+        } catch (DateTimeParseException e) {
+            return LocalDateTime.parse(time);
+        }
+    }
+
+    /**
+     * Serve a read model view as its pre-serialized JSON, or 304 if the client already has this version
+     */
+    private static ResponseEntity<byte[]> cachedView(ReadModel.View<?> view, WebRequest request) {
+        if (request.checkNotModified(view.getETag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(view.getETag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(view.getJson());
+    }
+
+    /**
+     * Stream position changes as Server-Sent Events: a snapshot, then conflated deltas at most maxRate times a second
+     */
+    @GetMapping(value = "/positions/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamPositions(@RequestParam(defaultValue = "0") double maxRate) {
+        return deltaPublisher.subscribe(maxRate);
+    }
+
+    /**
+     * Get all trades (304 when If-None-Match carries the current ETag), or one page of them
+     * when a filter, cursor or limit is given
      */
     @GetMapping("/trades")
-    public ResponseEntity<List<com.equitrack.model.Trade>> getTrades() {
+    public ResponseEntity<?> getTrades(TradeFilter filter,
+                                       @RequestParam(required = false) Long after,
+                                       @RequestParam(required = false) Integer limit,
+                                       WebRequest request) {
         try {
-            List<com.equitrack.model.Trade> trades = positionService.getTrades();
-            return ResponseEntity.ok(trades);
+            if (filter.isEmpty() && after == null && limit == null) {
+                return cachedView(readModel.getTrades(), request);
+            }
+            int pageSize = pageSize(limit);
+            List<com.equitrack.model.Trade> trades = positionService.findTrades(filter, after, pageSize + 1);
+            return page(trades, pageSize, com.equitrack.model.Trade::getTradeId);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
 
     /**
-     * Add a new transaction
+     * Requested page size, defaulted and checked against the maximum
+     */
+    private static int pageSize(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return limit;
+    }
+
+    /**
+     * First pageSize items, with the next cursor header if one more item was fetched than asked for
+     */
+    private static <T> ResponseEntity<List<T>> page(List<T> items, int pageSize, Function<T, Long> idOf) {
+        if (items.size() <= pageSize) {
+            return ResponseEntity.ok(items);
+        }
+        List<T> page = items.subList(0, pageSize);
+        return ResponseEntity.ok()
+                .header(NEXT_CURSOR_HEADER, String.valueOf(idOf.apply(page.get(pageSize - 1))))
+                .body(page);
+    }
+
+    /**
+     * Add a new transaction; includePositions=false leaves the position book out of the response.
+     * The request thread is released while the single writer, when enabled, commits it.
+     * Resending a transaction ID that was already processed returns the original with 200.
      */
     @PostMapping("/transactions")
-    public ResponseEntity<TransactionResponse> addTransaction(@RequestBody com.equitrack.model.Transaction transaction) {
-        try {
-            // Auto-generate transaction ID if not provided
-            if (transaction.getTransactionId() == null) {
-                transaction.setTransactionId(System.currentTimeMillis());
-            }
+    public CompletableFuture<ResponseEntity<TransactionResponse>> addTransaction(@RequestBody com.equitrack.model.Transaction transaction,
+                                                                                @RequestParam(defaultValue = "true") boolean includePositions) {
+        // Auto-generate transaction ID if not provided
+        if (transaction.getTransactionId() == null) {
+            transaction.setTransactionId(idGenerator.nextId());
+        }
 
-            positionService.processTransaction(transaction);
-            
+        return writer.submit(transaction).handle((processed, failure) -> {
+            Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+            if (cause instanceof DuplicateTransactionException) {
+                return alreadyProcessed(((DuplicateTransactionException) cause).getTransactionId(), includePositions);
+            }
+            if (failure != null) {
+                return ResponseEntity.internalServerError().<TransactionResponse>build();
+            }
             TransactionResponse response = new TransactionResponse();
             response.setMessage("Transaction processed successfully");
-            response.setTransaction(transaction);
-            response.setPositions(positionService.getPositions());
-            
+            response.setTransaction(processed);
+            if (includePositions) {
+                response.setPositions(readModel.getPositions().getItems());
+            }
             return ResponseEntity.status(201).body(response);
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError().build();
-        }
+        });
     }
 
     /**
-     * Add multiple transactions
+     * Response to a repeated transaction: the original as stored, or 409 if it has been deleted since
+     */
+    private ResponseEntity<TransactionResponse> alreadyProcessed(long transactionId, boolean includePositions) {
+        return positionService.getTransactionById(transactionId)
+                .map(original -> {
+                    TransactionResponse response = new TransactionResponse();
+                    response.setMessage("Transaction already processed");
+                    response.setTransaction(original);
+                    if (includePositions) {
+                        response.setPositions(readModel.getPositions().getItems());
+                    }
+                    return ResponseEntity.ok(response);
+                })
+                .orElseGet(() -> ResponseEntity.status(409).build());
+    }
+
+    /**
+     * Add multiple transactions; includePositions=false leaves the position book out of the response.
+     * A batch repeating an already processed transaction ID is rejected whole with 409.
      */
     @PostMapping("/transactions/bulk")
-    public ResponseEntity<BulkTransactionResponse> addBulkTransactions(@RequestBody List<com.equitrack.model.Transaction> transactions) {
+    public ResponseEntity<BulkTransactionResponse> addBulkTransactions(@RequestBody List<com.equitrack.model.Transaction> transactions,
+                                                                       @RequestParam(defaultValue = "true") boolean includePositions) {
         try {
             positionService.processTransactions(transactions);
             
             BulkTransactionResponse response = new BulkTransactionResponse();
             response.setMessage("Transactions processed successfully");
-            response.setPositions(positionService.getPositions());
+            if (includePositions) {
+                response.setPositions(readModel.getPositions().getItems());
+            }
             
             return ResponseEntity.status(201).body(response);
+        } catch (DuplicateTransactionException e) {
+            BulkTransactionResponse response = new BulkTransactionResponse();
+            response.setMessage(e.getMessage());
+            return ResponseEntity.status(409).body(response);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Stream NDJSON or CSV transactions through the engine in chunks
+     */
+    @PostMapping(value = "/transactions/stream", consumes = {"application/x-ndjson", "text/csv", "application/json"})
+    public ResponseEntity<StreamingIngestionService.IngestionSummary> streamTransactions(HttpServletRequest request) {
+        try (InputStream body = request.getInputStream()) {
+            String contentType = request.getContentType();
+            StreamingIngestionService.Format format = contentType != null && contentType.startsWith("text/csv")
+                    ? StreamingIngestionService.Format.CSV
+                    : StreamingIngestionService.Format.JSON;
+            return ResponseEntity.status(201).body(ingestionService.ingest(body, format));
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -125,7 +323,7 @@ public class PositionController {
             
             SampleDataResponse response = new SampleDataResponse();
             response.setMessage("Sample data loaded successfully");
-            response.setPositions(positionService.getPositions());
+            response.setPositions(readModel.getPositions().getItems());
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -161,6 +359,33 @@ public class PositionController {
         }
     }
 
+    /**
+     * Get every stored version of a trade, oldest first
+     */
+    @GetMapping("/trades/{tradeId}/history")
+    public ResponseEntity<List<com.equitrack.model.Transaction>> getTradeHistory(@PathVariable Long tradeId) {
+        try {
+            List<com.equitrack.model.Transaction> history = positionService.getTradeHistory(tradeId);
+            return history.isEmpty() ? ResponseEntity.notFound().build() : ResponseEntity.ok(history);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Get the latest stored version of a trade
+     */
+    @GetMapping("/trades/{tradeId}/latest")
+    public ResponseEntity<com.equitrack.model.Transaction> getLatestVersion(@PathVariable Long tradeId) {
+        try {
+            return positionService.getLatestVersion(tradeId)
+                    .map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     /**
      * Get position by security code
      */
@@ -221,13 +446,43 @@ public class PositionController {
     }
 
     /**
-     * Get all transactions
+     * Get all transactions, or one page of them when a filter, cursor or limit is given;
+     * either way serialized straight to the response as rows are read
      */
     @GetMapping("/transactions")
-    public ResponseEntity<List<com.equitrack.model.Transaction>> getAllTransactions() {
+    public ResponseEntity<StreamingResponseBody> getAllTransactions(TransactionFilter filter,
+                                                                    @RequestParam(required = false) Long after,
+                                                                    @RequestParam(required = false) Integer limit) {
         try {
-            List<com.equitrack.model.Transaction> transactions = positionService.getTransactions();
-            return ResponseEntity.ok(transactions);
+            if (filter.isEmpty() && after == null && limit == null) {
+                return ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(out -> {
+                            SequenceWriter writer = objectMapper.writer()
+                                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                                    .writeValuesAsArray(out);
+                            positionService.forEachTransaction(transaction -> {
+                                try {
+                                    writer.write(transaction);
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                            });
+                            // Only a complete read closes the array; a failure aborts the response
+                            // unterminated, so a client never takes a partial list as the whole
+                            writer.close();
+                        });
+            }
+            int pageSize = pageSize(limit);
+            ResponseEntity<List<com.equitrack.model.Transaction>> page = page(
+                    positionService.findTransactions(filter, after, pageSize + 1), pageSize,
+                    com.equitrack.model.Transaction::getTransactionId);
+            return ResponseEntity.ok()
+                    .headers(page.getHeaders())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(out -> objectMapper.writeValue(out, page.getBody()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -11,7 +11,8 @@ import java.time.LocalDateTime;
 public class Position {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "positions_seq")
+    @SequenceGenerator(name = "positions_seq", sequenceName = "positions_seq", allocationSize = 50)
     private Long id;
     
     @NotBlank(message = "Security code is required")
@@ -20,7 +21,7 @@ public class Position {
     
     @NotNull(message = "Quantity is required")
     @Column(name = "quantity", nullable = false)
-    private Integer quantity;
+    private Long quantity;
     
     @Column(name = "created_at")
     private LocalDateTime createdAt;
@@ -35,7 +36,7 @@ public class Position {
     }
     
     // Constructor with fields
-    public Position(String securityCode, Integer quantity) {
+    public Position(String securityCode, Long quantity) {
         this();
         this.securityCode = securityCode;
         this.quantity = quantity;
@@ -58,11 +59,11 @@ public class Position {
         this.securityCode = securityCode;
     }
     
-    public Integer getQuantity() {
+    public Long getQuantity() {
         return quantity;
     }
     
-    public void setQuantity(Integer quantity) {
+    public void setQuantity(Long quantity) {
         this.quantity = quantity;
     }
     
@@ -5,6 +5,8 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
 
@@ -13,7 +15,8 @@ import java.time.LocalDateTime;
 public class Trade {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "trades_seq")
+    @SequenceGenerator(name = "trades_seq", sequenceName = "trades_seq", allocationSize = 50)
     private Long id;
     
     @NotNull(message = "Trade ID is required")
@@ -33,7 +36,8 @@ public class Trade {
     @Column(name = "quantity", nullable = false)
     private Integer quantity;
     
-    @Enumerated(EnumType.STRING)
+    @Enumerated(EnumType.ORDINAL)
+    @JdbcTypeCode(SqlTypes.SMALLINT)
     @Column(name = "side", nullable = false)
     private TransactionSide side;
     
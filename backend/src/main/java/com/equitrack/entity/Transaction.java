@@ -6,6 +6,8 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
 
@@ -14,7 +16,8 @@ import java.time.LocalDateTime;
 public class Transaction {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = "transactions_seq", allocationSize = 50)
     private Long id;
     
     @NotNull(message = "Transaction ID is required")
@@ -38,30 +41,26 @@ public class Transaction {
     @Column(name = "quantity", nullable = false)
     private Integer quantity;
     
-    @Enumerated(EnumType.STRING)
+    @Enumerated(EnumType.ORDINAL)
+    @JdbcTypeCode(SqlTypes.SMALLINT)
     @Column(name = "action", nullable = false)
     private TransactionAction action;
     
-    @Enumerated(EnumType.STRING)
+    @Enumerated(EnumType.ORDINAL)
+    @JdbcTypeCode(SqlTypes.SMALLINT)
     @Column(name = "side", nullable = false)
     private TransactionSide side;
     
-    @Column(name = "created_at")
-    private LocalDateTime createdAt;
-    
-    @Column(name = "updated_at")
-    private LocalDateTime updatedAt;
+    // Set by the database on insert
+    @Column(name = "recorded_at", insertable = false, updatable = false)
+    private LocalDateTime recordedAt;
     
     // Default constructor
-    public Transaction() {
-        this.createdAt = LocalDateTime.now();
-        this.updatedAt = LocalDateTime.now();
-    }
+    public Transaction() {}
     
     // Constructor with all fields
     public Transaction(Long transactionId, Long tradeId, Integer version, 
                       String securityCode, Integer quantity, TransactionAction action, TransactionSide side) {
-        this();
         this.transactionId = transactionId;
         this.tradeId = tradeId;
         this.version = version;
@@ -136,25 +135,8 @@ public class Transaction {
         this.side = side;
     }
     
-    public LocalDateTime getCreatedAt() {
-        return createdAt;
-    }
-    
-    public void setCreatedAt(LocalDateTime createdAt) {
-        this.createdAt = createdAt;
-    }
-    
-    public LocalDateTime getUpdatedAt() {
-        return updatedAt;
-    }
-    
-    public void setUpdatedAt(LocalDateTime updatedAt) {
-        this.updatedAt = updatedAt;
-    }
-    
-    @PreUpdate
-    public void preUpdate() {
-        this.updatedAt = LocalDateTime.now();
+    public LocalDateTime getRecordedAt() {
+        return recordedAt;
     }
     
     @Override
@@ -168,8 +150,6 @@ public class Transaction {
                 ", quantity=" + quantity +
                 ", action=" + action +
                 ", side=" + side +
-                ", createdAt=" + createdAt +
-                ", updatedAt=" + updatedAt +
                 '}';
     }
 }
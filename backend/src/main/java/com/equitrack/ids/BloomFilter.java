@@ -0,0 +1,67 @@
+package com.equitrack.ids;
+
+import java.util.Arrays;
+
+/**
+ * Bloom filter over longs, sized for an expected number of values and a false-positive rate.
+ * It never forgets a value, so "no" is definite and "maybe" has to be checked elsewhere; past
+ * the expected count it keeps working, with a rising false-positive rate. Not thread-safe.
+ */
+public final class BloomFilter {
+
+    private final long[] words;
+    private final long bits;
+    private final int hashes;
+
+    public BloomFilter(long expectedValues, double falsePositiveRate) {
+        if (expectedValues <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Bloom filter needs a positive size and a rate between 0 and 1");
+        }
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(-expectedValues * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.words = new long[(int) Math.min(Integer.MAX_VALUE - 8, (optimalBits + 63) / 64)];
+        this.bits = (long) words.length * 64;
+        this.hashes = Math.max(1, (int) Math.round((double) bits / expectedValues * ln2));
+    }
+
+    public void put(long value) {
+        long hash1 = mix(value);
+        long hash2 = mix(hash1) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bits);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * False if the value was definitely never put
+     */
+    public boolean mightContain(long value) {
+        long hash1 = mix(value);
+        long hash2 = mix(hash1) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bits);
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(words, 0);
+    }
+
+    /** Bytes held by the bit array */
+    public long footprintBytes() {
+        return (long) words.length * Long.BYTES;
+    }
+
+    /** SplitMix64 finalizer */
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
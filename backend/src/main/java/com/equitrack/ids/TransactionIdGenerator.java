@@ -0,0 +1,62 @@
+package com.equitrack.ids;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Snowflake-style transaction IDs for requests that do not bring their own: 31 bits of
+ * seconds since 2024-01-01, 10 bits of node ({@code equitrack.ids.node}) and a 12-bit
+ * sequence within the second. The 53 bits keep every ID exact as a JavaScript number.
+ * <p>
+ * IDs are unique per node and strictly increasing. If the clock steps back, the generator
+ * keeps counting from the last second it used; if a second's 4096 IDs run out, it moves on
+ * to the next second rather than wait for the clock.
+ */
+@Component
+public class TransactionIdGenerator {
+
+    static final long EPOCH_MILLIS = 1_704_067_200_000L;
+    static final int SECOND_BITS = 31;
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long node;
+    private final LongSupplier clock;
+    private long lastSecond = -1;
+    private long sequence;
+
+    @Autowired
+    public TransactionIdGenerator(@Value("${equitrack.ids.node:0}") int node) {
+        this(node, System::currentTimeMillis);
+    }
+
+    TransactionIdGenerator(int node, LongSupplier clock) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("Node must be between 0 and " + MAX_NODE + ", not " + node);
+        }
+        this.node = node;
+        this.clock = clock;
+    }
+
+    public synchronized long nextId() {
+        long second = Math.max((clock.getAsLong() - EPOCH_MILLIS) / 1000, lastSecond);
+        if (second == lastSecond) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                second++;
+            }
+        } else {
+            sequence = 0;
+        }
+        if (second >>> SECOND_BITS != 0) {
+            throw new IllegalStateException("Transaction ID seconds exhausted");
+        }
+        lastSecond = second;
+        return (second << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | sequence;
+    }
+}
@@ -0,0 +1,122 @@
+package com.equitrack.ids;
+
+/**
+ * Answers "has this transaction ID been seen?" without asking the database in the common case.
+ * <p>
+ * The most recent {@code recentCapacity} IDs are held exactly; every ID ever added also goes
+ * into a Bloom filter. An ID in the recent set is a definite duplicate and one the filter has
+ * never seen is definitely new; only a filter match on an older ID, or one released since,
+ * is {@link Seen#MAYBE} and has to be checked against the database. Until it has been
+ * {@link #rebuild rebuilt} from the stored IDs, every answer is {@link Seen#MAYBE}.
+ * <p>
+ * Thread-safe; every call is a short critical section.
+ */
+public class TransactionIdIndex {
+
+    public enum Seen {
+        /** Definitely seen */
+        YES,
+        /** Definitely never seen */
+        NO,
+        /** Might have been seen; ask the database */
+        MAYBE
+    }
+
+    private final int recentCapacity;
+    private final LongHashSet recent;
+    /** Recent IDs in the order they were added, so the oldest can be evicted */
+    private final long[] order;
+    private final BloomFilter history;
+    private int oldest;
+    private int ordered;
+    private boolean loaded;
+    private long uncertain;
+
+    public TransactionIdIndex(int recentCapacity, long expectedTransactions, double falsePositiveRate) {
+        this.recentCapacity = Math.max(1, recentCapacity);
+        this.recent = new LongHashSet(this.recentCapacity);
+        this.order = new long[this.recentCapacity];
+        this.history = new BloomFilter(expectedTransactions, falsePositiveRate);
+    }
+
+    /**
+     * Whether an ID has been seen, remembering it if it might not have been
+     */
+    public synchronized Seen claim(long transactionId) {
+        Seen seen = check(transactionId);
+        if (seen != Seen.YES) {
+            add(transactionId);
+        }
+        return seen;
+    }
+
+    /**
+     * Whether an ID has been seen, without remembering it
+     */
+    public synchronized Seen check(long transactionId) {
+        if (!loaded) {
+            return Seen.MAYBE;
+        }
+        if (recent.contains(transactionId)) {
+            return Seen.YES;
+        }
+        if (history.mightContain(transactionId)) {
+            uncertain++;
+            return Seen.MAYBE;
+        }
+        return Seen.NO;
+    }
+
+    /**
+     * Forget an ID that was deleted or never committed; later checks of it fall back to {@link Seen#MAYBE}
+     */
+    public synchronized void release(long transactionId) {
+        recent.remove(transactionId);
+    }
+
+    /**
+     * Start over from the given stored IDs, the most recent last
+     */
+    public synchronized void rebuild(Iterable<Long> transactionIds) {
+        reset();
+        for (Long transactionId : transactionIds) {
+            add(transactionId);
+        }
+        loaded = true;
+    }
+
+    /**
+     * Forget every ID, as when all transactions are deleted
+     */
+    public synchronized void clear() {
+        reset();
+        loaded = true;
+    }
+
+    /** Checks that could not be answered without the database */
+    public synchronized long getUncertainCount() {
+        return uncertain;
+    }
+
+    private void add(long transactionId) {
+        history.put(transactionId);
+        if (!recent.add(transactionId)) {
+            return;
+        }
+        if (ordered == recentCapacity) {
+            recent.remove(order[oldest]);
+            order[oldest] = transactionId;
+            oldest = (oldest + 1) % recentCapacity;
+        } else {
+            order[(oldest + ordered) % recentCapacity] = transactionId;
+            ordered++;
+        }
+    }
+
+    private void reset() {
+        recent.clear();
+        history.clear();
+        oldest = 0;
+        ordered = 0;
+    }
+}
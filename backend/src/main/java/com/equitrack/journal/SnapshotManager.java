@@ -0,0 +1,329 @@
+package com.equitrack.journal;
+
+import com.equitrack.model.Trade;
+import com.equitrack.model.Transaction;
+import com.equitrack.model.TransactionAction;
+import com.equitrack.model.TransactionSide;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary snapshots of the engine's trades, held early transactions and position codes,
+ * each tagged with the journal offset it covers so startup only replays the journal tail.
+ * <p>
+ * A snapshot is written to a temporary file, fsynced and atomically renamed to
+ * {@code snapshot-<journalOffset>.snap}; the trailing CRC32C rejects partial or corrupt
+ * files, in which case the next older snapshot is used. Positions are not stored as
+ * quantities: they are recomputed from the trades on load.
+ * <p>
+ * Each security code is written once, as a symbol record ahead of the first record that uses
+ * it; trades and held transactions refer to it by its position among those symbols.
+ */
+@Component
+@ConditionalOnProperty(name = "equitrack.snapshot.enabled", havingValue = "true")
+public class SnapshotManager {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotManager.class);
+
+    private static final int MAGIC = 0x45545332; // "ETS2"
+    private static final byte RECORD_END = 0;
+    private static final byte RECORD_TRADE = 1;
+    private static final byte RECORD_PENDING = 2;
+    private static final byte RECORD_SYMBOL = 3;
+    private static final Pattern FILE_NAME = Pattern.compile("snapshot-(\\d+)\\.snap");
+
+    private static final TransactionAction[] ACTIONS = TransactionAction.values();
+    private static final TransactionSide[] SIDES = TransactionSide.values();
+
+    private final Path directory;
+    private final long intervalMillis;
+    private final long everyTransactions;
+    private final int retain;
+    private volatile long lastSnapshotMillis = System.currentTimeMillis();
+
+    @Autowired
+    public SnapshotManager(@Value("${equitrack.snapshot.directory:data/snapshots}") String directory,
+                           @Value("${equitrack.snapshot.interval-ms:300000}") long intervalMillis,
+                           @Value("${equitrack.snapshot.every-transactions:1000000}") long everyTransactions,
+                           @Value("${equitrack.snapshot.retain:2}") int retain) {
+        this(Paths.get(directory), intervalMillis, everyTransactions, retain);
+    }
+
+    public SnapshotManager(Path directory, long intervalMillis, long everyTransactions, int retain) {
+        this.directory = directory;
+        this.intervalMillis = intervalMillis;
+        this.everyTransactions = everyTransactions;
+        this.retain = Math.max(1, retain);
+    }
+
+    /**
+     * Whether a snapshot is due, given the number of transactions applied since the last one
+     */
+    public boolean isDue(long transactionsSinceSnapshot) {
+        if (transactionsSinceSnapshot == 0) {
+            return false;
+        }
+        return (everyTransactions > 0 && transactionsSinceSnapshot >= everyTransactions)
+                || (intervalMillis > 0 && System.currentTimeMillis() - lastSnapshotMillis >= intervalMillis);
+    }
+
+    /**
+     * Start writing a snapshot covering the journal up to the given offset
+     */
+    public Writer open(long journalOffset, Collection<String> positionCodes, Collection<Transaction> pending) {
+        try {
+            Files.createDirectories(directory);
+            return new Writer(journalOffset, positionCodes, pending);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create snapshot in " + directory, e);
+        }
+    }
+
+    /**
+     * Load the newest intact snapshot that does not run past the end of the journal
+     */
+    public Optional<Snapshot> loadLatest(long journalEnd) {
+        for (Path file : listSnapshots()) {
+            long offset = offsetOf(file);
+            if (offset > journalEnd) {
+                log.warn("Ignoring snapshot {}: it covers journal offset {} but the journal ends at {}", file, offset, journalEnd);
+                continue;
+            }
+            try {
+                Snapshot snapshot = read(file);
+                log.info("Loaded snapshot {} with {} trades", file, snapshot.getTrades().size());
+                return Optional.of(snapshot);
+            } catch (IOException e) {
+                log.warn("Ignoring unreadable snapshot {}: {}", file, e.getMessage());
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Delete every snapshot (used when all data is reset)
+     */
+    public void deleteAll() {
+        for (Path file : listSnapshots()) {
+            deleteQuietly(file);
+        }
+        lastSnapshotMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Snapshot files, newest first
+     */
+    private List<Path> listSnapshots() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> FILE_NAME.matcher(file.getFileName().toString()).matches())
+                    .sorted(Comparator.comparingLong(SnapshotManager::offsetOf).reversed())
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list snapshots in " + directory, e);
+        }
+    }
+
+    private static long offsetOf(Path file) {
+        Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    private Snapshot read(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 1 << 16), crc);
+             DataInputStream in = new DataInputStream(checked)) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a snapshot file");
+            }
+            long journalOffset = in.readLong();
+            int codeCount = in.readInt();
+            List<String> positionCodes = new ArrayList<>(codeCount);
+            for (int i = 0; i < codeCount; i++) {
+                positionCodes.add(in.readUTF());
+            }
+            List<String> symbols = new ArrayList<>();
+            List<Trade> trades = new ArrayList<>();
+            List<Transaction> pending = new ArrayList<>();
+            byte type;
+            while ((type = in.readByte()) != RECORD_END) {
+                if (type == RECORD_SYMBOL) {
+                    symbols.add(in.readUTF());
+                } else if (type == RECORD_TRADE) {
+                    trades.add(new Trade(in.readLong(), in.readInt(), symbols.get(in.readInt()), in.readInt(),
+                            SIDES[in.readByte()], in.readBoolean()));
+                } else if (type == RECORD_PENDING) {
+                    pending.add(new Transaction(in.readLong(), in.readLong(), in.readInt(), symbols.get(in.readInt()),
+                            in.readInt(), ACTIONS[in.readByte()], SIDES[in.readByte()]));
+                } else {
+                    throw new IOException("Unknown record type " + type);
+                }
+            }
+            int expected = (int) crc.getValue();
+            if (in.readInt() != expected) {
+                throw new IOException("Checksum mismatch");
+            }
+            return new Snapshot(journalOffset, positionCodes, trades, pending);
+        }
+    }
+
+    private void prune() {
+        List<Path> files = listSnapshots();
+        for (int i = retain; i < files.size(); i++) {
+            deleteQuietly(files.get(i));
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete snapshot {}", file, e);
+        }
+    }
+
+    /**
+     * Streams one snapshot to a temporary file; {@link #commit()} publishes it, closing without committing discards it
+     */
+    public class Writer implements AutoCloseable {
+        private final long journalOffset;
+        private final Path temporary;
+        private final FileOutputStream fileOut;
+        private final CRC32C crc = new CRC32C();
+        private final DataOutputStream out;
+        private final Map<String, Integer> symbols = new HashMap<>();
+        private long trades;
+        private boolean committed;
+
+        private Writer(long journalOffset, Collection<String> positionCodes, Collection<Transaction> pending) throws IOException {
+            this.journalOffset = journalOffset;
+            this.temporary = directory.resolve("snapshot-" + journalOffset + ".tmp");
+            this.fileOut = new FileOutputStream(temporary.toFile());
+            this.out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(fileOut, 1 << 16), crc));
+            out.writeInt(MAGIC);
+            out.writeLong(journalOffset);
+            out.writeInt(positionCodes.size());
+            for (String code : positionCodes) {
+                out.writeUTF(code);
+            }
+            for (Transaction transaction : pending) {
+                int symbol = symbolOf(transaction.getSecurityCode());
+                out.writeByte(RECORD_PENDING);
+                out.writeLong(transaction.getTransactionId());
+                out.writeLong(transaction.getTradeId());
+                out.writeInt(transaction.getVersion());
+                out.writeInt(symbol);
+                out.writeInt(transaction.getQuantity());
+                out.writeByte(transaction.getAction().ordinal());
+                out.writeByte(transaction.getSide().ordinal());
+            }
+        }
+
+        /**
+         * Append one trade
+         */
+        public void writeTrade(Trade trade) {
+            try {
+                int symbol = symbolOf(trade.getSecurityCode());
+                out.writeByte(RECORD_TRADE);
+                out.writeLong(trade.getTradeId());
+                out.writeInt(trade.getCurrentVersion());
+                out.writeInt(symbol);
+                out.writeInt(trade.getQuantity());
+                out.writeByte(trade.getSide().ordinal());
+                out.writeBoolean(Boolean.TRUE.equals(trade.getIsCancelled()));
+                trades++;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write snapshot " + temporary, e);
+            }
+        }
+
+        /**
+         * Symbol number of a security code, writing its symbol record the first time it is seen
+         */
+        private int symbolOf(String securityCode) throws IOException {
+            Integer symbol = symbols.get(securityCode);
+            if (symbol == null) {
+                out.writeByte(RECORD_SYMBOL);
+                out.writeUTF(securityCode);
+                symbol = symbols.size();
+                symbols.put(securityCode, symbol);
+            }
+            return symbol;
+        }
+
+        /**
+         * Seal, fsync and publish the snapshot, then drop the ones beyond the retention count
+         */
+        public void commit() {
+            try {
+                out.writeByte(RECORD_END);
+                out.flush();
+                out.writeInt((int) crc.getValue());
+                out.flush();
+                fileOut.getFD().sync();
+                out.close();
+                Path target = directory.resolve("snapshot-" + journalOffset + ".snap");
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                committed = true;
+                lastSnapshotMillis = System.currentTimeMillis();
+                log.info("Wrote snapshot {} with {} trades", target, trades);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot commit snapshot " + temporary, e);
+            }
+            prune();
+        }
+
+        @Override
+        public void close() {
+            if (!committed) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    log.debug("Failed to close snapshot {}", temporary, e);
+                }
+                deleteQuietly(temporary);
+            }
+        }
+    }
+
+    /**
+     * Contents of a loaded snapshot
+     */
+    public static class Snapshot {
+        private final long journalOffset;
+        private final List<String> positionCodes;
+        private final List<Trade> trades;
+        private final List<Transaction> pendingTransactions;
+
+        public Snapshot(long journalOffset, List<String> positionCodes, List<Trade> trades, List<Transaction> pendingTransactions) {
+            this.journalOffset = journalOffset;
+            this.positionCodes = positionCodes;
+            this.trades = trades;
+            this.pendingTransactions = pendingTransactions;
+        }
+
+        public long getJournalOffset() { return journalOffset; }
+        public List<String> getPositionCodes() { return positionCodes; }
+        public List<Trade> getTrades() { return trades; }
+        public List<Transaction> getPendingTransactions() { return pendingTransactions; }
+    }
+}
@@ -0,0 +1,507 @@
+package com.equitrack.journal;
+
+import com.equitrack.model.Transaction;
+import com.equitrack.model.TransactionAction;
+import com.equitrack.model.TransactionSide;
+import com.equitrack.symbol.SymbolTable;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only binary journal of transactions and deletions, written through a memory-mapped file.
+ * <p>
+ * The file is mapped one fixed-size region at a time. Each record is
+ * {@code [int length][int crc32c][payload]}; a length of 0 marks the end of the data and
+ * {@link #REGION_SKIP} means the rest of the region is unused. On open the journal is scanned,
+ * and a record with an impossible length or a bad checksum is treated as a torn write: it and
+ * everything after it is discarded.
+ * <p>
+ * Security codes are written once per journal as symbol records carrying their
+ * {@link SymbolTable} ID, and transactions refer to the ID. IDs are always written as a dense
+ * prefix of the table, so opening the journal restores them into the table unchanged.
+ * <p>
+ * Durability follows {@code equitrack.journal.fsync}: {@code always} forces the mapped pages
+ * before {@link #sync(long)} returns (concurrent callers share one force), {@code interval}
+ * forces them on a schedule and {@code none} leaves it to the operating system.
+ */
+@Component
+@ConditionalOnProperty(name = "equitrack.journal.enabled", havingValue = "true")
+public class TransactionJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionJournal.class);
+
+    static final int HEADER_SIZE = 8;
+    static final int REGION_SKIP = -1;
+    private static final int MAX_PAYLOAD_SIZE = 512;
+
+    /** Transaction carrying its security code; written before symbol records existed and still read */
+    static final byte TYPE_TRANSACTION_WITH_CODE = 1;
+    static final byte TYPE_TRANSACTION_DELETED = 2;
+    static final byte TYPE_TRADE_DELETED = 3;
+    static final byte TYPE_POSITION_DELETED = 4;
+    static final byte TYPE_SYMBOL = 5;
+    static final byte TYPE_TRANSACTION = 6;
+
+    private static final TransactionAction[] ACTIONS = TransactionAction.values();
+    private static final TransactionSide[] SIDES = TransactionSide.values();
+
+    public enum FsyncPolicy {
+        ALWAYS,
+        INTERVAL,
+        NONE
+    }
+
+    /**
+     * Receives journal records in append order during {@link #replay}
+     */
+    public interface ReplayHandler {
+        void onTransaction(Transaction transaction);
+
+        default void onTransactionDeleted(long transactionId) {
+        }
+
+        default void onTradeDeleted(long tradeId) {
+        }
+
+        default void onPositionDeleted(String securityCode) {
+        }
+    }
+
+    private final Path file;
+    private final int regionSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final SymbolTable symbols;
+
+    private final ByteBuffer scratch = ByteBuffer.allocate(MAX_PAYLOAD_SIZE);
+    private final CRC32C crc = new CRC32C();
+    private final Object syncLock = new Object();
+
+    private FileChannel channel;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long position;
+    private long appended;
+    /** Symbol IDs below this have a record in the journal */
+    private int symbolsWritten;
+    private volatile long syncedPosition;
+
+    @Autowired
+    public TransactionJournal(@Value("${equitrack.journal.directory:data/journal}") String directory,
+                              @Value("${equitrack.journal.region-size-mb:64}") int regionSizeMb,
+                              @Value("${equitrack.journal.fsync:interval}") String fsyncPolicy,
+                              SymbolTable symbols) {
+        this(Paths.get(directory).resolve("transactions.journal"), regionSizeMb * 1024 * 1024,
+                FsyncPolicy.valueOf(fsyncPolicy.toUpperCase()), symbols);
+    }
+
+    public TransactionJournal(Path file, int regionSize, FsyncPolicy fsyncPolicy) {
+        this(file, regionSize, fsyncPolicy, new SymbolTable());
+    }
+
+    public TransactionJournal(Path file, int regionSize, FsyncPolicy fsyncPolicy, SymbolTable symbols) {
+        this.file = file;
+        this.regionSize = regionSize;
+        this.fsyncPolicy = fsyncPolicy;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Open the journal file, truncate any torn tail and restore its symbols into the table
+     */
+    @PostConstruct
+    public synchronized void open() {
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long end = scan(0, 0, null, null, null);
+            truncateAfter(end);
+            syncedPosition = end;
+            log.info("Opened journal {} at offset {} with {} symbols and fsync policy {}", file, end, symbolsWritten, fsyncPolicy);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open journal " + file, e);
+        }
+    }
+
+    /**
+     * Replay every intact record in append order; call before the first append
+     */
+    public void replay(ReplayHandler handler) {
+        replay(0, handler, handler);
+    }
+
+    /**
+     * Replay every intact record in append order, passing records that start before
+     * {@code fromOffset} to {@code prefix} and the rest to {@code tail}; call before the first append
+     */
+    public void replay(long fromOffset, ReplayHandler prefix, ReplayHandler tail) {
+        replay(fromOffset, fromOffset, prefix, tail, tail);
+    }
+
+    /**
+     * Replay every intact record in append order, passing records that start before
+     * {@code firstOffset} to {@code first}, those before {@code secondOffset} to {@code second} and
+     * the rest to {@code tail}. While a handler runs, {@link #getPosition()} is the end of the record
+     * it was passed. Call before the first append.
+     */
+    public synchronized void replay(long firstOffset, long secondOffset, ReplayHandler first, ReplayHandler second, ReplayHandler tail) {
+        try {
+            scan(firstOffset, secondOffset, first, second, tail);
+            mapRegion(position - position % regionSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot replay journal " + file, e);
+        }
+    }
+
+    /**
+     * Append a transaction; returns the journal offset to pass to {@link #sync(long)}
+     */
+    public synchronized long append(Transaction transaction) {
+        writeTransaction(transaction);
+        return position;
+    }
+
+    /**
+     * Append a batch of transactions; returns the journal offset after the last one
+     */
+    public synchronized long appendAll(List<Transaction> transactions) {
+        for (Transaction transaction : transactions) {
+            writeTransaction(transaction);
+        }
+        return position;
+    }
+
+    /**
+     * Record that a transaction was deleted
+     */
+    public synchronized long appendTransactionDeleted(long transactionId) {
+        scratch.clear();
+        scratch.put(TYPE_TRANSACTION_DELETED).putLong(transactionId);
+        return write();
+    }
+
+    /**
+     * Record that a trade was deleted
+     */
+    public synchronized long appendTradeDeleted(long tradeId) {
+        scratch.clear();
+        scratch.put(TYPE_TRADE_DELETED).putLong(tradeId);
+        return write();
+    }
+
+    /**
+     * Record that a position was deleted
+     */
+    public synchronized long appendPositionDeleted(String securityCode) {
+        scratch.clear();
+        scratch.put(TYPE_POSITION_DELETED);
+        putCode(securityCode);
+        return write();
+    }
+
+    /**
+     * Make everything up to the given offset durable according to the fsync policy.
+     * Whoever forces first covers every record written so far, so concurrent callers share one force.
+     */
+    public void sync(long upTo) {
+        if (fsyncPolicy != FsyncPolicy.ALWAYS || syncedPosition >= upTo) {
+            return;
+        }
+        force();
+    }
+
+    /**
+     * Force written pages to disk on the configured interval
+     */
+    @Scheduled(fixedDelayString = "${equitrack.journal.fsync-interval-ms:10}")
+    public void periodicSync() {
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            force();
+        }
+    }
+
+    /**
+     * Force everything written so far to disk, whatever the fsync policy
+     */
+    public void force() {
+        synchronized (syncLock) {
+            long target;
+            MappedByteBuffer buffer;
+            long start;
+            synchronized (this) {
+                target = position;
+                buffer = region;
+                start = regionStart;
+            }
+            if (buffer == null || syncedPosition >= target) {
+                return;
+            }
+            int from = (int) Math.max(0, syncedPosition - start);
+            buffer.force(from, (int) (target - start) - from);
+            syncedPosition = target;
+        }
+    }
+
+    /**
+     * Discard everything (used when all data is reset)
+     */
+    public void reset() {
+        synchronized (syncLock) {
+            synchronized (this) {
+                try {
+                    // Never touch the old mapping again once the file shrinks underneath it
+                    region = null;
+                    channel.truncate(0);
+                    mapRegion(0);
+                    position = 0;
+                    syncedPosition = 0;
+                    symbolsWritten = 0;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot reset journal " + file, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Current end of the journal in bytes
+     */
+    public synchronized long getPosition() {
+        return position;
+    }
+
+    /**
+     * Records appended since the journal was opened
+     */
+    public synchronized long getAppendedCount() {
+        return appended;
+    }
+
+    /**
+     * Force the tail and close the file
+     */
+    @PreDestroy
+    public void close() {
+        synchronized (syncLock) {
+            synchronized (this) {
+                try {
+                    if (region != null && fsyncPolicy != FsyncPolicy.NONE) {
+                        region.force();
+                    }
+                    region = null;
+                    if (channel != null) {
+                        channel.close();
+                    }
+                } catch (IOException e) {
+                    log.warn("Failed to close journal {}", file, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write a transaction, preceded by records for any symbol IDs up to its own that the journal lacks
+     */
+    private void writeTransaction(Transaction transaction) {
+        int symbol = symbols.intern(transaction.getSecurityCode());
+        while (symbolsWritten <= symbol) {
+            scratch.clear();
+            scratch.put(TYPE_SYMBOL).putInt(symbolsWritten);
+            putCode(symbols.code(symbolsWritten));
+            write();
+            symbolsWritten++;
+        }
+        scratch.clear();
+        scratch.put(TYPE_TRANSACTION)
+                .putLong(transaction.getTransactionId())
+                .putLong(transaction.getTradeId())
+                .putInt(transaction.getVersion())
+                .putInt(transaction.getQuantity())
+                .put((byte) transaction.getAction().ordinal())
+                .put((byte) transaction.getSide().ordinal())
+                .putInt(symbol);
+        write();
+    }
+
+    private void putCode(String securityCode) {
+        byte[] bytes = securityCode.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > SymbolTable.MAX_CODE_LENGTH) {
+            throw new IllegalArgumentException("Security code too long for the journal: " + securityCode);
+        }
+        scratch.put((byte) bytes.length).put(bytes);
+    }
+
+    /**
+     * Write the encoded payload in {@link #scratch} as the next record
+     */
+    private long write() {
+        int length = scratch.position();
+        crc.reset();
+        crc.update(scratch.array(), 0, length);
+        int recordSize = HEADER_SIZE + length;
+        try {
+            int offset = (int) (position - regionStart);
+            if (regionSize - offset < recordSize) {
+                if (regionSize - offset >= 4) {
+                    region.putInt(offset, REGION_SKIP);
+                }
+                if (fsyncPolicy != FsyncPolicy.NONE) {
+                    region.force();
+                }
+                mapRegion(regionStart + regionSize);
+                position = regionStart;
+                offset = 0;
+            }
+            region.put(offset + HEADER_SIZE, scratch.array(), 0, length);
+            region.putInt(offset + 4, (int) crc.getValue());
+            // Length goes last so a record is never visible before its payload
+            region.putInt(offset, length);
+            position += recordSize;
+            appended++;
+            return position;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot extend journal " + file, e);
+        }
+    }
+
+    /**
+     * Walk the records from the start, restoring symbols and passing the rest to the handlers if there are any.
+     * Sets {@link #position} to the end of the last intact record and returns it.
+     */
+    private long scan(long firstOffset, long secondOffset, ReplayHandler first, ReplayHandler second,
+                      ReplayHandler tail) throws IOException {
+        long fileSize = channel.size();
+        long pos = 0;
+        long records = 0;
+        while (pos + HEADER_SIZE <= fileSize) {
+            long start = pos - pos % regionSize;
+            if (region == null || regionStart != start) {
+                mapRegion(start);
+            }
+            int offset = (int) (pos - start);
+            if (regionSize - offset < HEADER_SIZE) {
+                pos = start + regionSize;
+                continue;
+            }
+            int length = region.getInt(offset);
+            if (length == 0) {
+                break;
+            }
+            if (length == REGION_SKIP) {
+                pos = start + regionSize;
+                continue;
+            }
+            if (length < 0 || length > MAX_PAYLOAD_SIZE || length > regionSize - offset - HEADER_SIZE) {
+                log.warn("Torn journal record at offset {} (length {}), truncating", pos, length);
+                break;
+            }
+            ByteBuffer payload = region.duplicate().position(offset + HEADER_SIZE).limit(offset + HEADER_SIZE + length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != region.getInt(offset + 4)) {
+                log.warn("Journal checksum mismatch at offset {}, truncating", pos);
+                break;
+            }
+            ReplayHandler handler = pos < firstOffset ? first : pos < secondOffset ? second : tail;
+            position = pos + HEADER_SIZE + length;
+            if (payload.get(payload.position()) == TYPE_SYMBOL) {
+                restoreSymbol(payload.position(payload.position() + 1));
+            } else if (handler != null) {
+                dispatch(payload, handler);
+            }
+            records++;
+            pos = position;
+        }
+        position = pos;
+        if (tail != null) {
+            log.info("Read {} journal records, replaying from offset {}", records, firstOffset);
+        }
+        return pos;
+    }
+
+    private void dispatch(ByteBuffer payload, ReplayHandler handler) {
+        byte type = payload.get();
+        switch (type) {
+            case TYPE_TRANSACTION:
+            case TYPE_TRANSACTION_WITH_CODE:
+                Transaction transaction = new Transaction();
+                transaction.setTransactionId(payload.getLong());
+                transaction.setTradeId(payload.getLong());
+                transaction.setVersion(payload.getInt());
+                transaction.setQuantity(payload.getInt());
+                transaction.setAction(ACTIONS[payload.get()]);
+                transaction.setSide(SIDES[payload.get()]);
+                transaction.setSecurityCode(type == TYPE_TRANSACTION ? symbols.code(payload.getInt()) : getCode(payload));
+                handler.onTransaction(transaction);
+                break;
+            case TYPE_TRANSACTION_DELETED:
+                handler.onTransactionDeleted(payload.getLong());
+                break;
+            case TYPE_TRADE_DELETED:
+                handler.onTradeDeleted(payload.getLong());
+                break;
+            case TYPE_POSITION_DELETED:
+                handler.onPositionDeleted(getCode(payload));
+                break;
+            default:
+                log.warn("Skipping journal record of unknown type {}", type);
+        }
+    }
+
+    private void restoreSymbol(ByteBuffer payload) {
+        int id = payload.getInt();
+        symbols.restore(id, getCode(payload));
+        symbolsWritten = Math.max(symbolsWritten, id + 1);
+    }
+
+    private static String getCode(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.get() & 0xFF];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Zero whatever follows the end in its region and drop later regions, so a torn tail cannot resurface
+     */
+    private void truncateAfter(long end) throws IOException {
+        long start = end - end % regionSize;
+        long fileSize = channel.size();
+        // Drop later mappings first; the file must not shrink under a live mapping
+        region = null;
+        if (fileSize > start + regionSize) {
+            channel.truncate(start + regionSize);
+        }
+        mapRegion(start);
+        byte[] zeros = new byte[64 * 1024];
+        for (int offset = (int) (end - start); offset < regionSize; offset += zeros.length) {
+            region.put(offset, zeros, 0, Math.min(zeros.length, regionSize - offset));
+        }
+        position = end;
+    }
+
+    private void mapRegion(long start) throws IOException {
+        region = channel.map(FileChannel.MapMode.READ_WRITE, start, regionSize);
+        regionStart = start;
+    }
+}
@@ -0,0 +1,145 @@
+package com.equitrack.metrics;
+
+import com.equitrack.journal.TransactionJournal;
+import com.equitrack.service.HybridPositionService;
+import com.equitrack.service.PositionManager;
+import com.equitrack.service.PositionReconciler;
+import com.equitrack.service.PositionServiceJPA;
+import com.equitrack.service.SingleWriterIngestor;
+import com.equitrack.service.VersionChainCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Engine state read at scrape time, so none of it costs anything on the processing path.
+ * In jpa mode the trade and security counts are table counts, so a scrape only runs them
+ * once {@code equitrack.metrics.count-refresh-ms} has passed and otherwise reports the last result.
+ */
+@Component
+public class EngineGauges implements MeterBinder {
+
+    private final PositionManager positionManager;
+    private final Optional<TransactionJournal> journal;
+    private final SingleWriterIngestor writer;
+    private final PositionReconciler reconciler;
+    private final PositionServiceJPA store;
+    private final long countRefreshMillis;
+
+    public EngineGauges(PositionManager positionManager, Optional<TransactionJournal> journal,
+                        SingleWriterIngestor writer, PositionReconciler reconciler, PositionServiceJPA store,
+                        @Value("${equitrack.metrics.count-refresh-ms:30000}") long countRefreshMillis) {
+        this.positionManager = positionManager;
+        this.journal = journal;
+        this.writer = writer;
+        this.reconciler = reconciler;
+        this.store = store;
+        this.countRefreshMillis = countRefreshMillis;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        // The in-memory engine keeps its counts; the database has to count rows
+        long maxAgeMillis = positionManager instanceof HybridPositionService ? 0 : countRefreshMillis;
+        Gauge.builder("equitrack.trades", new CachedCount(positionManager::getTradeCount, maxAgeMillis), CachedCount::get)
+                .description("Number of trades")
+                .strongReference(true)
+                .register(registry);
+        Gauge.builder("equitrack.securities", new CachedCount(positionManager::getSecurityCount, maxAgeMillis), CachedCount::get)
+                .description("Number of securities with a position")
+                .strongReference(true)
+                .register(registry);
+        Gauge.builder("equitrack.pending", positionManager, PositionManager::getPendingCount)
+                .description("Early transactions waiting for their previous version")
+                .register(registry);
+        FunctionCounter.builder("equitrack.transactions.stale", positionManager, PositionManager::getStaleCount)
+                .description("Transactions ignored because their trade already had that version")
+                .register(registry);
+        FunctionCounter.builder("equitrack.transactions.dropped", positionManager, PositionManager::getDroppedPendingCount)
+                .description("Early transactions dropped by TTL expiry or a full buffer")
+                .register(registry);
+
+        if (positionManager instanceof HybridPositionService) {
+            Gauge.builder("equitrack.write.behind.backlog", (HybridPositionService) positionManager,
+                            HybridPositionService::getBacklogSize)
+                    .description("Writes waiting to be persisted")
+                    .register(registry);
+        }
+        FunctionCounter.builder("equitrack.reconciliation.drifts", reconciler, PositionReconciler::getDriftsFound)
+                .description("Stored positions found out of step with their trades")
+                .register(registry);
+        FunctionCounter.builder("equitrack.reconciliation.repairs", reconciler, PositionReconciler::getDriftsRepaired)
+                .description("Drifted positions reset from their trades")
+                .register(registry);
+        VersionChainCache versionChains = store.getVersionChains();
+        Gauge.builder("equitrack.trade.history.trades", versionChains, VersionChainCache::getTradeCount)
+                .description("Trades whose version chain is cached")
+                .register(registry);
+        Gauge.builder("equitrack.trade.history.size", versionChains, VersionChainCache::getBytes)
+                .description("Estimated size of the cached version chains")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("equitrack.trade.history.hits", versionChains, VersionChainCache::getHits)
+                .description("Trade history lookups answered from a cached version chain")
+                .register(registry);
+        FunctionCounter.builder("equitrack.trade.history.misses", versionChains, VersionChainCache::getMisses)
+                .description("Trade history lookups read from the database")
+                .register(registry);
+        FunctionCounter.builder("equitrack.trade.history.evictions", versionChains, VersionChainCache::getEvictions)
+                .description("Version chains evicted to stay within equitrack.trade-history.max-kb")
+                .register(registry);
+        if (writer.isEnabled()) {
+            Gauge.builder("equitrack.writer.queue", writer, SingleWriterIngestor::getQueueSize)
+                    .description("Transactions waiting for the single writer")
+                    .register(registry);
+            FunctionCounter.builder("equitrack.writer.commits", writer, SingleWriterIngestor::getCommitCount)
+                    .description("Commits made by the single writer; transactions per commit is the group commit size")
+                    .register(registry);
+            FunctionCounter.builder("equitrack.writer.transactions", writer, SingleWriterIngestor::getWrittenCount)
+                    .description("Transactions applied by the single writer")
+                    .register(registry);
+        }
+        journal.ifPresent(transactionJournal -> {
+            Gauge.builder("equitrack.journal.position", transactionJournal, TransactionJournal::getPosition)
+                    .description("Journal size in bytes")
+                    .baseUnit("bytes")
+                    .register(registry);
+            FunctionCounter.builder("equitrack.journal.appends", transactionJournal, TransactionJournal::getAppendedCount)
+                    .description("Records appended to the journal")
+                    .register(registry);
+        });
+    }
+
+    /**
+     * A count read again only once it is older than {@code maxAgeMillis}
+     */
+    static final class CachedCount {
+        private final LongSupplier source;
+        private final long maxAgeNanos;
+        private long value;
+        private long readAt;
+        private boolean read;
+
+        CachedCount(LongSupplier source, long maxAgeMillis) {
+            this.source = source;
+            this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxAgeMillis));
+        }
+
+        synchronized double get() {
+            long now = System.nanoTime();
+            if (!read || now - readAt >= maxAgeNanos) {
+                value = source.getAsLong();
+                readAt = now;
+                read = true;
+            }
+            return value;
+        }
+    }
+}
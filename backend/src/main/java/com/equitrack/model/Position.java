@@ -10,13 +10,13 @@ public class Position {
     private String securityCode;
     
     @JsonProperty("quantity")
-    private Integer quantity;
+    private Long quantity;
 
     // Default constructor
     public Position() {}
 
     // Constructor with all fields
-    public Position(String securityCode, Integer quantity) {
+    public Position(String securityCode, Long quantity) {
         this.securityCode = securityCode;
         this.quantity = quantity;
     }
@@ -30,11 +30,11 @@ public class Position {
         this.securityCode = securityCode;
     }
 
-    public Integer getQuantity() {
+    public Long getQuantity() {
         return quantity;
     }
 
-    public void setQuantity(Integer quantity) {
+    public void setQuantity(Long quantity) {
         this.quantity = quantity;
     }
 
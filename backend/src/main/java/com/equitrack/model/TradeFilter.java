@@ -0,0 +1,53 @@
+package com.equitrack.model;
+
+/**
+ * Optional criteria for listing trades; unset fields match everything
+ */
+public class TradeFilter {
+
+    private String securityCode;
+    private TransactionSide side;
+    private Boolean cancelled;
+
+    // Default constructor
+    public TradeFilter() {}
+
+    // Constructor with all fields
+    public TradeFilter(String securityCode, TransactionSide side, Boolean cancelled) {
+        this.securityCode = securityCode;
+        this.side = side;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * Whether no criterion is set
+     */
+    public boolean isEmpty() {
+        return securityCode == null && side == null && cancelled == null;
+    }
+
+    // Getters and Setters
+    public String getSecurityCode() {
+        return securityCode;
+    }
+
+    public void setSecurityCode(String securityCode) {
+        this.securityCode = securityCode;
+    }
+
+    public TransactionSide getSide() {
+        return side;
+    }
+
+    public void setSide(TransactionSide side) {
+        this.side = side;
+    }
+
+    public Boolean getCancelled() {
+        return cancelled;
+    }
+
+    public void setCancelled(Boolean cancelled) {
+        this.cancelled = cancelled;
+    }
+}
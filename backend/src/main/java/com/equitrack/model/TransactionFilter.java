@@ -0,0 +1,63 @@
+package com.equitrack.model;
+
+/**
+ * Optional criteria for listing transactions; unset fields match everything
+ */
+public class TransactionFilter {
+
+    private Long tradeId;
+    private String securityCode;
+    private TransactionSide side;
+    private TransactionAction action;
+
+    // Default constructor
+    public TransactionFilter() {}
+
+    // Constructor with all fields
+    public TransactionFilter(Long tradeId, String securityCode, TransactionSide side, TransactionAction action) {
+        this.tradeId = tradeId;
+        this.securityCode = securityCode;
+        this.side = side;
+        this.action = action;
+    }
+
+    /**
+     * Whether no criterion is set
+     */
+    public boolean isEmpty() {
+        return tradeId == null && securityCode == null && side == null && action == null;
+    }
+
+    // Getters and Setters
+    public Long getTradeId() {
+        return tradeId;
+    }
+
+    public void setTradeId(Long tradeId) {
+        this.tradeId = tradeId;
+    }
+
+    public String getSecurityCode() {
+        return securityCode;
+    }
+
+    public void setSecurityCode(String securityCode) {
+        this.securityCode = securityCode;
+    }
+
+    public TransactionSide getSide() {
+        return side;
+    }
+
+    public void setSide(TransactionSide side) {
+        this.side = side;
+    }
+
+    public TransactionAction getAction() {
+        return action;
+    }
+
+    public void setAction(TransactionAction action) {
+        this.action = action;
+    }
+}
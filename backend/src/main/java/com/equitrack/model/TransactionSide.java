@@ -1,5 +1,8 @@
 package com.equitrack.model;
 
+/**
+ * Stored by ordinal: only ever append new constants
+ */
 public enum TransactionSide {
     Buy,
     Sell
@@ -0,0 +1,41 @@
+package com.equitrack.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.OptionalLong;
+
+/**
+ * The journal offset the stored rows reach, as a single row of {@code journal_state}, through plain JDBC on the caller's transaction
+ */
+@Repository
+public class JournalStateRepository {
+
+    private static final int ROW_ID = 1;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JournalStateRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Stored offset, empty if the rows were not written from the journal
+     */
+    public OptionalLong find() {
+        List<Long> offsets = jdbcTemplate.queryForList(
+                "SELECT journal_offset FROM journal_state WHERE id = ?", Long.class, ROW_ID);
+        return offsets.isEmpty() ? OptionalLong.empty() : OptionalLong.of(offsets.get(0));
+    }
+
+    public void save(long journalOffset) {
+        if (jdbcTemplate.update("UPDATE journal_state SET journal_offset = ? WHERE id = ?", journalOffset, ROW_ID) == 0) {
+            jdbcTemplate.update("INSERT INTO journal_state (id, journal_offset) VALUES (?, ?)", ROW_ID, journalOffset);
+        }
+    }
+
+    public void delete() {
+        jdbcTemplate.update("DELETE FROM journal_state WHERE id = ?", ROW_ID);
+    }
+}
@@ -1,22 +1,37 @@
 package com.equitrack.repository;
 
 import com.equitrack.entity.Position;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface PositionRepository extends JpaRepository<Position, Long> {
+public interface PositionRepository extends JpaRepository<Position, Long>, PositionRepositoryCustom {
     
     /**
      * Find position by security code
      */
     Optional<Position> findBySecurityCode(String securityCode);
     
+    /**
+     * Find position by security code, locking its row until the transaction ends
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Position p WHERE p.securityCode = :securityCode")
+    Optional<Position> findBySecurityCodeForUpdate(@Param("securityCode") String securityCode);
+    
+    /**
+     * Find positions by a set of security codes
+     */
+    List<Position> findBySecurityCodeIn(Collection<String> securityCodes);
+    
     /**
      * Find all positions ordered by security code
      */
@@ -25,17 +40,17 @@ public interface PositionRepository extends JpaRepository<Position, Long> {
     /**
      * Find positions with positive quantity (long positions)
      */
-    List<Position> findByQuantityGreaterThanOrderBySecurityCodeAsc(Integer quantity);
+    List<Position> findByQuantityGreaterThanOrderBySecurityCodeAsc(Long quantity);
     
     /**
      * Find positions with negative quantity (short positions)
      */
-    List<Position> findByQuantityLessThanOrderBySecurityCodeAsc(Integer quantity);
+    List<Position> findByQuantityLessThanOrderBySecurityCodeAsc(Long quantity);
     
     /**
      * Find positions with zero quantity (flat positions)
      */
-    List<Position> findByQuantityOrderBySecurityCodeAsc(Integer quantity);
+    List<Position> findByQuantityOrderBySecurityCodeAsc(Long quantity);
     
     /**
      * Check if position exists by security code
@@ -50,17 +65,17 @@ public interface PositionRepository extends JpaRepository<Position, Long> {
     /**
      * Count positions with positive quantity
      */
-    long countByQuantityGreaterThan(Integer quantity);
+    long countByQuantityGreaterThan(Long quantity);
     
     /**
      * Count positions with negative quantity
      */
-    long countByQuantityLessThan(Integer quantity);
+    long countByQuantityLessThan(Long quantity);
     
     /**
      * Count positions with zero quantity
      */
-    long countByQuantity(Integer quantity);
+    long countByQuantity(Long quantity);
     
     /**
      * Find positions by security code pattern (LIKE query)
@@ -72,8 +87,8 @@ public interface PositionRepository extends JpaRepository<Position, Long> {
      * Find positions with quantity in specified range
      */
     @Query("SELECT p FROM Position p WHERE p.quantity BETWEEN :minQuantity AND :maxQuantity ORDER BY p.securityCode ASC")
-    List<Position> findByQuantityBetweenOrderBySecurityCodeAsc(@Param("minQuantity") Integer minQuantity, 
-                                                              @Param("maxQuantity") Integer maxQuantity);
+    List<Position> findByQuantityBetweenOrderBySecurityCodeAsc(@Param("minQuantity") Long minQuantity, 
+                                                              @Param("maxQuantity") Long maxQuantity);
     
     /**
      * Find positions updated after specified date
@@ -0,0 +1,17 @@
+package com.equitrack.repository;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Position writes that cannot be expressed as derived or JPQL queries
+ */
+public interface PositionRepositoryCustom {
+
+    /**
+     * Add each delta to its security's quantity in the database in one atomic statement per security,
+     * sent as a single JDBC batch. Securities in {@code create} get a position if they have none;
+     * deltas for other securities without a position are dropped.
+     */
+    void addToQuantities(Map<String, Long> deltas, Set<String> create);
+}
@@ -0,0 +1,54 @@
+package com.equitrack.repository;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * {@link PositionRepositoryCustom} through plain JDBC, on the caller's transaction
+ */
+public class PositionRepositoryImpl implements PositionRepositoryCustom {
+
+    // A new row takes its ID from the sequence; Hibernate's pooled generator reserves whole
+    // blocks of 50 per sequence value, so IDs handed out here never collide with its own
+    private static final String ADD_TO_QUANTITY_SQL =
+            "MERGE INTO positions p "
+            + "USING (VALUES (CAST(? AS VARCHAR(64)), CAST(? AS BIGINT), CAST(? AS BOOLEAN))) "
+            + "AS d (security_code, delta, create_missing) "
+            + "ON p.security_code = d.security_code "
+            + "WHEN MATCHED THEN UPDATE SET quantity = p.quantity + d.delta, updated_at = LOCALTIMESTAMP "
+            + "WHEN NOT MATCHED AND d.create_missing THEN INSERT (id, security_code, quantity, created_at, updated_at) "
+            + "VALUES (%s, d.security_code, d.delta, LOCALTIMESTAMP, LOCALTIMESTAMP)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String addToQuantitySql;
+
+    public PositionRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Standard NEXT VALUE FOR everywhere except PostgreSQL, whichever storage backend is active
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        String nextId = "PostgreSQL".equals(product) ? "nextval('positions_seq')" : "NEXT VALUE FOR positions_seq";
+        this.addToQuantitySql = String.format(ADD_TO_QUANTITY_SQL, nextId);
+    }
+
+    @Override
+    public void addToQuantities(Map<String, Long> deltas, Set<String> create) {
+        // Rows are always locked in security code order, so concurrent batches cannot deadlock
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        for (Map.Entry<String, Long> delta : new TreeMap<>(deltas).entrySet()) {
+            boolean createMissing = create.contains(delta.getKey());
+            if (createMissing || delta.getValue() != 0) {
+                rows.add(new Object[] {delta.getKey(), delta.getValue(), createMissing});
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(addToQuantitySql, rows);
+        }
+    }
+}
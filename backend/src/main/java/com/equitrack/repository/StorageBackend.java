@@ -0,0 +1,13 @@
+package com.equitrack.repository;
+
+/**
+ * Where the repositories keep their data, selected by Spring profile
+ */
+public enum StorageBackend {
+    /** In-memory H2, empty on every start (default) */
+    MEMORY,
+    /** Embedded file-backed H2 (MVStore) tuned for write throughput ({@code file} profile) */
+    FILE,
+    /** An external database reached through its JDBC driver ({@code jdbc} profile) */
+    JDBC
+}
@@ -0,0 +1,48 @@
+package com.equitrack.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.info.Info;
+import org.springframework.boot.actuate.info.InfoContributor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.DatabaseMetaData;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reports the active storage backend and the database behind it on /actuator/info
+ */
+@Component
+public class StorageInfoContributor implements InfoContributor {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageInfoContributor.class);
+
+    private final Map<String, Object> details = new LinkedHashMap<>();
+
+    public StorageInfoContributor(@Value("${equitrack.storage.backend:memory}") StorageBackend backend,
+                                  JdbcTemplate jdbcTemplate) {
+        details.put("backend", backend);
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            details.put("database", metaData.getDatabaseProductName() + " " + metaData.getDatabaseProductVersion());
+            return null;
+        });
+        log.info("Storage backend {}: {}", backend, details.get("database"));
+    }
+
+    /**
+     * Backend and database product
+     */
+    public Map<String, Object> getDetails() {
+        return details;
+    }
+
+    @Override
+    public void contribute(Info.Builder builder) {
+        builder.withDetail("storage", details);
+    }
+}
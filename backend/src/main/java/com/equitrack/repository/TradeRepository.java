@@ -1,22 +1,31 @@
 package com.equitrack.repository;
 
 import com.equitrack.entity.Trade;
+import com.equitrack.model.TransactionSide;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface TradeRepository extends JpaRepository<Trade, Long> {
+public interface TradeRepository extends JpaRepository<Trade, Long>, JpaSpecificationExecutor<Trade> {
     
     /**
      * Find trade by trade ID
      */
     Optional<Trade> findByTradeId(Long tradeId);
     
+    /**
+     * Find trades by a set of trade IDs
+     */
+    List<Trade> findByTradeIdIn(Collection<Long> tradeIds);
+    
     /**
      * Find all trades ordered by trade ID
      */
@@ -40,7 +49,7 @@ public interface TradeRepository extends JpaRepository<Trade, Long> {
     /**
      * Find trades by side (Buy/Sell)
      */
-    List<Trade> findBySideOrderByTradeIdAsc(String side);
+    List<Trade> findBySideOrderByTradeIdAsc(TransactionSide side);
     
     /**
      * Check if trade exists by trade ID
@@ -70,18 +79,41 @@ public interface TradeRepository extends JpaRepository<Trade, Long> {
     /**
      * Find trades by security code and side
      */
-    List<Trade> findBySecurityCodeAndSideOrderByTradeIdAsc(String securityCode, String side);
+    List<Trade> findBySecurityCodeAndSideOrderByTradeIdAsc(String securityCode, TransactionSide side);
     
     /**
      * Find active trades by security code and side
      */
-    List<Trade> findBySecurityCodeAndSideAndIsCancelledFalseOrderByTradeIdAsc(String securityCode, String side);
+    List<Trade> findBySecurityCodeAndSideAndIsCancelledFalseOrderByTradeIdAsc(String securityCode, TransactionSide side);
     
     /**
      * Delete trade by trade ID
      */
     void deleteByTradeId(Long tradeId);
     
+    /**
+     * Trade IDs after a given one in order; page through with an offset to find chunk boundaries
+     */
+    @Query("SELECT t.tradeId FROM Trade t WHERE t.tradeId > :afterTradeId ORDER BY t.tradeId ASC")
+    List<Long> findTradeIdsAfter(@Param("afterTradeId") Long afterTradeId, Pageable pageable);
+    
+    /**
+     * Net quantity and count of active trades per security, for trade IDs in a range
+     */
+    @Query("SELECT t.securityCode AS securityCode, "
+            + "SUM(CASE WHEN t.side = com.equitrack.model.TransactionSide.Buy THEN t.quantity ELSE -t.quantity END) AS quantity, "
+            + "COUNT(t) AS trades "
+            + "FROM Trade t WHERE t.isCancelled = false AND t.tradeId > :afterTradeId AND t.tradeId <= :lastTradeId "
+            + "GROUP BY t.securityCode")
+    List<SecurityQuantity> sumActiveQuantities(@Param("afterTradeId") Long afterTradeId, @Param("lastTradeId") Long lastTradeId);
+    
+    /**
+     * Net quantity of a security's active trades
+     */
+    @Query("SELECT COALESCE(SUM(CASE WHEN t.side = com.equitrack.model.TransactionSide.Buy THEN t.quantity ELSE -t.quantity END), 0) "
+            + "FROM Trade t WHERE t.isCancelled = false AND t.securityCode = :securityCode")
+    long sumActiveQuantity(@Param("securityCode") String securityCode);
+    
     /**
      * Find trades created after specified date
      */
@@ -93,4 +125,13 @@ public interface TradeRepository extends JpaRepository<Trade, Long> {
      */
     @Query("SELECT t FROM Trade t WHERE t.updatedAt >= :date ORDER BY t.tradeId ASC")
     List<Trade> findByUpdatedAtAfterOrderByTradeIdAsc(@Param("date") java.time.LocalDateTime date);
+    
+    /**
+     * Net quantity of one security's active trades within a chunk
+     */
+    interface SecurityQuantity {
+        String getSecurityCode();
+        Long getQuantity();
+        Long getTrades();
+    }
 }
@@ -1,16 +1,24 @@
 package com.equitrack.repository;
 
 import com.equitrack.entity.Transaction;
+import com.equitrack.model.TransactionAction;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+public interface TransactionRepository extends JpaRepository<Transaction, Long>, JpaSpecificationExecutor<Transaction> {
     
     /**
      * Find transaction by transaction ID
@@ -28,16 +36,68 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
     Optional<Transaction> findByTradeIdAndVersion(Long tradeId, Integer version);
     
     /**
-     * Find the latest version of a trade
+     * Check if transaction exists by transaction ID
      */
-    @Query("SELECT t FROM Transaction t WHERE t.tradeId = :tradeId AND t.version = " +
-           "(SELECT MAX(t2.version) FROM Transaction t2 WHERE t2.tradeId = :tradeId)")
-    Optional<Transaction> findLatestVersionByTradeId(@Param("tradeId") Long tradeId);
+    boolean existsByTransactionId(Long transactionId);
     
     /**
-     * Check if transaction exists by transaction ID
+     * Find which of the given transaction IDs already exist
      */
-    boolean existsByTransactionId(Long transactionId);
+    @Query("SELECT t.transactionId FROM Transaction t WHERE t.transactionId IN :transactionIds")
+    List<Long> findExistingTransactionIds(@Param("transactionIds") Collection<Long> transactionIds);
+    
+    /**
+     * Find the IDs of all transactions
+     */
+    @Query("SELECT t.transactionId FROM Transaction t")
+    List<Long> findAllTransactionIds();
+    
+    /**
+     * Highest row ID, which orders transactions by when they were stored; null when there are none
+     */
+    @Query("SELECT MAX(t.id) FROM Transaction t")
+    Long findMaxId();
+    
+    /**
+     * Row ID of a transaction
+     */
+    @Query("SELECT t.id FROM Transaction t WHERE t.transactionId = :transactionId")
+    Optional<Long> findIdByTransactionId(@Param("transactionId") Long transactionId);
+    
+    /**
+     * Highest row ID in a range recorded at or before a time; null when there is none
+     */
+    @Query("SELECT MAX(t.id) FROM Transaction t WHERE t.id > :afterId AND t.id <= :lastId AND t.recordedAt <= :time")
+    Long findLastIdRecordedBy(@Param("afterId") Long afterId, @Param("lastId") Long lastId,
+                              @Param("time") java.time.LocalDateTime time);
+    
+    /**
+     * Earliest and latest recording time of the rows in a range
+     */
+    @Query("SELECT MIN(t.recordedAt) AS first, MAX(t.recordedAt) AS last FROM Transaction t "
+            + "WHERE t.id > :afterId AND t.id <= :lastId")
+    RecordedRange findRecordedRange(@Param("afterId") Long afterId, @Param("lastId") Long lastId);
+    
+    /**
+     * Trades with a transaction in a row ID range
+     */
+    @Query("SELECT DISTINCT t.tradeId FROM Transaction t WHERE t.id > :afterId AND t.id <= :lastId")
+    List<Long> findTradeIdsBetween(@Param("afterId") Long afterId, @Param("lastId") Long lastId);
+    
+    /**
+     * Transactions of the given trades stored up to a row ID
+     */
+    @Query("SELECT t FROM Transaction t WHERE t.tradeId IN :tradeIds AND t.id <= :lastId")
+    List<Transaction> findByTradeIdInUpTo(@Param("tradeIds") Collection<Long> tradeIds, @Param("lastId") Long lastId);
+    
+    /**
+     * UPDATE and CANCEL transactions stored since a given time ahead of their trade's current version,
+     * i.e. still waiting for the version before them, oldest first
+     */
+    @Query("SELECT t FROM Transaction t WHERE t.action <> com.equitrack.model.TransactionAction.INSERT "
+            + "AND t.recordedAt >= :since AND NOT EXISTS "
+            + "(SELECT 1 FROM Trade tr WHERE tr.tradeId = t.tradeId AND tr.currentVersion >= t.version) ORDER BY t.id")
+    List<Transaction> findUnappliedTransactions(@Param("since") java.time.LocalDateTime since, Pageable pageable);
     
     /**
      * Check if transaction exists by trade ID and version
@@ -49,6 +109,13 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
      */
     List<Transaction> findAllByOrderByTransactionIdAsc();
     
+    /**
+     * Stream all transactions ordered by transaction ID, fetching rows in chunks
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT t FROM Transaction t ORDER BY t.transactionId ASC")
+    Stream<Transaction> streamAllByOrderByTransactionIdAsc();
+    
     /**
      * Find transactions by security code
      */
@@ -57,7 +124,7 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
     /**
      * Find transactions by action type
      */
-    List<Transaction> findByActionOrderByTransactionIdAsc(String action);
+    List<Transaction> findByActionOrderByTransactionIdAsc(TransactionAction action);
     
     /**
      * Count transactions by trade ID
@@ -68,4 +135,12 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
      * Delete all transactions by trade ID
      */
     void deleteByTradeId(Long tradeId);
+    
+    /**
+     * Recording times spanned by a range of rows; both null for an empty range
+     */
+    interface RecordedRange {
+        java.time.LocalDateTime getFirst();
+        java.time.LocalDateTime getLast();
+    }
 }
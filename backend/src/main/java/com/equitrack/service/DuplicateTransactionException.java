@@ -0,0 +1,20 @@
+package com.equitrack.service;
+
+/**
+ * A transaction ID that has already been processed
+ */
+public class DuplicateTransactionException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long transactionId;
+
+    public DuplicateTransactionException(long transactionId) {
+        super("Transaction with ID " + transactionId + " already exists");
+        this.transactionId = transactionId;
+    }
+
+    public long getTransactionId() {
+        return transactionId;
+    }
+}
@@ -0,0 +1,153 @@
+package com.equitrack.service;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Files behind a memory-mapped engine: one rows file per trade segment, one for position
+ * counters, and a checkpoint written on clean shutdown.
+ * <p>
+ * The mapped files are only trusted together with a checkpoint, which records how many rows
+ * each segment holds, the symbol IDs the rows refer to and the journal offset they cover. The
+ * checkpoint is deleted as soon as it has been read, so a crash before the next clean
+ * shutdown leaves none and the next start is cold.
+ */
+final class EngineFiles implements Closeable {
+
+    private static final int MAGIC = 0x45544531; // "ETE1"
+    private static final String CHECKPOINT = "engine.checkpoint";
+
+    private final Path directory;
+    private final FileChannel[] segmentFiles;
+    private final FileChannel positionsFile;
+    private final Checkpoint checkpoint;
+
+    EngineFiles(Path directory, int segments) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+            this.checkpoint = readCheckpoint().orElse(null);
+            Files.deleteIfExists(directory.resolve(CHECKPOINT));
+            this.segmentFiles = new FileChannel[segments];
+            for (int i = 0; i < segments; i++) {
+                segmentFiles[i] = open(String.format("trades-%02d.rows", i));
+            }
+            this.positionsFile = open("positions.cells");
+            if (checkpoint == null) {
+                // Nothing to resume: start the position counters from zeros
+                positionsFile.truncate(0);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open engine storage in " + directory, e);
+        }
+    }
+
+    FileChannel segmentFile(int segment) {
+        return segmentFiles[segment];
+    }
+
+    FileChannel positionsFile() {
+        return positionsFile;
+    }
+
+    /**
+     * Checkpoint left by the last clean shutdown, if there was one
+     */
+    Optional<Checkpoint> getCheckpoint() {
+        return Optional.ofNullable(checkpoint);
+    }
+
+    /**
+     * Write a checkpoint for the current contents of the mapped files, which must already be forced
+     */
+    void writeCheckpoint(Checkpoint checkpoint) {
+        Path temporary = directory.resolve(CHECKPOINT + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temporary.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(MAGIC);
+            out.writeLong(checkpoint.getJournalOffset());
+            out.writeInt(checkpoint.getSymbols().size());
+            for (String code : checkpoint.getSymbols()) {
+                out.writeUTF(code);
+            }
+            out.writeInt(checkpoint.getSegmentRows().length);
+            for (int rows : checkpoint.getSegmentRows()) {
+                out.writeInt(rows);
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write engine checkpoint in " + directory, e);
+        }
+        try {
+            Files.move(temporary, directory.resolve(CHECKPOINT), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot publish engine checkpoint in " + directory, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (FileChannel file : segmentFiles) {
+            file.close();
+        }
+        positionsFile.close();
+    }
+
+    private FileChannel open(String name) throws IOException {
+        return FileChannel.open(directory.resolve(name), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    private Optional<Checkpoint> readCheckpoint() throws IOException {
+        Path file = directory.resolve(CHECKPOINT);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                return Optional.empty();
+            }
+            long journalOffset = in.readLong();
+            int symbolCount = in.readInt();
+            List<String> symbols = new ArrayList<>(symbolCount);
+            for (int i = 0; i < symbolCount; i++) {
+                symbols.add(in.readUTF());
+            }
+            int[] segmentRows = new int[in.readInt()];
+            for (int i = 0; i < segmentRows.length; i++) {
+                segmentRows[i] = in.readInt();
+            }
+            return Optional.of(new Checkpoint(journalOffset, symbols, segmentRows));
+        } catch (EOFException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * What the mapped files held at a clean shutdown
+     */
+    static final class Checkpoint {
+        private final long journalOffset;
+        private final List<String> symbols;
+        private final int[] segmentRows;
+
+        Checkpoint(long journalOffset, List<String> symbols, int[] segmentRows) {
+            this.journalOffset = journalOffset;
+            this.symbols = symbols;
+            this.segmentRows = segmentRows;
+        }
+
+        long getJournalOffset() { return journalOffset; }
+        List<String> getSymbols() { return symbols; }
+        int[] getSegmentRows() { return segmentRows; }
+    }
+}
@@ -0,0 +1,865 @@
+package com.equitrack.service;
+
+import com.equitrack.ids.LongHashSet;
+import com.equitrack.journal.SnapshotManager;
+import com.equitrack.journal.TransactionJournal;
+import com.equitrack.metrics.TransactionMetrics;
+import com.equitrack.model.Position;
+import com.equitrack.model.Trade;
+import com.equitrack.model.TradeFilter;
+import com.equitrack.model.Transaction;
+import com.equitrack.model.TransactionFilter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory position engine with asynchronous JPA write-behind.
+ * Transactions are applied to {@link PositionService} and served from memory; the
+ * transactions and the latest state of the trades and positions they touched are
+ * persisted in batches by a scheduled flush. Enabled with {@code equitrack.engine.mode=hybrid}.
+ * <p>
+ * When the {@link TransactionJournal} is enabled every applied transaction and deletion is
+ * appended to it before the caller returns, and the journal rather than the database is the
+ * source of truth on startup: state is replayed from it, and the database, which records the
+ * journal offset its rows reach with each batch, is brought up to date from the journal after
+ * that offset. Startup refuses to guess when the database holds rows the journal does not
+ * account for. With the {@link SnapshotManager} also enabled, startup loads the latest snapshot
+ * and only re-applies the journal written after it. An engine on memory-mapped storage is checkpointed
+ * on clean shutdown and, with the journal, taken up as it is on the next start, ahead of any snapshot.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "equitrack.engine.mode", havingValue = "hybrid")
+public class HybridPositionService implements PositionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(HybridPositionService.class);
+
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 5_000;
+
+    private final PositionService engine;
+    private final ShardedTransactionProcessor processor;
+    private final PositionServiceJPA store;
+    private final TransactionMetrics metrics;
+    private final TransactionJournal journal;
+    private final SnapshotManager snapshots;
+    private final BlockingQueue<PendingWrite> writeQueue;
+    private final int flushBatchSize;
+    private final int maxFlushAttempts;
+    private final long retryBackoffMillis;
+    private final boolean rebuildDatabase;
+
+    /** Drained batch not yet persisted, retried ahead of the queue; guarded by flushLock */
+    private final List<PendingWrite> unpersisted = new ArrayList<>();
+    /** Set while a batch cannot be persisted; new transactions are rejected until it is */
+    private volatile RuntimeException writeFailure;
+
+    /** Journal records in append order that are not stored yet; guarded by engineLock */
+    private final ArrayDeque<JournalEntry> unstoredEntries = new ArrayDeque<>();
+    /** Journal offset every stored row is covered by; guarded by engineLock */
+    private long storedJournalOffset;
+
+    /** Every stored transaction ID; guarded by engineLock */
+    private final LongHashSet transactionIds = new LongHashSet();
+    private final Object engineLock = new Object();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private final LongAdder transactionsSinceSnapshot = new LongAdder();
+    /** Snapshots are written here, so the scheduler thread shared with flushes and fsyncs is never held up */
+    private final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "equitrack-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean snapshotQueued = new AtomicBoolean();
+
+    public HybridPositionService(PositionService engine,
+                                 ShardedTransactionProcessor processor,
+                                 PositionServiceJPA store,
+                                 TransactionMetrics metrics,
+                                 Optional<TransactionJournal> journal,
+                                 Optional<SnapshotManager> snapshots,
+                                 @Value("${equitrack.write-behind.capacity:100000}") int capacity,
+                                 @Value("${equitrack.write-behind.batch-size:5000}") int flushBatchSize,
+                                 @Value("${equitrack.write-behind.max-attempts:5}") int maxFlushAttempts,
+                                 @Value("${equitrack.write-behind.retry-backoff-ms:100}") long retryBackoffMillis,
+                                 @Value("${equitrack.journal.rebuild-database:false}") boolean rebuildDatabase) {
+        this.engine = engine;
+        this.processor = processor;
+        this.store = store;
+        this.metrics = metrics;
+        this.journal = journal.orElse(null);
+        if (snapshots.isPresent() && this.journal == null) {
+            log.warn("Snapshots need the transaction journal; equitrack.snapshot.enabled is ignored");
+        }
+        this.snapshots = this.journal == null ? null : snapshots.orElse(null);
+        this.writeQueue = new ArrayBlockingQueue<>(capacity);
+        this.flushBatchSize = flushBatchSize;
+        this.maxFlushAttempts = Math.max(1, maxFlushAttempts);
+        this.retryBackoffMillis = Math.max(0, retryBackoffMillis);
+        this.rebuildDatabase = rebuildDatabase;
+    }
+
+    /**
+     * Rebuild in-memory state from the journal if it is enabled, otherwise from the database,
+     * holding the stored early versions again
+     */
+    @PostConstruct
+    public void rebuild() {
+        synchronized (engineLock) {
+            OptionalLong resumed = journal == null ? OptionalLong.empty() : engine.resume(journal.getPosition());
+            if (resumed.isEmpty()) {
+                engine.clear();
+            }
+            transactionIds.clear();
+            if (journal != null) {
+                writeQueue.clear();
+                unstoredEntries.clear();
+                storedJournalOffset = storedJournalOffset();
+                long restoredOffset = 0;
+                Optional<SnapshotManager.Snapshot> snapshot = snapshots == null || resumed.isPresent()
+                        ? Optional.empty()
+                        : snapshots.loadLatest(journal.getPosition());
+                if (resumed.isPresent()) {
+                    restoredOffset = resumed.getAsLong();
+                } else if (snapshot.isPresent()) {
+                    engine.restoreSnapshot(snapshot.get().getTrades(), snapshot.get().getPositionCodes(),
+                            snapshot.get().getPendingTransactions());
+                    restoredOffset = snapshot.get().getJournalOffset();
+                }
+                // The engine already holds what precedes restoredOffset and the database what precedes storedJournalOffset
+                boolean databaseBehind = restoredOffset > storedJournalOffset;
+                journal.replay(Math.min(restoredOffset, storedJournalOffset), Math.max(restoredOffset, storedJournalOffset),
+                        new JournalReplay(false, false),
+                        databaseBehind ? new JournalReplay(false, true) : new JournalReplay(true, false),
+                        new JournalReplay(true, true));
+                flush();
+                if (databaseBehind) {
+                    // Records replayed only into the database may have moved trades off securities it still shows
+                    store.persistState(List.of(), List.of(), engine.getPositions());
+                }
+            } else {
+                // Rows written from here on do not follow the journal, so it must not be replayed onto them
+                store.clearJournalOffset();
+                store.getTrades().forEach(engine::restoreTrade);
+                store.getPositions().forEach(engine::restorePosition);
+                store.getTransactionIds().forEach(transactionIds::add);
+                // Early versions stored while held wait for their predecessor again
+                store.forEachUnappliedTransaction(engine::restorePending);
+            }
+        }
+        log.info("Rebuilt in-memory engine with {} trades and {} positions",
+                engine.getTrades().size(), engine.getPositions().size());
+    }
+
+    /**
+     * Journal offset the database already reaches, refusing to start when the database holds
+     * rows the journal does not account for rather than overwrite or duplicate them
+     */
+    private long storedJournalOffset() {
+        long journalEnd = journal.getPosition();
+        if (rebuildDatabase) {
+            log.warn("equitrack.journal.rebuild-database is set: clearing the database and rebuilding it from the journal");
+            store.clear();
+            return 0;
+        }
+        OptionalLong stored = store.getJournalOffset();
+        if (stored.isEmpty()) {
+            if (store.isEmpty()) {
+                return 0;
+            }
+            throw new IllegalStateException(journalEnd == 0
+                    ? "The transaction journal is empty but the database holds data; restore the journal, "
+                            + "or clear the database or set equitrack.journal.rebuild-database=true to start from the empty journal"
+                    : "The database holds data that was not written from the transaction journal; clear the database "
+                            + "or set equitrack.journal.rebuild-database=true to rebuild it from the journal");
+        }
+        if (stored.getAsLong() > journalEnd) {
+            throw new IllegalStateException("The database reaches journal offset " + stored.getAsLong()
+                    + " but the transaction journal ends at " + journalEnd + "; restore the journal, "
+                    + "or set equitrack.journal.rebuild-database=true to rebuild the database from the journal as it is");
+        }
+        log.info("Database reaches journal offset {} of {}", stored.getAsLong(), journalEnd);
+        return stored.getAsLong();
+    }
+
+    /**
+     * Process a transaction in memory and queue it for persistence; a transaction the engine
+     * rejects leaves nothing behind, so it can be corrected and sent again
+     */
+    public void processTransaction(Transaction transaction) {
+        checkWritable();
+        long start = metrics.start();
+        PendingWrite write;
+        synchronized (engineLock) {
+            if (transactionIds.contains(transaction.getTransactionId())) {
+                metrics.recordDuplicate();
+                throw new DuplicateTransactionException(transaction.getTransactionId());
+            }
+            engine.validate(transaction);
+            String previousSecurityCode = currentSecurityCode(transaction.getTradeId());
+            engine.processTransaction(transaction);
+            transactionIds.add(transaction.getTransactionId());
+            write = new PendingWrite(transaction, previousSecurityCode, journal == null ? null : track(journal.append(transaction)));
+        }
+        transactionsSinceSnapshot.increment();
+        syncJournal(write.journalEntry);
+        enqueue(write);
+        metrics.recordTransaction(transaction, start);
+    }
+
+    /**
+     * Process multiple transactions in memory and queue them for persistence.
+     * A batch with a duplicate or a transaction the engine rejects is refused before anything is
+     * applied. Should the engine still fail partway, the transactions it applied are journaled and
+     * queued like any others, and a {@link PartiallyAppliedBatchException} names them.
+     */
+    public void processTransactions(List<Transaction> transactions) {
+        checkWritable();
+        long start = metrics.startBatch();
+        List<PendingWrite> writes = new ArrayList<>(transactions.size());
+        RuntimeException failure = null;
+        synchronized (engineLock) {
+            Set<Long> batchIds = new HashSet<>();
+            for (Transaction transaction : transactions) {
+                if (transactionIds.contains(transaction.getTransactionId()) || !batchIds.add(transaction.getTransactionId())) {
+                    metrics.recordDuplicate();
+                    throw new DuplicateTransactionException(transaction.getTransactionId());
+                }
+                engine.validate(transaction);
+            }
+            Map<Long, String> previousSecurityCodes = new HashMap<>();
+            List<String> previousCodes = new ArrayList<>(transactions.size());
+            for (Transaction transaction : transactions) {
+                previousCodes.add(previousSecurityCodes.computeIfAbsent(transaction.getTradeId(), this::currentSecurityCode));
+            }
+            boolean[] applied = new boolean[transactions.size()];
+            try {
+                processor.processTransactions(transactions, applied);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            // One offset per record, so a flush that stores part of the batch records exactly that part
+            for (int i = 0; i < transactions.size(); i++) {
+                if (applied[i]) {
+                    Transaction transaction = transactions.get(i);
+                    transactionIds.add(transaction.getTransactionId());
+                    writes.add(new PendingWrite(transaction, previousCodes.get(i),
+                            journal == null ? null : track(journal.append(transaction))));
+                }
+            }
+        }
+        transactionsSinceSnapshot.add(writes.size());
+        if (!writes.isEmpty()) {
+            syncJournal(writes.get(writes.size() - 1).journalEntry);
+        }
+        for (PendingWrite write : writes) {
+            enqueue(write);
+        }
+        if (failure != null) {
+            if (writes.isEmpty()) {
+                throw failure;
+            }
+            throw new PartiallyAppliedBatchException(
+                    writes.stream().map(write -> write.transaction.getTransactionId()).toList(), failure);
+        }
+        metrics.recordBatch(transactions, start);
+    }
+
+    /**
+     * Security code a trade currently contributes to, so a security change also persists the old position
+     */
+    private String currentSecurityCode(Long tradeId) {
+        return engine.getSecurityCodeOfTrade(tradeId);
+    }
+
+    /**
+     * Wait until the journal has made the given record durable (a no-op unless fsync is {@code always})
+     */
+    private void syncJournal(JournalEntry entry) {
+        if (entry != null) {
+            journal.sync(entry.offset);
+        }
+    }
+
+    /**
+     * Remember a record just appended to the journal until the database stores it; call under engineLock in append order
+     */
+    private JournalEntry track(long journalOffset) {
+        JournalEntry entry = new JournalEntry(journalOffset);
+        unstoredEntries.add(entry);
+        return entry;
+    }
+
+    /**
+     * Mark records as stored and return the journal offset the database then reaches: the end of
+     * the last record before the first one still unstored. Call under engineLock.
+     */
+    private long markStored(Collection<JournalEntry> entries) {
+        entries.forEach(entry -> entry.stored = true);
+        while (!unstoredEntries.isEmpty() && unstoredEntries.peek().stored) {
+            storedJournalOffset = unstoredEntries.poll().offset;
+        }
+        return storedJournalOffset;
+    }
+
+    /**
+     * Refuse new transactions while the write-behind queue cannot persist, rather than accept writes it may never store
+     */
+    private void checkWritable() {
+        RuntimeException failure = writeFailure;
+        if (failure != null) {
+            throw new IllegalStateException("Write-behind persistence is failing; transactions are not accepted", failure);
+        }
+    }
+
+    /**
+     * Queue a write, blocking when the backlog is full
+     */
+    private void enqueue(PendingWrite write) {
+        try {
+            writeQueue.put(write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing transaction " + write.transaction.getTransactionId(), e);
+        }
+    }
+
+    /**
+     * Persist everything queued so far, in queue order. A batch that fails is retried in place
+     * with backoff; once it has failed {@code max-attempts} times it stays at the head, new
+     * transactions are rejected and the next flush starts with it again.
+     */
+    @Scheduled(fixedDelayString = "${equitrack.write-behind.flush-interval-ms:100}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            while (!unpersisted.isEmpty() || writeQueue.drainTo(unpersisted, flushBatchSize) > 0) {
+                persistWithRetry(unpersisted);
+                unpersisted.clear();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void persistWithRetry(List<PendingWrite> batch) {
+        long backoff = retryBackoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                persist(batch);
+                if (writeFailure != null) {
+                    writeFailure = null;
+                    log.warn("Write-behind persistence recovered; accepting transactions again");
+                }
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= maxFlushAttempts) {
+                    writeFailure = e;
+                    log.error("Write-behind flush of {} transactions failed {} times; rejecting new transactions until it persists",
+                            batch.size(), attempt, e);
+                    throw e;
+                }
+                log.warn("Write-behind flush of {} transactions failed (attempt {} of {}), retrying in {} ms",
+                        batch.size(), attempt, maxFlushAttempts, backoff, e);
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while retrying the write-behind flush", e);
+            }
+            backoff = Math.min(backoff * 2, MAX_RETRY_BACKOFF_MILLIS);
+        }
+    }
+
+    /**
+     * Persist one batch of queued writes with the current in-memory state of the touched trades and positions
+     */
+    private void persist(List<PendingWrite> batch) {
+        List<Transaction> transactions = new ArrayList<>(batch.size());
+        Set<Long> tradeIds = new HashSet<>();
+        Set<String> securityCodes = new HashSet<>();
+        for (PendingWrite write : batch) {
+            transactions.add(write.transaction);
+            tradeIds.add(write.transaction.getTradeId());
+            securityCodes.add(write.transaction.getSecurityCode());
+            if (write.previousSecurityCode != null) {
+                securityCodes.add(write.previousSecurityCode);
+            }
+        }
+
+        // Copy the state under the engine lock so a trade is never persisted half-updated
+        List<Trade> trades = new ArrayList<>(tradeIds.size());
+        List<Position> positions = new ArrayList<>(securityCodes.size());
+        long journalOffset;
+        synchronized (engineLock) {
+            for (Long tradeId : tradeIds) {
+                // A version held when it was queued may since have been released and moved the trade
+                engine.getTradeById(tradeId).ifPresent(trade -> {
+                    trades.add(trade);
+                    securityCodes.add(trade.getSecurityCode());
+                });
+            }
+            for (String securityCode : securityCodes) {
+                engine.getPositionBySecurityCode(securityCode).ifPresent(positions::add);
+            }
+            // Marking again on a retry changes nothing, so each attempt records the same offset
+            journalOffset = journal == null ? -1 : markStored(batch.stream().map(write -> write.journalEntry).toList());
+        }
+
+        if (journalOffset < 0) {
+            store.persistState(transactions, trades, positions);
+        } else {
+            store.persistState(transactions, trades, positions, journalOffset);
+        }
+    }
+
+    /**
+     * Start a snapshot in the background when enough transactions or time have passed since the last one
+     */
+    @Scheduled(fixedDelayString = "${equitrack.snapshot.check-interval-ms:1000}")
+    public void snapshotIfDue() {
+        if (snapshots != null && snapshots.isDue(transactionsSinceSnapshot.sum()) && snapshotQueued.compareAndSet(false, true)) {
+            snapshotExecutor.execute(() -> {
+                try {
+                    takeSnapshot();
+                } catch (RuntimeException e) {
+                    log.error("Scheduled snapshot failed", e);
+                } finally {
+                    snapshotQueued.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Write a snapshot of the engine; ingestion is only paused while the snapshot is opened
+     */
+    public void takeSnapshot() {
+        if (snapshots == null) {
+            throw new IllegalStateException("Snapshots are not enabled");
+        }
+        snapshotLock.lock();
+        try {
+            long journalOffset;
+            PositionService.EngineSnapshot view;
+            synchronized (engineLock) {
+                journalOffset = journal.getPosition();
+                view = engine.beginSnapshot();
+                transactionsSinceSnapshot.reset();
+            }
+            try (view; SnapshotManager.Writer writer = snapshots.open(
+                    journalOffset, view.getPositionCodes(), view.getPendingTransactions())) {
+                // The snapshot must never cover journal records that could still be lost
+                journal.force();
+                view.forEachTrade(writer::writeTrade);
+                writer.commit();
+            }
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * Flush the backlog before the application shuts down, and checkpoint a memory-mapped engine against the journal
+     */
+    @PreDestroy
+    public void shutdown() {
+        snapshotExecutor.shutdownNow();
+        flush();
+        if (journal != null) {
+            synchronized (engineLock) {
+                engine.checkpoint(journal.getPosition());
+            }
+        }
+    }
+
+    /**
+     * Number of writes waiting to be persisted
+     */
+    public int getBacklogSize() {
+        return writeQueue.size();
+    }
+
+    /**
+     * Get current positions
+     */
+    public List<Position> getPositions() {
+        return engine.getPositions().stream()
+                .sorted(Comparator.comparing(Position::getSecurityCode))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get all trades
+     */
+    public List<Trade> getTrades() {
+        return engine.getTrades().stream()
+                .sorted(Comparator.comparing(Trade::getTradeId))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get all transactions (served from the database once the backlog is flushed)
+     */
+    public List<Transaction> getTransactions() {
+        flush();
+        return store.getTransactions();
+    }
+
+    /**
+     * Visit every transaction (read from the database as it stands, without waiting for the write-behind backlog)
+     */
+    public void forEachTransaction(Consumer<Transaction> consumer) {
+        store.forEachTransaction(consumer);
+    }
+
+    /**
+     * Page of trades (read from the database, whose index keeps it bounded by the page size, as it stands:
+     * the write-behind backlog is not waited for)
+     */
+    public List<Trade> findTrades(TradeFilter filter, Long afterTradeId, int limit) {
+        return store.findTrades(filter, afterTradeId, limit);
+    }
+
+    /**
+     * Page of transactions (read from the database as it stands, without waiting for the write-behind backlog)
+     */
+    public List<Transaction> findTransactions(TransactionFilter filter, Long afterTransactionId, int limit) {
+        return store.findTransactions(filter, afterTransactionId, limit);
+    }
+
+    /**
+     * Get transaction by ID (served from the database once the backlog is flushed)
+     */
+    public Optional<Transaction> getTransactionById(Long transactionId) {
+        flush();
+        return store.getTransactionById(transactionId);
+    }
+
+    /**
+     * Get trade by ID
+     */
+    public Optional<Trade> getTradeById(Long tradeId) {
+        return engine.getTradeById(tradeId);
+    }
+
+    /**
+     * Every stored version of a trade (served from the database's version chain cache as it stands,
+     * without waiting for the write-behind backlog)
+     */
+    public List<Transaction> getTradeHistory(Long tradeId) {
+        return store.getTradeHistory(tradeId);
+    }
+
+    /**
+     * Latest stored version of a trade, read like {@link #getTradeHistory}
+     */
+    public Optional<Transaction> getLatestVersion(Long tradeId) {
+        return store.getLatestVersion(tradeId);
+    }
+
+    /**
+     * Get position by security code
+     */
+    public Optional<Position> getPositionBySecurityCode(String securityCode) {
+        return engine.getPositionBySecurityCode(securityCode);
+    }
+
+    /**
+     * Positions of the given securities
+     */
+    public List<Position> getPositionsBySecurityCodes(Collection<String> securityCodes) {
+        List<Position> positions = new ArrayList<>(securityCodes.size());
+        for (String securityCode : securityCodes) {
+            engine.getPositionBySecurityCode(securityCode).ifPresent(positions::add);
+        }
+        return positions;
+    }
+
+    /**
+     * Number of trades
+     */
+    public long getTradeCount() {
+        return engine.getTradeCount();
+    }
+
+    /**
+     * Number of securities with a position
+     */
+    public long getSecurityCount() {
+        return engine.getSecurityCount();
+    }
+
+    /**
+     * Number of early transactions waiting for their previous version
+     */
+    public int getPendingCount() {
+        return engine.getPendingCount();
+    }
+
+    /**
+     * Number of transactions ignored because their trade already had that version or a later one
+     */
+    public long getStaleCount() {
+        return engine.getStaleCount();
+    }
+
+    /**
+     * Early transactions dropped because they outlived the TTL or the buffer was full
+     */
+    public long getDroppedPendingCount() {
+        return engine.getDroppedPendingCount();
+    }
+
+    /**
+     * Be told about every trade and position change from now on
+     */
+    public void addPositionListener(PositionListener listener) {
+        engine.addPositionListener(listener);
+    }
+
+    /**
+     * Delete transaction by ID
+     */
+    public void deleteTransaction(Long transactionId) {
+        JournalEntry entry = null;
+        if (journal != null) {
+            synchronized (engineLock) {
+                entry = track(journal.appendTransactionDeleted(transactionId));
+            }
+            syncJournal(entry);
+        }
+        removeTransaction(transactionId, entry);
+    }
+
+    private void removeTransaction(Long transactionId, JournalEntry entry) {
+        flushLock.lock();
+        try {
+            flush();
+            store.deleteTransaction(transactionId);
+            synchronized (engineLock) {
+                transactionIds.remove(transactionId);
+            }
+            recordStored(entry);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Delete trade by ID
+     */
+    public void deleteTrade(Long tradeId) {
+        JournalEntry entry = null;
+        if (journal != null) {
+            synchronized (engineLock) {
+                entry = track(journal.appendTradeDeleted(tradeId));
+            }
+            syncJournal(entry);
+        }
+        removeTrade(tradeId, true, entry);
+    }
+
+    private void removeTrade(Long tradeId, boolean fromEngine, JournalEntry entry) {
+        flushLock.lock();
+        try {
+            flush();
+            synchronized (engineLock) {
+                if (fromEngine) {
+                    engine.deleteTrade(tradeId);
+                }
+                store.deleteTrade(tradeId);
+            }
+            recordStored(entry);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Delete position by security code
+     */
+    public void deletePosition(String securityCode) {
+        JournalEntry entry = null;
+        if (journal != null) {
+            synchronized (engineLock) {
+                entry = track(journal.appendPositionDeleted(securityCode));
+            }
+            syncJournal(entry);
+        }
+        removePosition(securityCode, true, entry);
+    }
+
+    private void removePosition(String securityCode, boolean fromEngine, JournalEntry entry) {
+        flushLock.lock();
+        try {
+            flush();
+            synchronized (engineLock) {
+                if (fromEngine) {
+                    engine.deletePosition(securityCode);
+                }
+                store.deletePosition(securityCode);
+            }
+            recordStored(entry);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Record the journal offset the database reaches once a deletion is stored; replaying a
+     * deletion again is harmless, so this need not share its database transaction. Call under flushLock.
+     */
+    private void recordStored(JournalEntry entry) {
+        if (entry == null) {
+            return;
+        }
+        long journalOffset;
+        synchronized (engineLock) {
+            journalOffset = markStored(List.of(entry));
+        }
+        store.saveJournalOffset(journalOffset);
+    }
+
+    /**
+     * Clear all data (for testing/reset)
+     */
+    public void clear() {
+        snapshotLock.lock();
+        flushLock.lock();
+        try {
+            synchronized (engineLock) {
+                writeQueue.clear();
+                unpersisted.clear();
+                writeFailure = null;
+                engine.clear();
+                transactionIds.clear();
+                unstoredEntries.clear();
+                storedJournalOffset = 0;
+                store.clear();
+                if (journal != null) {
+                    journal.reset();
+                }
+                if (snapshots != null) {
+                    snapshots.deleteAll();
+                }
+                transactionsSinceSnapshot.reset();
+            }
+        } finally {
+            flushLock.unlock();
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * Applies journal records to the engine unless it already holds them, and queues them for
+     * the database unless it already stores them, without journaling them again
+     */
+    private class JournalReplay implements TransactionJournal.ReplayHandler {
+        private final boolean toEngine;
+        private final boolean toStore;
+
+        JournalReplay(boolean toEngine, boolean toStore) {
+            this.toEngine = toEngine;
+            this.toStore = toStore;
+        }
+
+        @Override
+        public void onTransaction(Transaction transaction) {
+            if (!transactionIds.add(transaction.getTransactionId())) {
+                return;
+            }
+            String previousSecurityCode = null;
+            if (toEngine) {
+                previousSecurityCode = currentSecurityCode(transaction.getTradeId());
+                try {
+                    engine.processTransaction(transaction);
+                } catch (RuntimeException e) {
+                    log.warn("Skipping journaled transaction {}: {}", transaction.getTransactionId(), e.getMessage());
+                    return;
+                }
+            }
+            if (toStore) {
+                // Nothing drains the queue during startup, so make room inline
+                PendingWrite write = new PendingWrite(transaction, previousSecurityCode, track(journal.getPosition()));
+                while (!writeQueue.offer(write)) {
+                    flush();
+                }
+            }
+        }
+
+        @Override
+        public void onTransactionDeleted(long transactionId) {
+            if (toStore) {
+                removeTransaction(transactionId, track(journal.getPosition()));
+            } else {
+                transactionIds.remove(transactionId);
+            }
+        }
+
+        @Override
+        public void onTradeDeleted(long tradeId) {
+            if (toStore) {
+                removeTrade(tradeId, toEngine, track(journal.getPosition()));
+            } else if (toEngine) {
+                engine.deleteTrade(tradeId);
+            }
+        }
+
+        @Override
+        public void onPositionDeleted(String securityCode) {
+            if (toStore) {
+                removePosition(securityCode, toEngine, track(journal.getPosition()));
+            } else if (toEngine) {
+                engine.deletePosition(securityCode);
+            }
+        }
+    }
+
+    /**
+     * A record appended to the journal, until the database stores it
+     */
+    private static class JournalEntry {
+        private final long offset;
+        private boolean stored;
+
+        JournalEntry(long offset) {
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * A transaction waiting to be persisted, with the security its trade pointed to before it was applied and its journal record
+     */
+    private static class PendingWrite {
+        private final Transaction transaction;
+        private final String previousSecurityCode;
+        /** Its journal record, null without the journal */
+        private final JournalEntry journalEntry;
+
+        PendingWrite(Transaction transaction, String previousSecurityCode, JournalEntry journalEntry) {
+            this.transaction = transaction;
+            this.previousSecurityCode = previousSecurityCode;
+            this.journalEntry = journalEntry;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.equitrack.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The engine failed partway through a batch it had accepted; the transactions it applied are
+ * kept and stored, so only the others need to be sent again
+ */
+public class PartiallyAppliedBatchException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final HashSet<Long> appliedTransactionIds;
+
+    public PartiallyAppliedBatchException(Collection<Long> appliedTransactionIds, RuntimeException cause) {
+        super(appliedTransactionIds.size() + " transactions of the batch were applied before it failed: "
+                + cause.getMessage(), cause);
+        this.appliedTransactionIds = new HashSet<>(appliedTransactionIds);
+    }
+
+    public Set<Long> getAppliedTransactionIds() {
+        return Collections.unmodifiableSet(appliedTransactionIds);
+    }
+}
@@ -0,0 +1,182 @@
+package com.equitrack.service;
+
+import com.equitrack.model.Transaction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Holds transactions that arrived before the version they follow.
+ * Events are keyed by trade ID and version, so holding and taking the next
+ * version are O(1). The buffer is bounded by a total event count, and trades
+ * whose oldest held event is older than the TTL are expired by {@link #expire()}.
+ */
+public class PendingTransactionBuffer {
+
+    private final ConcurrentHashMap<Long, PendingTrade> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final long ttlNanos;
+    private final int capacity;
+
+    public PendingTransactionBuffer(long ttlMillis, int capacity) {
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Hold an early transaction until its trade reaches the previous version.
+     * Returns false when the buffer is full and the transaction was dropped.
+     */
+    public boolean hold(Transaction transaction) {
+        return hold(transaction, 0);
+    }
+
+    /**
+     * Hold an early transaction that has already waited {@code ageMillis}, such as one stored before
+     * a restart, so the TTL runs from when it first arrived
+     */
+    public boolean hold(Transaction transaction, long ageMillis) {
+        if (size.get() >= capacity) {
+            rejected.increment();
+            return false;
+        }
+        long now = System.nanoTime();
+        long arrival = now - ageMillis * 1_000_000L;
+        pending.compute(transaction.getTradeId(), (tradeId, trade) -> {
+            if (trade != null && trade.isExpired(now, ttlNanos)) {
+                discard(trade);
+                trade = null;
+            }
+            if (trade == null) {
+                trade = new PendingTrade(arrival);
+            }
+            if (trade.byVersion.put(transaction.getVersion(), transaction) == null) {
+                size.incrementAndGet();
+            }
+            return trade;
+        });
+        return true;
+    }
+
+    /**
+     * Remove and return the held transaction for a trade and version, or null if there is none
+     */
+    public Transaction take(Long tradeId, int version) {
+        if (!pending.containsKey(tradeId)) {
+            return null;
+        }
+        Transaction[] taken = new Transaction[1];
+        pending.computeIfPresent(tradeId, (id, trade) -> {
+            taken[0] = trade.byVersion.remove(version);
+            if (taken[0] != null) {
+                size.decrementAndGet();
+            }
+            return trade.byVersion.isEmpty() ? null : trade;
+        });
+        return taken[0];
+    }
+
+    /**
+     * Remove a held transaction if it is still the one held for its trade and version; returns true if it was
+     */
+    public boolean release(Transaction transaction) {
+        boolean[] released = new boolean[1];
+        pending.computeIfPresent(transaction.getTradeId(), (id, trade) -> {
+            if (trade.byVersion.remove(transaction.getVersion(), transaction)) {
+                size.decrementAndGet();
+                released[0] = true;
+            }
+            return trade.byVersion.isEmpty() ? null : trade;
+        });
+        return released[0];
+    }
+
+    /**
+     * Drop every trade whose oldest held transaction has outlived the TTL; returns the number of dropped transactions
+     */
+    public int expire() {
+        long now = System.nanoTime();
+        int before = size.get();
+        for (Long tradeId : pending.keySet()) {
+            pending.computeIfPresent(tradeId, (id, trade) -> {
+                if (trade.isExpired(now, ttlNanos)) {
+                    discard(trade);
+                    return null;
+                }
+                return trade;
+            });
+        }
+        return Math.max(0, before - size.get());
+    }
+
+    private void discard(PendingTrade trade) {
+        size.addAndGet(-trade.byVersion.size());
+        expired.add(trade.byVersion.size());
+    }
+
+    /**
+     * Copy of every held transaction
+     */
+    public List<Transaction> snapshot() {
+        List<Transaction> held = new ArrayList<>(size.get());
+        for (Long tradeId : pending.keySet()) {
+            pending.computeIfPresent(tradeId, (id, trade) -> {
+                held.addAll(trade.byVersion.values());
+                return trade;
+            });
+        }
+        return held;
+    }
+
+    /**
+     * Number of transactions currently held
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Transactions dropped because they outlived the TTL
+     */
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    /**
+     * Transactions dropped because the buffer was full
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Drop everything held
+     */
+    public void clear() {
+        pending.clear();
+        size.set(0);
+    }
+
+    /**
+     * Early transactions of one trade, by version
+     */
+    private static class PendingTrade {
+        private final long firstArrivalNanos;
+        private final Map<Integer, Transaction> byVersion = new HashMap<>(4);
+
+        PendingTrade(long firstArrivalNanos) {
+            this.firstArrivalNanos = firstArrivalNanos;
+        }
+
+        boolean isExpired(long now, long ttlNanos) {
+            return now - firstArrivalNanos > ttlNanos;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.equitrack.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Position quantities of the in-memory engine, indexed by symbol ID.
+ * <p>
+ * A security either has a position or not; adding to one that has none creates it at zero
+ * first. Adds are lock-free and never lost to each other. Creating, setting and removing a
+ * position lock, as does growing the table for a new ID.
+ */
+abstract class PositionCells {
+
+    protected final Object lock = new Object();
+
+    /**
+     * Add to a security's position, creating it first if it has none
+     */
+    abstract void add(int securityId, long delta);
+
+    abstract boolean contains(int securityId);
+
+    /** Quantity of a position; 0 when there is none */
+    abstract long quantity(int securityId);
+
+    /** Set a position to a quantity, creating it if needed */
+    abstract void set(int securityId, long quantity);
+
+    /** Remove a position; returns whether there was one */
+    abstract boolean remove(int securityId);
+
+    /** Every ID with a position is below this */
+    abstract int limit();
+
+    abstract void clear();
+
+    /**
+     * One {@link LongAdder} per security in a growable array; null where there is no position
+     */
+    static final class Heap extends PositionCells {
+
+        private volatile AtomicReferenceArray<LongAdder> cells = new AtomicReferenceArray<>(256);
+
+        @Override
+        void add(int securityId, long delta) {
+            AtomicReferenceArray<LongAdder> current = cells;
+            LongAdder cell = securityId < current.length() ? current.get(securityId) : null;
+            if (cell == null) {
+                synchronized (lock) {
+                    current = cellsFor(securityId);
+                    cell = current.get(securityId);
+                    if (cell == null) {
+                        cell = new LongAdder();
+                        current.set(securityId, cell);
+                    }
+                }
+            }
+            cell.add(delta);
+        }
+
+        @Override
+        boolean contains(int securityId) {
+            return cell(securityId) != null;
+        }
+
+        @Override
+        long quantity(int securityId) {
+            LongAdder cell = cell(securityId);
+            return cell == null ? 0 : cell.sum();
+        }
+
+        @Override
+        void set(int securityId, long quantity) {
+            LongAdder cell = new LongAdder();
+            cell.add(quantity);
+            synchronized (lock) {
+                cellsFor(securityId).set(securityId, cell);
+            }
+        }
+
+        @Override
+        boolean remove(int securityId) {
+            synchronized (lock) {
+                return cell(securityId) != null && cells.getAndSet(securityId, null) != null;
+            }
+        }
+
+        @Override
+        int limit() {
+            return cells.length();
+        }
+
+        @Override
+        void clear() {
+            synchronized (lock) {
+                cells = new AtomicReferenceArray<>(cells.length());
+            }
+        }
+
+        private LongAdder cell(int securityId) {
+            AtomicReferenceArray<LongAdder> current = cells;
+            return securityId < 0 || securityId >= current.length() ? null : current.get(securityId);
+        }
+
+        /**
+         * Cell array long enough to hold an ID, growing it if needed; called under the lock
+         */
+        private AtomicReferenceArray<LongAdder> cellsFor(int securityId) {
+            AtomicReferenceArray<LongAdder> current = cells;
+            if (securityId >= current.length()) {
+                AtomicReferenceArray<LongAdder> grown =
+                        new AtomicReferenceArray<>(Math.max(current.length() * 2, securityId + 1));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                cells = grown;
+                current = grown;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * A quantity and a presence word per security in fixed-size chunks of direct memory, or
+     * of a memory-mapped file. Chunks never move once allocated, so adders never write to a
+     * stale copy while the table grows.
+     */
+    static final class OffHeap extends PositionCells {
+
+        private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+        private static final int CELL_BYTES = 16;
+        private static final int PRESENT = 8;
+        static final int CHUNK_CELLS = 4096;
+        private static final int CHUNK_BYTES = CHUNK_CELLS * CELL_BYTES;
+
+        /** Backing file, or null for plain direct memory */
+        private final FileChannel file;
+        private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+
+        OffHeap(FileChannel file) {
+            this.file = file;
+        }
+
+        /**
+         * Take up the positions already in the backing file for IDs below {@code limit}
+         */
+        void resume(int limit) {
+            synchronized (lock) {
+                if (file == null) {
+                    throw new IllegalStateException("Only file-backed positions can be resumed");
+                }
+                if (limit > 0) {
+                    chunkFor(limit - 1);
+                }
+            }
+        }
+
+        /**
+         * Write the positions through to the backing file
+         */
+        void force() {
+            for (ByteBuffer chunk : chunks) {
+                if (chunk instanceof MappedByteBuffer) {
+                    ((MappedByteBuffer) chunk).force();
+                }
+            }
+        }
+
+        @Override
+        void add(int securityId, long delta) {
+            ByteBuffer chunk = chunk(securityId);
+            int offset = offsetOf(securityId);
+            if (chunk == null || (long) LONGS.getAcquire(chunk, offset + PRESENT) == 0) {
+                synchronized (lock) {
+                    chunk = chunkFor(securityId);
+                    if ((long) LONGS.getAcquire(chunk, offset + PRESENT) == 0) {
+                        LONGS.setRelease(chunk, offset, 0L);
+                        LONGS.setRelease(chunk, offset + PRESENT, 1L);
+                    }
+                }
+            }
+            LONGS.getAndAdd(chunk, offset, delta);
+        }
+
+        @Override
+        boolean contains(int securityId) {
+            ByteBuffer chunk = chunk(securityId);
+            return chunk != null && (long) LONGS.getAcquire(chunk, offsetOf(securityId) + PRESENT) != 0;
+        }
+
+        @Override
+        long quantity(int securityId) {
+            ByteBuffer chunk = chunk(securityId);
+            return chunk == null ? 0 : (long) LONGS.getAcquire(chunk, offsetOf(securityId));
+        }
+
+        @Override
+        void set(int securityId, long quantity) {
+            synchronized (lock) {
+                ByteBuffer chunk = chunkFor(securityId);
+                int offset = offsetOf(securityId);
+                LONGS.setRelease(chunk, offset, quantity);
+                LONGS.setRelease(chunk, offset + PRESENT, 1L);
+            }
+        }
+
+        @Override
+        boolean remove(int securityId) {
+            synchronized (lock) {
+                if (!contains(securityId)) {
+                    return false;
+                }
+                ByteBuffer chunk = chunk(securityId);
+                int offset = offsetOf(securityId);
+                LONGS.setRelease(chunk, offset + PRESENT, 0L);
+                LONGS.setRelease(chunk, offset, 0L);
+                return true;
+            }
+        }
+
+        @Override
+        int limit() {
+            return chunks.length * CHUNK_CELLS;
+        }
+
+        @Override
+        void clear() {
+            synchronized (lock) {
+                if (file == null) {
+                    chunks = new ByteBuffer[0];
+                    return;
+                }
+                // A mapped file keeps its chunks: zero them rather than shrink the file under the mappings,
+                // and drop anything past them so chunks mapped later start from zeros too
+                byte[] zeros = new byte[CHUNK_BYTES];
+                for (ByteBuffer chunk : chunks) {
+                    chunk.put(0, zeros);
+                }
+                try {
+                    file.truncate((long) chunks.length * CHUNK_BYTES);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot reset position cells", e);
+                }
+            }
+        }
+
+        private ByteBuffer chunk(int securityId) {
+            ByteBuffer[] current = chunks;
+            int chunk = securityId / CHUNK_CELLS;
+            return securityId < 0 || chunk >= current.length ? null : current[chunk];
+        }
+
+        private static int offsetOf(int securityId) {
+            return (securityId % CHUNK_CELLS) * CELL_BYTES;
+        }
+
+        /**
+         * Chunk holding an ID, allocating chunks up to it if needed; called under the lock
+         */
+        private ByteBuffer chunkFor(int securityId) {
+            ByteBuffer[] current = chunks;
+            int needed = securityId / CHUNK_CELLS + 1;
+            if (needed > current.length) {
+                ByteBuffer[] grown = Arrays.copyOf(current, needed);
+                for (int chunk = current.length; chunk < needed; chunk++) {
+                    grown[chunk] = allocate(chunk);
+                }
+                chunks = grown;
+                current = grown;
+            }
+            return current[securityId / CHUNK_CELLS];
+        }
+
+        private ByteBuffer allocate(int chunk) {
+            if (file == null) {
+                return ByteBuffer.allocateDirect(CHUNK_BYTES).order(ByteOrder.nativeOrder());
+            }
+            try {
+                return file.map(FileChannel.MapMode.READ_WRITE, (long) chunk * CHUNK_BYTES, CHUNK_BYTES)
+                        .order(ByteOrder.nativeOrder());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot map position chunk " + chunk, e);
+            }
+        }
+    }
+}
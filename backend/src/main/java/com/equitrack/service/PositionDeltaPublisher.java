@@ -0,0 +1,340 @@
+package com.equitrack.service;
+
+import com.equitrack.model.Position;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes position changes to subscribers as Server-Sent Events.
+ * The processing path only records which securities changed; every
+ * {@code equitrack.push.interval-ms} the changed securities are read once into a
+ * {@code delta} carrying their current quantities, so any number of transactions against
+ * a security between two pushes costs one entry.
+ * <p>
+ * Each subscriber has its own bounded buffer of deltas and is sent to on a pool thread at
+ * most {@code equitrack.push.max-rate} times a second: everything buffered since its last
+ * send is conflated into one delta, latest quantity per security. A subscriber that is
+ * still writing when its buffer fills has the buffer dropped and is sent a {@code resync}
+ * event holding every position instead, so a slow client never holds up the publisher,
+ * other subscribers or ingestion.
+ * <p>
+ * A subscriber first receives a {@code snapshot} event with every position, then deltas.
+ * Events carry the sequence number of the latest push they include; a reset is sent as a
+ * new {@code snapshot}. Quantities are absolute, so conflated deltas can skip numbers.
+ */
+@Service
+public class PositionDeltaPublisher implements PositionListener {
+
+    private static final Logger log = LoggerFactory.getLogger(PositionDeltaPublisher.class);
+
+    static final String SNAPSHOT_EVENT = "snapshot";
+    static final String DELTA_EVENT = "delta";
+    static final String RESYNC_EVENT = "resync";
+
+    private final PositionManager positionManager;
+    private final long timeoutMillis;
+    private final int bufferSize;
+    private final double maxRate;
+    private final ExecutorService sender;
+
+    private final Set<String> changedSecurities = ConcurrentHashMap.newKeySet();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final Object publishLock = new Object();
+    private final LongAdder resyncs = new LongAdder();
+    private volatile boolean cleared;
+    private long sequence;
+
+    public PositionDeltaPublisher(PositionManager positionManager,
+                                  @Value("${equitrack.push.timeout-ms:1800000}") long timeoutMillis,
+                                  @Value("${equitrack.push.buffer-size:64}") int bufferSize,
+                                  @Value("${equitrack.push.max-rate:10}") double maxRate) {
+        this.positionManager = positionManager;
+        this.timeoutMillis = timeoutMillis;
+        this.bufferSize = Math.max(1, bufferSize);
+        this.maxRate = maxRate;
+        AtomicInteger threads = new AtomicInteger();
+        // A subscriber blocked on a slow connection holds at most one thread
+        this.sender = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "equitrack-push-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    void register() {
+        positionManager.addPositionListener(this);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+    }
+
+    @Override
+    public void positionChanged(String securityCode) {
+        // Nobody to tell: a new subscriber starts from a full snapshot anyway
+        if (!subscriptions.isEmpty()) {
+            changedSecurities.add(securityCode);
+        }
+    }
+
+    @Override
+    public void tradeChanged(Long tradeId) {
+        // Only positions are pushed
+    }
+
+    @Override
+    public void cleared() {
+        if (!subscriptions.isEmpty()) {
+            cleared = true;
+        }
+    }
+
+    /**
+     * Open an SSE stream that starts with a snapshot of every position; maxRate (events per
+     * second) can lower the configured limit for this stream
+     */
+    public SseEmitter subscribe(double maxRate) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = (name, update) -> {
+            try {
+                emitter.send(SseEmitter.event()
+                        .id(Long.toString(update.getSequence()))
+                        .name(name)
+                        .data(update));
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+                throw e;
+            }
+        };
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(error -> unsubscribe(subscriber));
+        subscribe(subscriber, maxRate);
+        return emitter;
+    }
+
+    /**
+     * Register a subscriber; it is sent a snapshot, then pushes until it fails or unsubscribes.
+     * maxRate (events per second) can lower the configured limit; zero or less keeps it.
+     */
+    public void subscribe(Subscriber subscriber, double maxRate) {
+        double rate = maxRate > 0 && (this.maxRate <= 0 || maxRate < this.maxRate) ? maxRate : this.maxRate;
+        Subscription subscription = new Subscription(subscriber, rate > 0 ? (long) (1_000_000_000L / rate) : 0);
+        synchronized (publishLock) {
+            subscriptions.add(subscription);
+            subscription.sendIfDue(System.nanoTime());
+        }
+    }
+
+    /**
+     * Stop sending to a subscriber
+     */
+    public void unsubscribe(Subscriber subscriber) {
+        subscriptions.removeIf(subscription -> subscription.subscriber == subscriber);
+    }
+
+    /**
+     * Number of open subscriptions
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Number of times a subscriber fell behind and was sent a resync instead of its buffered deltas
+     */
+    public long getResyncCount() {
+        return resyncs.sum();
+    }
+
+    /**
+     * Turn the securities changed since the last push into a delta, buffer it for every
+     * subscriber and start sends for the subscribers whose rate limit allows one
+     */
+    @Scheduled(fixedDelayString = "${equitrack.push.interval-ms:100}")
+    public void publish() {
+        synchronized (publishLock) {
+            if (cleared) {
+                cleared = false;
+                changedSecurities.clear();
+                sequence++;
+                subscriptions.forEach(Subscription::requestSnapshot);
+            } else if (!changedSecurities.isEmpty()) {
+                PositionUpdate delta = collectChanges();
+                subscriptions.forEach(subscription -> subscription.offer(delta));
+            }
+            long now = System.nanoTime();
+            subscriptions.forEach(subscription -> subscription.sendIfDue(now));
+        }
+    }
+
+    /**
+     * Read every security changed since the last push in one batched read
+     */
+    private PositionUpdate collectChanges() {
+        Set<String> changed = new HashSet<>();
+        for (Iterator<String> it = changedSecurities.iterator(); it.hasNext(); ) {
+            changed.add(it.next());
+            it.remove();
+        }
+        List<Position> positions = positionManager.getPositionsBySecurityCodes(changed);
+        Set<String> removed = new HashSet<>(changed);
+        positions.forEach(position -> removed.remove(position.getSecurityCode()));
+        return new PositionUpdate(++sequence, positions, new ArrayList<>(removed));
+    }
+
+    /**
+     * Every position, tagged with the latest push it includes
+     */
+    private PositionUpdate snapshot() {
+        synchronized (publishLock) {
+            return new PositionUpdate(sequence, positionManager.getPositions(), List.of());
+        }
+    }
+
+    /**
+     * Merge buffered deltas into one, keeping the latest quantity or removal per security
+     */
+    private static PositionUpdate conflate(Collection<PositionUpdate> updates) {
+        Map<String, Position> positions = new LinkedHashMap<>();
+        Set<String> removed = new LinkedHashSet<>();
+        long latest = 0;
+        for (PositionUpdate update : updates) {
+            for (Position position : update.getPositions()) {
+                positions.put(position.getSecurityCode(), position);
+                removed.remove(position.getSecurityCode());
+            }
+            for (String securityCode : update.getRemoved()) {
+                positions.remove(securityCode);
+                removed.add(securityCode);
+            }
+            latest = update.getSequence();
+        }
+        return new PositionUpdate(latest, new ArrayList<>(positions.values()), new ArrayList<>(removed));
+    }
+
+    /**
+     * Receives pushed position events
+     */
+    @FunctionalInterface
+    public interface Subscriber {
+        void send(String eventName, PositionUpdate update) throws IOException;
+    }
+
+    /**
+     * One subscriber's buffered deltas and rate limit; at most one send is in flight at a time
+     */
+    private class Subscription {
+        private final Subscriber subscriber;
+        private final long minIntervalNanos;
+        private final ArrayDeque<PositionUpdate> buffer = new ArrayDeque<>();
+        /** Full-book event to send before any further delta, or null */
+        private String pendingSnapshot = SNAPSHOT_EVENT;
+        private boolean sending;
+        private long lastSentNanos;
+
+        Subscription(Subscriber subscriber, long minIntervalNanos) {
+            this.subscriber = subscriber;
+            this.minIntervalNanos = minIntervalNanos;
+            this.lastSentNanos = System.nanoTime() - minIntervalNanos;
+        }
+
+        synchronized void offer(PositionUpdate delta) {
+            if (buffer.size() < bufferSize) {
+                buffer.add(delta);
+                return;
+            }
+            // Fallen behind: the next full-book event covers everything buffered, this delta included
+            buffer.clear();
+            if (pendingSnapshot == null) {
+                pendingSnapshot = RESYNC_EVENT;
+                resyncs.increment();
+            }
+        }
+
+        synchronized void requestSnapshot() {
+            buffer.clear();
+            pendingSnapshot = SNAPSHOT_EVENT;
+        }
+
+        synchronized void sendIfDue(long now) {
+            if (sending || (buffer.isEmpty() && pendingSnapshot == null) || now - lastSentNanos < minIntervalNanos) {
+                return;
+            }
+            sending = true;
+            try {
+                sender.execute(this::send);
+            } catch (RejectedExecutionException e) {
+                sending = false;
+            }
+        }
+
+        private void send() {
+            try {
+                String event;
+                PositionUpdate update;
+                synchronized (this) {
+                    event = pendingSnapshot;
+                    pendingSnapshot = null;
+                }
+                if (event != null) {
+                    update = snapshot();
+                    synchronized (this) {
+                        // Deltas up to the snapshot's sequence are already in it
+                        buffer.removeIf(delta -> delta.getSequence() <= update.getSequence());
+                    }
+                } else {
+                    event = DELTA_EVENT;
+                    synchronized (this) {
+                        update = buffer.isEmpty() ? null : conflate(buffer);
+                        buffer.clear();
+                    }
+                }
+                if (update != null) {
+                    subscriber.send(event, update);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("Dropping position subscriber: {}", e.getMessage());
+                subscriptions.remove(this);
+            } finally {
+                synchronized (this) {
+                    lastSentNanos = System.nanoTime();
+                    sending = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * One pushed event: current quantities of the listed securities and the securities whose position was deleted
+     */
+    public static class PositionUpdate {
+        private final long sequence;
+        private final List<Position> positions;
+        private final List<String> removed;
+
+        public PositionUpdate(long sequence, List<Position> positions, List<String> removed) {
+            this.sequence = sequence;
+            this.positions = positions;
+            this.removed = removed;
+        }
+
+        public long getSequence() { return sequence; }
+        public List<Position> getPositions() { return positions; }
+        public List<String> getRemoved() { return removed; }
+    }
+}
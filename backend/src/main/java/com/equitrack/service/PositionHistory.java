@@ -0,0 +1,316 @@
+package com.equitrack.service;
+
+import com.equitrack.entity.Transaction;
+import com.equitrack.model.Position;
+import com.equitrack.model.TransactionAction;
+import com.equitrack.model.TransactionSide;
+import com.equitrack.repository.TransactionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Positions as they stood at an earlier point of the stored transaction history.
+ * <p>
+ * History is ordered by the row ID of each stored transaction. A background task keeps
+ * checkpoints of every security's position roughly every {@code every-transactions} rows. A
+ * query starts from the nearest checkpoint at or before its point and only re-derives the
+ * trades touched since: each is replayed from its own stored versions, the way the engine
+ * applies them, at the checkpoint and at the point, and the difference is added. Its cost
+ * follows the rows since the checkpoint, not the length of the history.
+ * <p>
+ * Checkpoints never pass a row that may still commit: they stop below the lowest row written
+ * by a database transaction still open, and lag the newest row by one check interval to cover
+ * the moment between a row getting its ID and being tracked as uncommitted. Deleting a transaction or
+ * clearing the store drops every checkpoint; they are rebuilt in the background. A position
+ * is listed from the first time one of its trades was active, as the live store does.
+ */
+@Component
+public class PositionHistory implements PositionListener {
+
+    private static final Logger log = LoggerFactory.getLogger(PositionHistory.class);
+
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+    private static final Checkpoint ORIGIN = new Checkpoint(0, Map.of(), null, null);
+
+    private final PositionServiceJPA positionService;
+    private final TransactionRepository transactionRepository;
+    private final long everyTransactions;
+    private final int maxCheckpoints;
+    /** Checkpoints are built here, so the scheduler thread shared with flushes and fsyncs is never held up */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "equitrack-history");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean checkQueued = new AtomicBoolean();
+
+    private volatile ConcurrentSkipListMap<Long, Checkpoint> checkpoints = newCheckpoints();
+    /** Highest row ID seen at the previous check; the next checkpoints stop there */
+    private long observedId;
+
+    public PositionHistory(PositionServiceJPA positionService, TransactionRepository transactionRepository,
+                           @Value("${equitrack.history.every-transactions:100000}") long everyTransactions,
+                           @Value("${equitrack.history.max-checkpoints:256}") int maxCheckpoints) {
+        this.positionService = positionService;
+        this.transactionRepository = transactionRepository;
+        this.everyTransactions = Math.max(1, everyTransactions);
+        this.maxCheckpoints = Math.max(2, maxCheckpoints);
+    }
+
+    @PostConstruct
+    void register() {
+        positionService.addPositionListener(this);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Positions right after a transaction was stored; empty if it is not stored
+     */
+    public Optional<List<Position>> getPositionsAsOfTransaction(Long transactionId) {
+        return transactionRepository.findIdByTransactionId(transactionId).map(this::positionsAt);
+    }
+
+    /**
+     * Positions after every transaction stored at or before a time
+     */
+    public List<Position> getPositionsAsOf(LocalDateTime time) {
+        return positionsAt(lastIdRecordedBy(time));
+    }
+
+    /**
+     * Start a {@link #checkpoint()} in the background unless one is still running
+     */
+    @Scheduled(fixedDelayString = "${equitrack.history.check-interval-ms:10000}")
+    public void scheduledCheckpoint() {
+        if (checkQueued.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                try {
+                    checkpoint();
+                } catch (RuntimeException e) {
+                    log.warn("Position history checkpoint failed", e);
+                } finally {
+                    checkQueued.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Extend the checkpoints up to the highest row ID seen at the previous check, stopping below
+     * rows of database transactions still open
+     */
+    public synchronized void checkpoint() {
+        ConcurrentSkipListMap<Long, Checkpoint> current = checkpoints;
+        long target = observedId;
+        Long maxId = transactionRepository.findMaxId();
+        observedId = maxId == null ? 0 : maxId;
+        OptionalLong uncommitted = positionService.getLowestUncommittedRowId();
+        if (uncommitted.isPresent()) {
+            target = Math.min(target, uncommitted.getAsLong() - 1);
+        }
+
+        Checkpoint last = current.lastEntry().getValue();
+        while (target - last.sequence >= everyTransactions) {
+            // Step at most everyTransactions rows at a time, so a long backlog never replays in one go
+            Checkpoint next = advance(last, last.sequence + everyTransactions);
+            if (checkpoints != current) {
+                return;
+            }
+            current.put(next.sequence, next);
+            last = next;
+        }
+        if (current.size() > maxCheckpoints) {
+            thin(current);
+        }
+    }
+
+    @Override
+    public void positionChanged(String securityCode) {
+    }
+
+    @Override
+    public void tradeChanged(Long tradeId) {
+    }
+
+    @Override
+    public void cleared() {
+        reset();
+    }
+
+    @Override
+    public void transactionDeleted(Long transactionId) {
+        reset();
+    }
+
+    private void reset() {
+        checkpoints = newCheckpoints();
+        log.debug("Position history rewritten; checkpoints dropped");
+    }
+
+    private static ConcurrentSkipListMap<Long, Checkpoint> newCheckpoints() {
+        ConcurrentSkipListMap<Long, Checkpoint> checkpoints = new ConcurrentSkipListMap<>();
+        checkpoints.put(ORIGIN.sequence, ORIGIN);
+        return checkpoints;
+    }
+
+    private List<Position> positionsAt(long sequence) {
+        Checkpoint base = checkpoints.floorEntry(sequence).getValue();
+        Map<String, Long> quantities = base.sequence == sequence ? base.quantities : advance(base, sequence).quantities;
+        List<Position> positions = new ArrayList<>(quantities.size());
+        new TreeMap<>(quantities).forEach((securityCode, quantity) -> positions.add(new Position(securityCode, quantity)));
+        return positions;
+    }
+
+    /**
+     * Positions at {@code sequence}, derived from a checkpoint before it and the trades touched in between
+     */
+    private Checkpoint advance(Checkpoint base, long sequence) {
+        Map<String, Long> quantities = new HashMap<>(base.quantities);
+        Set<String> opened = new HashSet<>();
+        List<Long> tradeIds = transactionRepository.findTradeIdsBetween(base.sequence, sequence);
+        for (int from = 0; from < tradeIds.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            List<Long> chunk = tradeIds.subList(from, Math.min(tradeIds.size(), from + IN_CLAUSE_CHUNK_SIZE));
+            Map<Long, List<Transaction>> histories = new HashMap<>();
+            for (Transaction transaction : transactionRepository.findByTradeIdInUpTo(chunk, sequence)) {
+                histories.computeIfAbsent(transaction.getTradeId(), tradeId -> new ArrayList<>()).add(transaction);
+            }
+            for (List<Transaction> history : histories.values()) {
+                history.sort(Comparator.comparing(Transaction::getVersion).thenComparing(Transaction::getId));
+                Transaction before = replay(history, base.sequence, Long.MAX_VALUE, null);
+                Transaction after = replay(history, sequence, base.sequence, opened);
+                if (before != null) {
+                    quantities.merge(before.getSecurityCode(), -impactOf(before), Long::sum);
+                }
+                if (after != null) {
+                    quantities.merge(after.getSecurityCode(), impactOf(after), Long::sum);
+                }
+            }
+        }
+        opened.forEach(securityCode -> quantities.putIfAbsent(securityCode, 0L));
+
+        TransactionRepository.RecordedRange range = transactionRepository.findRecordedRange(base.sequence, sequence);
+        return new Checkpoint(sequence, Collections.unmodifiableMap(quantities), range.getFirst(), range.getLast());
+    }
+
+    /**
+     * The transaction a trade's state comes from once its versions stored up to {@code sequence}
+     * are applied, or null if it has none or is cancelled. Versions are applied in order as the
+     * engine applies them: an INSERT replaces any older version, UPDATE and CANCEL only follow
+     * the current version. Securities of active states stored after {@code openedAfter} are
+     * added to {@code opened}.
+     */
+    private static Transaction replay(List<Transaction> history, long sequence, long openedAfter, Set<String> opened) {
+        Transaction state = null;
+        for (Transaction transaction : history) {
+            if (transaction.getId() > sequence) {
+                continue;
+            }
+            boolean applies = transaction.getAction() == TransactionAction.INSERT
+                    ? state == null || transaction.getVersion() > state.getVersion()
+                    : state != null && transaction.getVersion() == state.getVersion() + 1;
+            if (!applies) {
+                continue;
+            }
+            state = transaction;
+            if (opened != null && transaction.getId() > openedAfter && transaction.getAction() != TransactionAction.CANCEL) {
+                opened.add(transaction.getSecurityCode());
+            }
+        }
+        return state == null || state.getAction() == TransactionAction.CANCEL ? null : state;
+    }
+
+    private static long impactOf(Transaction transaction) {
+        return transaction.getSide() == TransactionSide.Buy ? transaction.getQuantity() : -transaction.getQuantity();
+    }
+
+    /**
+     * Highest row ID recorded at or before a time. The checkpoints bound the rows searched: the
+     * last one whose rows were all recorded by then, and the first one after which every
+     * checkpointed row was recorded later.
+     */
+    private long lastIdRecordedBy(LocalDateTime time) {
+        List<Checkpoint> ordered = new ArrayList<>(checkpoints.values());
+        long lower = 0;
+        LocalDateTime latest = null;
+        for (Checkpoint checkpoint : ordered) {
+            if (checkpoint.lastRecorded != null && (latest == null || checkpoint.lastRecorded.isAfter(latest))) {
+                latest = checkpoint.lastRecorded;
+            }
+            if (latest != null && latest.isAfter(time)) {
+                break;
+            }
+            lower = checkpoint.sequence;
+        }
+        long upper = Long.MAX_VALUE;
+        if (latest != null && latest.isAfter(time)) {
+            // Rows after the last checkpoint are taken to be later than any time before it
+            for (int i = ordered.size() - 1; i >= 0; i--) {
+                Checkpoint checkpoint = ordered.get(i);
+                if (checkpoint.sequence <= lower) {
+                    break;
+                }
+                if (checkpoint.firstRecorded != null && !checkpoint.firstRecorded.isAfter(time)) {
+                    break;
+                }
+                upper = ordered.get(i - 1).sequence;
+            }
+        }
+        Long id = transactionRepository.findLastIdRecordedBy(lower, upper, time);
+        return id == null ? lower : id;
+    }
+
+    /**
+     * Drop every other checkpoint between the first and the last, widening the survivors' recorded ranges
+     */
+    private static void thin(ConcurrentSkipListMap<Long, Checkpoint> checkpoints) {
+        List<Checkpoint> ordered = new ArrayList<>(checkpoints.values());
+        for (int i = 1; i < ordered.size() - 1; i += 2) {
+            Checkpoint dropped = ordered.get(i);
+            Checkpoint next = ordered.get(i + 1);
+            checkpoints.remove(dropped.sequence);
+            checkpoints.put(next.sequence, new Checkpoint(next.sequence, next.quantities,
+                    earliest(dropped.firstRecorded, next.firstRecorded), latest(dropped.lastRecorded, next.lastRecorded)));
+        }
+    }
+
+    private static LocalDateTime earliest(LocalDateTime a, LocalDateTime b) {
+        return a == null ? b : b == null || a.isBefore(b) ? a : b;
+    }
+
+    private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+        return a == null ? b : b == null || a.isAfter(b) ? a : b;
+    }
+
+    /**
+     * Every position as of a row ID, with the recording times of the rows since the previous checkpoint
+     */
+    private static final class Checkpoint {
+        private final long sequence;
+        private final Map<String, Long> quantities;
+        private final LocalDateTime firstRecorded;
+        private final LocalDateTime lastRecorded;
+
+        Checkpoint(long sequence, Map<String, Long> quantities, LocalDateTime firstRecorded, LocalDateTime lastRecorded) {
+            this.sequence = sequence;
+            this.quantities = quantities;
+            this.firstRecorded = firstRecorded;
+            this.lastRecorded = lastRecorded;
+        }
+    }
+}
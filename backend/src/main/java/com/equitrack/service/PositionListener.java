@@ -0,0 +1,80 @@
+package com.equitrack.service;
+
+/**
+ * Told which trades and positions changed, so views of them can be refreshed or pushed.
+ * Called on the processing path: implementations must only record the change and return.
+ */
+public interface PositionListener {
+
+    PositionListener NONE = new PositionListener() {
+        @Override
+        public void positionChanged(String securityCode) {
+        }
+
+        @Override
+        public void tradeChanged(Long tradeId) {
+        }
+
+        @Override
+        public void cleared() {
+        }
+    };
+
+    /**
+     * A security's position was created, changed or deleted
+     */
+    void positionChanged(String securityCode);
+
+    /**
+     * A trade was created, changed or deleted
+     */
+    void tradeChanged(Long tradeId);
+
+    /**
+     * Every trade and position was removed
+     */
+    void cleared();
+
+    /**
+     * A stored transaction was deleted, rewriting history
+     */
+    default void transactionDeleted(Long transactionId) {
+    }
+
+    /**
+     * Listener that tells both listeners, in order
+     */
+    static PositionListener combine(PositionListener first, PositionListener second) {
+        if (first == NONE) {
+            return second;
+        }
+        if (second == NONE) {
+            return first;
+        }
+        return new PositionListener() {
+            @Override
+            public void positionChanged(String securityCode) {
+                first.positionChanged(securityCode);
+                second.positionChanged(securityCode);
+            }
+
+            @Override
+            public void tradeChanged(Long tradeId) {
+                first.tradeChanged(tradeId);
+                second.tradeChanged(tradeId);
+            }
+
+            @Override
+            public void cleared() {
+                first.cleared();
+                second.cleared();
+            }
+
+            @Override
+            public void transactionDeleted(Long transactionId) {
+                first.transactionDeleted(transactionId);
+                second.transactionDeleted(transactionId);
+            }
+        };
+    }
+}
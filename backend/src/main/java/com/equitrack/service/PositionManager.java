@@ -0,0 +1,141 @@
+package com.equitrack.service;
+
+import com.equitrack.model.Position;
+import com.equitrack.model.Trade;
+import com.equitrack.model.TradeFilter;
+import com.equitrack.model.Transaction;
+import com.equitrack.model.TransactionFilter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Position keeping operations served by the REST API.
+ * Implemented by the JPA-backed service and by the in-memory hybrid engine,
+ * selected with {@code equitrack.engine.mode}.
+ */
+public interface PositionManager {
+
+    /**
+     * Process a transaction and update positions accordingly
+     */
+    void processTransaction(Transaction transaction);
+
+    /**
+     * Process multiple transactions. A batch that fails has applied none of them, unless it throws a
+     * {@link PartiallyAppliedBatchException}, which names those it did apply.
+     */
+    void processTransactions(List<Transaction> transactions);
+
+    /**
+     * Get current positions
+     */
+    List<Position> getPositions();
+
+    /**
+     * Get all trades
+     */
+    List<Trade> getTrades();
+
+    /**
+     * Get all transactions
+     */
+    List<Transaction> getTransactions();
+
+    /**
+     * Visit every transaction in transaction ID order without holding them all in memory
+     */
+    void forEachTransaction(Consumer<Transaction> consumer);
+
+    /**
+     * Up to limit trades matching the filter, in trade ID order, after the given trade ID (null for the first page)
+     */
+    List<Trade> findTrades(TradeFilter filter, Long afterTradeId, int limit);
+
+    /**
+     * Up to limit transactions matching the filter, in transaction ID order, after the given transaction ID (null for the first page)
+     */
+    List<Transaction> findTransactions(TransactionFilter filter, Long afterTransactionId, int limit);
+
+    /**
+     * Get transaction by ID
+     */
+    Optional<Transaction> getTransactionById(Long transactionId);
+
+    /**
+     * Get trade by ID
+     */
+    Optional<Trade> getTradeById(Long tradeId);
+
+    /**
+     * Every stored version of a trade in version order; empty for an unknown trade
+     */
+    List<Transaction> getTradeHistory(Long tradeId);
+
+    /**
+     * Latest stored version of a trade
+     */
+    Optional<Transaction> getLatestVersion(Long tradeId);
+
+    /**
+     * Get position by security code
+     */
+    Optional<Position> getPositionBySecurityCode(String securityCode);
+
+    /**
+     * Positions of the given securities in one read; securities without a position are left out
+     */
+    List<Position> getPositionsBySecurityCodes(Collection<String> securityCodes);
+
+    /**
+     * Delete transaction by ID
+     */
+    void deleteTransaction(Long transactionId);
+
+    /**
+     * Delete trade by ID
+     */
+    void deleteTrade(Long tradeId);
+
+    /**
+     * Delete position by security code
+     */
+    void deletePosition(String securityCode);
+
+    /**
+     * Number of trades
+     */
+    long getTradeCount();
+
+    /**
+     * Number of securities with a position
+     */
+    long getSecurityCount();
+
+    /**
+     * Number of early transactions waiting for their previous version
+     */
+    int getPendingCount();
+
+    /**
+     * Number of transactions ignored because their trade already had that version or a later one
+     */
+    long getStaleCount();
+
+    /**
+     * Early transactions dropped because they outlived the TTL or the buffer was full
+     */
+    long getDroppedPendingCount();
+
+    /**
+     * Be told about every trade and position change from now on
+     */
+    void addPositionListener(PositionListener listener);
+
+    /**
+     * Clear all data (for testing/reset)
+     */
+    void clear();
+}
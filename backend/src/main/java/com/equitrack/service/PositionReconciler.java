@@ -0,0 +1,293 @@
+package com.equitrack.service;
+
+import com.equitrack.entity.Position;
+import com.equitrack.repository.PositionRepository;
+import com.equitrack.repository.TradeRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks the stored positions against the trades they are derived from.
+ * <p>
+ * Positions are maintained incrementally, so deleting a position or a transaction can leave
+ * them out of step with the trades. A run recomputes every security's net quantity from
+ * the active trades and compares it with the stored position (a missing position counts as
+ * 0). Trades are summed with one {@code GROUP BY} per chunk of {@code chunk-size} trade IDs,
+ * with {@code parallelism} chunks in flight; memory grows with the number of securities, not
+ * trades. Each chunk is a short read of its own, so ingestion is never blocked and may move
+ * positions while the run is in progress; a security that looks off is therefore checked
+ * again on its own before it is reported. With {@code repair}, reported drift is corrected
+ * through {@link PositionServiceJPA#repairPosition}.
+ * <p>
+ * Only the database of the JPA engine is reconciled; in hybrid mode the database trails the
+ * engine through the write-behind queue by design.
+ */
+@Component
+public class PositionReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(PositionReconciler.class);
+
+    /** Drifts listed in a report; any beyond are only counted */
+    static final int MAX_REPORTED_DRIFTS = 1000;
+
+    private final PositionServiceJPA positionService;
+    private final TradeRepository tradeRepository;
+    private final PositionRepository positionRepository;
+    private final boolean jpaMode;
+    private final boolean scheduled;
+    private final boolean repairScheduled;
+    private final int chunkSize;
+    private final int parallelism;
+    private final ExecutorService executor;
+    /** Scheduled runs go here, so the scheduler thread shared with flushes and fsyncs is never held up */
+    private final ExecutorService scheduledRunner;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong driftsFound = new AtomicLong();
+    private final AtomicLong driftsRepaired = new AtomicLong();
+    private volatile Report lastReport;
+
+    public PositionReconciler(PositionServiceJPA positionService, TradeRepository tradeRepository,
+                              PositionRepository positionRepository,
+                              @Value("${equitrack.engine.mode:jpa}") String engineMode,
+                              @Value("${equitrack.reconciliation.enabled:false}") boolean scheduled,
+                              @Value("${equitrack.reconciliation.repair:false}") boolean repairScheduled,
+                              @Value("${equitrack.reconciliation.chunk-size:1000000}") int chunkSize,
+                              @Value("${equitrack.reconciliation.parallelism:2}") int parallelism) {
+        this.positionService = positionService;
+        this.tradeRepository = tradeRepository;
+        this.positionRepository = positionRepository;
+        this.jpaMode = engineMode.equals("jpa");
+        this.scheduled = scheduled;
+        this.repairScheduled = repairScheduled;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.parallelism = Math.max(1, parallelism);
+        this.executor = Executors.newFixedThreadPool(this.parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "equitrack-reconcile");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduledRunner = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "equitrack-reconcile-scheduled");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Reconcile in the background on the configured interval when {@code equitrack.reconciliation.enabled} is set
+     */
+    @Scheduled(fixedDelayString = "${equitrack.reconciliation.interval-ms:3600000}",
+            initialDelayString = "${equitrack.reconciliation.interval-ms:3600000}")
+    public void scheduledRun() {
+        if (scheduled && jpaMode && !running.get()) {
+            scheduledRunner.execute(() -> {
+                try {
+                    reconcile(repairScheduled);
+                } catch (RuntimeException e) {
+                    log.error("Scheduled reconciliation failed", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Run a reconciliation now; empty if one is already running
+     */
+    public Optional<Report> reconcile(boolean repair) {
+        if (!jpaMode) {
+            throw new IllegalStateException("Positions are only reconciled in jpa mode");
+        }
+        if (!running.compareAndSet(false, true)) {
+            return Optional.empty();
+        }
+        try {
+            Report report = run(repair);
+            lastReport = report;
+            if (report.getDriftCount() > 0) {
+                log.warn("Reconciliation found {} drifted positions ({} repaired) in {} trades",
+                        report.getDriftCount(), report.getRepairedCount(), report.getTradesScanned());
+            } else {
+                log.info("Reconciliation checked {} securities in {} trades: no drift",
+                        report.getSecuritiesChecked(), report.getTradesScanned());
+            }
+            return Optional.of(report);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Report of the last completed run, if any
+     */
+    public Optional<Report> getLastReport() {
+        return Optional.ofNullable(lastReport);
+    }
+
+    /** Drifted positions found since startup */
+    public long getDriftsFound() {
+        return driftsFound.get();
+    }
+
+    /** Drifted positions repaired since startup */
+    public long getDriftsRepaired() {
+        return driftsRepaired.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduledRunner.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private Report run(boolean repair) {
+        long start = System.nanoTime();
+        Map<String, Long> expected = new ConcurrentHashMap<>();
+        AtomicLong tradesScanned = new AtomicLong();
+        int chunks = sumTrades(expected, tradesScanned);
+
+        Map<String, Long> stored = new HashMap<>();
+        for (Position position : positionRepository.findAll()) {
+            stored.put(position.getSecurityCode(), position.getQuantity());
+        }
+        Set<String> securities = new TreeSet<>(stored.keySet());
+        securities.addAll(expected.keySet());
+
+        List<Drift> drifts = new ArrayList<>();
+        int driftCount = 0;
+        int repairedCount = 0;
+        for (String securityCode : securities) {
+            long expectedQuantity = expected.getOrDefault(securityCode, 0L);
+            long storedQuantity = stored.getOrDefault(securityCode, 0L);
+            if (expectedQuantity == storedQuantity) {
+                continue;
+            }
+            // Ingestion may have moved the security since its chunk was summed: look again
+            expectedQuantity = tradeRepository.sumActiveQuantity(securityCode);
+            storedQuantity = positionRepository.findBySecurityCode(securityCode).map(Position::getQuantity).orElse(0L);
+            if (expectedQuantity == storedQuantity) {
+                continue;
+            }
+            boolean repaired = false;
+            if (repair) {
+                positionService.repairPosition(securityCode);
+                repaired = true;
+                repairedCount++;
+            }
+            driftCount++;
+            if (drifts.size() < MAX_REPORTED_DRIFTS) {
+                drifts.add(new Drift(securityCode, storedQuantity, expectedQuantity, repaired));
+            }
+        }
+        driftsFound.addAndGet(driftCount);
+        driftsRepaired.addAndGet(repairedCount);
+        return new Report(securities.size(), tradesScanned.get(), chunks,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), driftCount, repairedCount, drifts);
+    }
+
+    /**
+     * Sum active trades into {@code expected} chunk by chunk; returns the number of chunks
+     */
+    private int sumTrades(Map<String, Long> expected, AtomicLong tradesScanned) {
+        Semaphore inFlight = new Semaphore(parallelism);
+        List<Future<?>> futures = new ArrayList<>();
+        long after = Long.MIN_VALUE;
+        boolean last = false;
+        try {
+            while (!last) {
+                // The chunk ends at the chunkSize-th trade ID after the previous one, or runs to the end
+                List<Long> boundary = tradeRepository.findTradeIdsAfter(after, PageRequest.of(chunkSize - 1, 1));
+                last = boundary.isEmpty();
+                long from = after;
+                long to = last ? Long.MAX_VALUE : boundary.get(0);
+                inFlight.acquire();
+                futures.add(executor.submit(() -> {
+                    try {
+                        for (TradeRepository.SecurityQuantity sum : tradeRepository.sumActiveQuantities(from, to)) {
+                            expected.merge(sum.getSecurityCode(), sum.getQuantity(), Long::sum);
+                            tradesScanned.addAndGet(sum.getTrades());
+                        }
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+                after = to;
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("Interrupted while reconciling", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("Reconciliation failed", e.getCause());
+        }
+        return futures.size();
+    }
+
+    /**
+     * A security whose stored position disagreed with its trades
+     */
+    public static class Drift {
+        private final String securityCode;
+        private final long storedQuantity;
+        private final long expectedQuantity;
+        private final boolean repaired;
+
+        public Drift(String securityCode, long storedQuantity, long expectedQuantity, boolean repaired) {
+            this.securityCode = securityCode;
+            this.storedQuantity = storedQuantity;
+            this.expectedQuantity = expectedQuantity;
+            this.repaired = repaired;
+        }
+
+        public String getSecurityCode() { return securityCode; }
+        public long getStoredQuantity() { return storedQuantity; }
+        public long getExpectedQuantity() { return expectedQuantity; }
+        public boolean isRepaired() { return repaired; }
+    }
+
+    /**
+     * Outcome of one reconciliation run
+     */
+    public static class Report {
+        private final int securitiesChecked;
+        private final long tradesScanned;
+        private final int chunks;
+        private final long durationMillis;
+        private final int driftCount;
+        private final int repairedCount;
+        private final List<Drift> drifts;
+
+        public Report(int securitiesChecked, long tradesScanned, int chunks, long durationMillis,
+                      int driftCount, int repairedCount, List<Drift> drifts) {
+            this.securitiesChecked = securitiesChecked;
+            this.tradesScanned = tradesScanned;
+            this.chunks = chunks;
+            this.durationMillis = durationMillis;
+            this.driftCount = driftCount;
+            this.repairedCount = repairedCount;
+            this.drifts = drifts;
+        }
+
+        public int getSecuritiesChecked() { return securitiesChecked; }
+        public long getTradesScanned() { return tradesScanned; }
+        public int getChunks() { return chunks; }
+        public long getDurationMillis() { return durationMillis; }
+        public int getDriftCount() { return driftCount; }
+        public int getRepairedCount() { return repairedCount; }
+        /** The first {@value #MAX_REPORTED_DRIFTS} drifts, by security code */
+        public List<Drift> getDrifts() { return drifts; }
+    }
+}
@@ -5,135 +5,536 @@ import com.equitrack.model.Trade;
 import com.equitrack.model.Transaction;
 import com.equitrack.model.TransactionAction;
 import com.equitrack.model.TransactionSide;
+import com.equitrack.symbol.SymbolTable;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+/**
+ * In-memory position engine.
+ * Safe for concurrent callers: each transaction is applied atomically for its trade
+ * (under the trade's {@link TradeStore} segment), and positions are per-security
+ * {@link LongAdder} cells, so concurrent impacts on the same security never lose updates or allocate.
+ * <p>
+ * Securities are {@link SymbolTable} IDs inside the engine: trades are held in columnar
+ * primitive form and position cells sit in an array indexed by ID. Codes are only decoded,
+ * and {@link Trade} objects only built, on the way out, so callers always get copies.
+ * <p>
+ * With {@link Storage#OFF_HEAP} the trade rows and position counters live outside the Java
+ * heap, optionally in memory-mapped files; see {@link #checkpoint(long)} and {@link #resume(long)}.
+ * <p>
+ * Versions are applied in order per trade: an UPDATE/CANCEL that arrives before its
+ * trade reaches the previous version is held in a {@link PendingTransactionBuffer} and
+ * applied once the gap fills, and versions at or below the current one are ignored.
+ * <p>
+ * {@link #beginSnapshot()} captures a consistent view without blocking writers: while a
+ * snapshot is open, the first change to each trade saves a copy of the trade as it was
+ * when the snapshot began.
+ */
 @Service
 public class PositionService {
-    
-    private final Map<Long, Trade> trades = new ConcurrentHashMap<>();
-    private final Map<String, Integer> positions = new ConcurrentHashMap<>();
+
+    private static final Logger log = LoggerFactory.getLogger(PositionService.class);
+
+    public enum Storage {
+        HEAP,
+        OFF_HEAP
+    }
+
+    private final SymbolTable symbols;
+    private final TradeStore trades;
+    private final PositionCells positions;
+    /** Backing files of a memory-mapped engine, or null */
+    private final EngineFiles files;
+    private final PendingTransactionBuffer pendingTransactions;
+    private final LongAdder staleTransactions = new LongAdder();
+    private volatile PositionListener positionListener = PositionListener.NONE;
+
+    /** Trades as they were when the open snapshot began, keyed by trade ID; null when no snapshot is open */
+    private volatile ConcurrentHashMap<Long, Trade> preImages;
+    private static final Trade ABSENT = new Trade();
+    private static final Trade CAPTURED = new Trade();
+
+    public PositionService() {
+        this(60_000L, 100_000);
+    }
+
+    public PositionService(long pendingTtlMillis, int pendingCapacity) {
+        this(new SymbolTable(), Storage.HEAP, null, pendingTtlMillis, pendingCapacity);
+    }
+
+    @Autowired
+    public PositionService(SymbolTable symbols,
+                           @Value("${equitrack.engine.storage:heap}") String storage,
+                           @Value("${equitrack.engine.storage-directory:}") String storageDirectory,
+                           @Value("${equitrack.pending.ttl-ms:60000}") long pendingTtlMillis,
+                           @Value("${equitrack.pending.capacity:100000}") int pendingCapacity) {
+        this(symbols, Storage.valueOf(storage.toUpperCase().replace('-', '_')),
+                storageDirectory.isBlank() ? null : Paths.get(storageDirectory), pendingTtlMillis, pendingCapacity);
+    }
+
+    /**
+     * Engine keeping its state on or off the heap; off the heap it is mapped from files in
+     * {@code storageDirectory} if one is given
+     */
+    public PositionService(SymbolTable symbols, Storage storage, Path storageDirectory,
+                           long pendingTtlMillis, int pendingCapacity) {
+        this.symbols = symbols;
+        if (storage == Storage.HEAP) {
+            if (storageDirectory != null) {
+                log.warn("The engine storage directory needs off-heap storage; {} is ignored", storageDirectory);
+            }
+            this.files = null;
+            this.trades = new TradeStore(symbols);
+            this.positions = new PositionCells.Heap();
+        } else {
+            this.files = storageDirectory == null ? null : new EngineFiles(storageDirectory, TradeStore.SEGMENTS);
+            this.trades = new TradeStore(symbols,
+                    segment -> new TradeStore.OffHeapSegment(files == null ? null : files.segmentFile(segment)));
+            this.positions = new PositionCells.OffHeap(files == null ? null : files.positionsFile());
+        }
+        this.pendingTransactions = new PendingTransactionBuffer(pendingTtlMillis, pendingCapacity);
+    }
 
     /**
      * Process a transaction and update positions accordingly
      */
     public void processTransaction(Transaction transaction) {
-        Trade existingTrade = trades.get(transaction.getTradeId());
-        
+        long tradeId = transaction.getTradeId();
+        TradeStore.Segment segment = trades.segmentFor(tradeId);
+        synchronized (segment) {
+            int row = segment.find(tradeId);
+            recordPreImage(tradeId, segment, row);
+            row = applyInOrder(transaction, segment, row);
+            // Apply any held versions the trade can now reach
+            while (row >= 0) {
+                Transaction next = pendingTransactions.take(tradeId, segment.version(row) + 1);
+                if (next == null) {
+                    break;
+                }
+                row = apply(next, segment, row);
+            }
+        }
+        positionListener.tradeChanged(tradeId);
+    }
+
+    /**
+     * Reject a transaction the engine or the journal could not take, before anything is changed
+     */
+    public void validate(Transaction transaction) {
+        SymbolTable.checkCode(transaction.getSecurityCode());
+    }
+
+    /**
+     * Apply a transaction if it is the trade's next version, hold it if it is early, ignore it if it is stale.
+     * Rows are -1 for a trade the engine does not hold.
+     */
+    private int applyInOrder(Transaction transaction, TradeStore.Segment segment, int row) {
+        if (row < 0) {
+            if (transaction.getAction() != TransactionAction.INSERT) {
+                pendingTransactions.hold(transaction);
+                return row;
+            }
+        } else if (transaction.getVersion() <= segment.version(row)) {
+            staleTransactions.increment();
+            return row;
+        } else if (transaction.getAction() != TransactionAction.INSERT
+                && transaction.getVersion() > segment.version(row) + 1) {
+            pendingTransactions.hold(transaction);
+            return row;
+        }
+        return apply(transaction, segment, row);
+    }
+
+    /**
+     * Apply a transaction to a trade
+     */
+    private int apply(Transaction transaction, TradeStore.Segment segment, int row) {
         if (transaction.getAction() == TransactionAction.INSERT) {
-            handleInsert(transaction);
+            return handleInsert(transaction, segment, row);
         } else if (transaction.getAction() == TransactionAction.UPDATE) {
-            handleUpdate(transaction, existingTrade);
+            return handleUpdate(transaction, segment, row);
         } else if (transaction.getAction() == TransactionAction.CANCEL) {
-            handleCancel(transaction, existingTrade);
+            return handleCancel(transaction, segment, row);
         }
+        return row;
     }
 
     /**
      * Handle INSERT transaction
      */
-    private void handleInsert(Transaction transaction) {
+    private int handleInsert(Transaction transaction, TradeStore.Segment segment, int row) {
+        // Intern first: a rejected code must leave the trade untouched
+        int securityId = symbols.intern(transaction.getSecurityCode());
+
         // Remove any existing position impact from this trade
-        Trade existingTrade = trades.get(transaction.getTradeId());
-        if (existingTrade != null) {
-            removeTradeImpact(existingTrade);
+        if (row >= 0) {
+            removeTradeImpact(segment, row);
+        } else {
+            row = segment.insert(transaction.getTradeId());
         }
 
-        // Create new trade
-        Trade trade = new Trade(
-            transaction.getTradeId(),
-            transaction.getVersion(),
-            transaction.getSecurityCode(),
-            transaction.getQuantity(),
-            transaction.getSide(),
-            false
-        );
+        // Reset the trade to the inserted values
+        segment.set(row, transaction.getVersion(), securityId,
+                transaction.getQuantity(), transaction.getSide(), false);
 
-        trades.put(transaction.getTradeId(), trade);
-        addTradeImpact(trade);
+        addTradeImpact(segment, row);
+        return row;
     }
 
     /**
      * Handle UPDATE transaction
      */
-    private void handleUpdate(Transaction transaction, Trade existingTrade) {
-        if (existingTrade == null) {
-            // If we don't have the original trade yet, store this update for later processing
-            // In a real system, you might want to queue this transaction
-            return;
+    private int handleUpdate(Transaction transaction, TradeStore.Segment segment, int row) {
+        if (row < 0) {
+            // Held by applyInOrder until the INSERT arrives
+            return row;
         }
 
+        int securityId = symbols.intern(transaction.getSecurityCode());
+
         // Remove impact of existing trade
-        removeTradeImpact(existingTrade);
+        removeTradeImpact(segment, row);
 
         // Update trade with new values
-        existingTrade.setCurrentVersion(transaction.getVersion());
-        existingTrade.setSecurityCode(transaction.getSecurityCode());
-        existingTrade.setQuantity(transaction.getQuantity());
-        existingTrade.setSide(transaction.getSide());
+        segment.set(row, transaction.getVersion(), securityId,
+                transaction.getQuantity(), transaction.getSide(), segment.isCancelled(row));
 
         // Add impact of updated trade
-        addTradeImpact(existingTrade);
+        addTradeImpact(segment, row);
+        return row;
     }
 
     /**
      * Handle CANCEL transaction
      */
-    private void handleCancel(Transaction transaction, Trade existingTrade) {
-        if (existingTrade == null) {
-            // If we don't have the original trade yet, store this cancel for later processing
-            return;
+    private int handleCancel(Transaction transaction, TradeStore.Segment segment, int row) {
+        if (row < 0) {
+            // Held by applyInOrder until the INSERT arrives
+            return row;
         }
 
         // Remove impact of existing trade
-        removeTradeImpact(existingTrade);
+        removeTradeImpact(segment, row);
 
         // Mark trade as cancelled
-        existingTrade.setIsCancelled(true);
-        existingTrade.setCurrentVersion(transaction.getVersion());
+        segment.cancel(row, transaction.getVersion());
+        return row;
     }
 
     /**
      * Add the impact of a trade to positions
      */
-    private void addTradeImpact(Trade trade) {
-        if (trade.getIsCancelled()) return;
+    private void addTradeImpact(TradeStore.Segment segment, int row) {
+        if (segment.isCancelled(row)) return;
 
-        String securityCode = trade.getSecurityCode();
-        int currentPosition = positions.getOrDefault(securityCode, 0);
-        int impact = trade.getSide() == TransactionSide.Buy ? trade.getQuantity() : -trade.getQuantity();
-        positions.put(securityCode, currentPosition + impact);
+        changePosition(segment.securityId(row), impactOf(segment.side(row), segment.quantity(row)));
     }
 
     /**
      * Remove the impact of a trade from positions
      */
-    private void removeTradeImpact(Trade trade) {
-        if (trade.getIsCancelled()) return;
+    private void removeTradeImpact(TradeStore.Segment segment, int row) {
+        if (segment.isCancelled(row)) return;
+
+        changePosition(segment.securityId(row), -impactOf(segment.side(row), segment.quantity(row)));
+    }
+
+    private void changePosition(int securityId, long delta) {
+        positions.add(securityId, delta);
+        positionListener.positionChanged(symbols.code(securityId));
+    }
 
-        String securityCode = trade.getSecurityCode();
-        int currentPosition = positions.getOrDefault(securityCode, 0);
-        int impact = trade.getSide() == TransactionSide.Buy ? trade.getQuantity() : -trade.getQuantity();
-        positions.put(securityCode, currentPosition - impact);
+    /**
+     * Signed position impact of a trade
+     */
+    private static long impactOf(TransactionSide side, long quantity) {
+        return side == TransactionSide.Buy ? quantity : -quantity;
     }
 
     /**
      * Get current positions
      */
     public List<Position> getPositions() {
-        return positions.entrySet().stream()
-                .map(entry -> new Position(entry.getKey(), entry.getValue()))
-                .collect(Collectors.toList());
+        List<Position> result = new ArrayList<>();
+        int limit = Math.min(positions.limit(), symbols.size());
+        for (int id = 0; id < limit; id++) {
+            if (positions.contains(id)) {
+                result.add(new Position(symbols.code(id), positions.quantity(id)));
+            }
+        }
+        return result;
     }
 
     /**
      * Get all trades
      */
     public List<Trade> getTrades() {
-        return new ArrayList<>(trades.values());
+        return trades.toTrades();
+    }
+
+    /**
+     * Get trade by ID
+     */
+    public Optional<Trade> getTradeById(Long tradeId) {
+        TradeStore.Segment segment = trades.segmentFor(tradeId);
+        synchronized (segment) {
+            int row = segment.find(tradeId);
+            return row < 0 ? Optional.empty() : Optional.of(trades.toTrade(segment, row));
+        }
+    }
+
+    /**
+     * Get position by security code
+     */
+    public Optional<Position> getPositionBySecurityCode(String securityCode) {
+        int securityId = symbols.find(securityCode);
+        return positions.contains(securityId)
+                ? Optional.of(new Position(securityCode, positions.quantity(securityId)))
+                : Optional.empty();
+    }
+
+    /**
+     * Security code a trade currently has, or null if the engine does not hold the trade
+     */
+    public String getSecurityCodeOfTrade(Long tradeId) {
+        TradeStore.Segment segment = trades.segmentFor(tradeId);
+        synchronized (segment) {
+            int row = segment.find(tradeId);
+            return row < 0 ? null : symbols.code(segment.securityId(row));
+        }
+    }
+
+    /**
+     * Number of trades
+     */
+    public long getTradeCount() {
+        return trades.size();
+    }
+
+    /**
+     * Bytes held by the trade columns and their index, including spare capacity
+     */
+    public long getTradeStoreBytes() {
+        return trades.footprintBytes();
+    }
+
+    /**
+     * Number of securities with a position
+     */
+    public long getSecurityCount() {
+        long count = 0;
+        int limit = Math.min(positions.limit(), symbols.size());
+        for (int id = 0; id < limit; id++) {
+            if (positions.contains(id)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Load a trade as-is, without touching positions (used when rebuilding state)
+     */
+    public void restoreTrade(Trade trade) {
+        long tradeId = trade.getTradeId();
+        int securityId = symbols.intern(trade.getSecurityCode());
+        TradeStore.Segment segment = trades.segmentFor(tradeId);
+        synchronized (segment) {
+            int row = segment.find(tradeId);
+            recordPreImage(tradeId, segment, row);
+            if (row < 0) {
+                row = segment.insert(tradeId);
+            }
+            segment.set(row, trade.getCurrentVersion(), securityId,
+                    trade.getQuantity(), trade.getSide(), Boolean.TRUE.equals(trade.getIsCancelled()));
+        }
+        positionListener.tradeChanged(tradeId);
+    }
+
+    /**
+     * Load a snapshot: trades as-is, positions recomputed from them, and the held early transactions
+     */
+    public void restoreSnapshot(Collection<Trade> snapshotTrades, Collection<String> positionCodes,
+                                Collection<Transaction> pending) {
+        positionCodes.forEach(code -> positions.add(symbols.intern(code), 0));
+        for (Trade trade : snapshotTrades) {
+            restoreTrade(trade);
+            if (!Boolean.TRUE.equals(trade.getIsCancelled())) {
+                changePosition(symbols.intern(trade.getSecurityCode()), impactOf(trade.getSide(), trade.getQuantity()));
+            }
+        }
+        pending.forEach(pendingTransactions::hold);
+    }
+
+    /**
+     * Hold an early transaction stored {@code ageMillis} ago for what is left of the TTL (used when rebuilding state)
+     */
+    public void restorePending(Transaction transaction, long ageMillis) {
+        pendingTransactions.hold(transaction, ageMillis);
+    }
+
+    /**
+     * Load a position as-is (used when rebuilding state)
+     */
+    public void restorePosition(Position position) {
+        positions.set(symbols.intern(position.getSecurityCode()), position.getQuantity());
+        positionListener.positionChanged(position.getSecurityCode());
+    }
+
+    /**
+     * Delete trade by ID, removing its position impact
+     */
+    public void deleteTrade(Long tradeId) {
+        TradeStore.Segment segment = trades.segmentFor(tradeId);
+        synchronized (segment) {
+            int row = segment.find(tradeId);
+            if (row >= 0) {
+                recordPreImage(tradeId, segment, row);
+                removeTradeImpact(segment, row);
+                segment.remove(row);
+            }
+        }
+        positionListener.tradeChanged(tradeId);
+    }
+
+    /**
+     * Delete position by security code
+     */
+    public void deletePosition(String securityCode) {
+        if (positions.remove(symbols.find(securityCode))) {
+            positionListener.positionChanged(securityCode);
+        }
+    }
+
+    /**
+     * Be told about every trade and position change from now on
+     */
+    public synchronized void addPositionListener(PositionListener listener) {
+        this.positionListener = PositionListener.combine(positionListener, listener);
+    }
+
+    /**
+     * Save a trade's state before its first change while a snapshot is open; called under the trade's segment
+     */
+    private void recordPreImage(long tradeId, TradeStore.Segment segment, int row) {
+        ConcurrentHashMap<Long, Trade> images = preImages;
+        if (images != null && !images.containsKey(tradeId)) {
+            images.put(tradeId, row < 0 ? ABSENT : trades.toTrade(segment, row));
+        }
+    }
+
+    /**
+     * Open a consistent snapshot of the engine as of now.
+     * Callers must hold off other writers for the duration of this call only; trades are read
+     * afterwards with {@link EngineSnapshot#forEachTrade} while writers carry on.
+     */
+    public synchronized EngineSnapshot beginSnapshot() {
+        if (preImages != null) {
+            throw new IllegalStateException("A snapshot is already open");
+        }
+        preImages = new ConcurrentHashMap<>();
+        List<String> positionCodes = getPositions().stream().map(Position::getSecurityCode).collect(Collectors.toList());
+        return new EngineSnapshot(positionCodes, pendingTransactions.snapshot());
+    }
+
+    /**
+     * Read-only view of the engine at the moment {@link #beginSnapshot()} was called
+     */
+    public class EngineSnapshot implements AutoCloseable {
+        private final List<String> positionCodes;
+        private final List<Transaction> pendingTransactions;
+
+        private EngineSnapshot(List<String> positionCodes, List<Transaction> pendingTransactions) {
+            this.positionCodes = positionCodes;
+            this.pendingTransactions = pendingTransactions;
+        }
+
+        public List<String> getPositionCodes() {
+            return positionCodes;
+        }
+
+        public List<Transaction> getPendingTransactions() {
+            return pendingTransactions;
+        }
+
+        /**
+         * Visit every trade as it was when the snapshot began; each trade is passed as a private copy
+         */
+        public void forEachTrade(Consumer<Trade> consumer) {
+            ConcurrentHashMap<Long, Trade> images = preImages;
+            for (int i = 0; i < TradeStore.SEGMENTS; i++) {
+                TradeStore.Segment segment = trades.segment(i);
+                List<Trade> unchanged = new ArrayList<>();
+                synchronized (segment) {
+                    for (int row = 0; row < segment.size(); row++) {
+                        // Unchanged since the snapshot began: capture it now and stop writers saving a pre-image
+                        if (images.putIfAbsent(segment.tradeId(row), CAPTURED) == null) {
+                            unchanged.add(trades.toTrade(segment, row));
+                        }
+                    }
+                }
+                unchanged.forEach(consumer);
+            }
+            // Trades changed or deleted since the snapshot began, in their original state
+            for (Trade trade : images.values()) {
+                if (trade != ABSENT && trade != CAPTURED) {
+                    consumer.accept(trade);
+                }
+            }
+        }
+
+        /**
+         * Close the snapshot and stop saving pre-images
+         */
+        @Override
+        public void close() {
+            synchronized (PositionService.this) {
+                preImages = null;
+            }
+        }
+    }
+
+    /**
+     * Number of early transactions waiting for their previous version
+     */
+    public int getPendingCount() {
+        return pendingTransactions.size();
+    }
+
+    /**
+     * Number of transactions ignored because their trade already had that version or a later one
+     */
+    public long getStaleCount() {
+        return staleTransactions.sum();
+    }
+
+    /**
+     * Early transactions dropped because they outlived the TTL or the buffer was full
+     */
+    public long getDroppedPendingCount() {
+        return pendingTransactions.getExpiredCount() + pendingTransactions.getRejectedCount();
+    }
+
+    /**
+     * Expire early transactions whose gap never filled
+     */
+    @Scheduled(fixedDelayString = "${equitrack.pending.sweep-interval-ms:1000}")
+    public void expirePending() {
+        pendingTransactions.expire();
     }
 
     /**
@@ -142,20 +543,92 @@ public class PositionService {
     public void clear() {
         trades.clear();
         positions.clear();
+        pendingTransactions.clear();
+        positionListener.cleared();
+    }
+
+    /**
+     * Write a checkpoint so the next start can take up the memory-mapped state as it is, instead
+     * of rebuilding it; returns whether one was written. Call once writers have stopped, with the
+     * journal offset the state covers. Held early transactions are not part of the mapped state,
+     * so while there are any no checkpoint is written.
+     */
+    public synchronized boolean checkpoint(long journalOffset) {
+        if (files == null) {
+            return false;
+        }
+        if (pendingTransactions.size() > 0) {
+            log.info("Not checkpointing the engine: {} early transactions are held", pendingTransactions.size());
+            return false;
+        }
+        int[] segmentRows = new int[TradeStore.SEGMENTS];
+        for (int i = 0; i < TradeStore.SEGMENTS; i++) {
+            TradeStore.OffHeapSegment segment = (TradeStore.OffHeapSegment) trades.segment(i);
+            synchronized (segment) {
+                segment.force();
+                segmentRows[i] = segment.size();
+            }
+        }
+        ((PositionCells.OffHeap) positions).force();
+        List<String> codes = new ArrayList<>(symbols.size());
+        for (int id = 0; id < symbols.size(); id++) {
+            codes.add(symbols.code(id));
+        }
+        files.writeCheckpoint(new EngineFiles.Checkpoint(journalOffset, codes, segmentRows));
+        log.info("Checkpointed {} trades at journal offset {}", trades.size(), journalOffset);
+        return true;
+    }
+
+    /**
+     * Take up the memory-mapped state left by the last clean shutdown, if it covers no more of
+     * the journal than {@code journalEnd}; returns the journal offset to replay from. When it
+     * returns empty the engine holds nothing from the files and should be cleared.
+     */
+    public synchronized OptionalLong resume(long journalEnd) {
+        Optional<EngineFiles.Checkpoint> found = files == null ? Optional.empty() : files.getCheckpoint();
+        if (found.isEmpty() || found.get().getJournalOffset() > journalEnd) {
+            return OptionalLong.empty();
+        }
+        EngineFiles.Checkpoint checkpoint = found.get();
+        try {
+            for (int id = 0; id < checkpoint.getSymbols().size(); id++) {
+                symbols.restore(id, checkpoint.getSymbols().get(id));
+            }
+        } catch (IllegalStateException e) {
+            log.warn("Not resuming the engine from its files: {}", e.getMessage());
+            return OptionalLong.empty();
+        }
+        for (int i = 0; i < TradeStore.SEGMENTS; i++) {
+            TradeStore.OffHeapSegment segment = (TradeStore.OffHeapSegment) trades.segment(i);
+            synchronized (segment) {
+                segment.resume(checkpoint.getSegmentRows()[i]);
+            }
+        }
+        ((PositionCells.OffHeap) positions).resume(symbols.size());
+        positionListener.cleared();
+        log.info("Resumed {} trades from engine files at journal offset {}", trades.size(), checkpoint.getJournalOffset());
+        return OptionalLong.of(checkpoint.getJournalOffset());
+    }
+
+    /**
+     * Release the backing files of a memory-mapped engine
+     */
+    @PreDestroy
+    public void close() {
+        if (files != null) {
+            try {
+                files.close();
+            } catch (IOException e) {
+                log.warn("Failed to close engine storage", e);
+            }
+        }
     }
 
     /**
-     * Process multiple transactions in sequence
+     * Process multiple transactions in arrival order; out-of-order versions are held until their gap fills
      */
     public void processTransactions(List<Transaction> transactions) {
-        // Sort transactions by version to ensure proper order
-        List<Transaction> sortedTransactions = transactions.stream()
-                .sorted(Comparator
-                        .comparing(Transaction::getTradeId)
-                        .thenComparing(Transaction::getVersion))
-                .collect(Collectors.toList());
-
-        for (Transaction transaction : sortedTransactions) {
+        for (Transaction transaction : transactions) {
             processTransaction(transaction);
         }
     }
@@ -3,22 +3,98 @@ package com.equitrack.service;
 import com.equitrack.entity.Position;
 import com.equitrack.entity.Trade;
 import com.equitrack.entity.Transaction;
+import com.equitrack.ids.TransactionIdIndex;
+import com.equitrack.metrics.TransactionMetrics;
+import com.equitrack.model.TradeFilter;
 import com.equitrack.model.TransactionAction;
+import com.equitrack.model.TransactionFilter;
 import com.equitrack.model.TransactionSide;
+import com.equitrack.repository.JournalStateRepository;
 import com.equitrack.repository.PositionRepository;
 import com.equitrack.repository.TradeRepository;
 import com.equitrack.repository.TransactionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.Predicate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ObjLongConsumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Transactional
-public class PositionServiceJPA {
+public class PositionServiceJPA implements PositionManager {
     
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:500}")
+    private int batchSize;
+    
+    @Value("${equitrack.pending.ttl-ms:60000}")
+    private long pendingTtlMillis;
+    
+    @Value("${equitrack.pending.capacity:100000}")
+    private int pendingCapacity;
+    
+    @Value("${equitrack.engine.mode:jpa}")
+    private String engineMode;
+    
+    @Value("${equitrack.dedup.enabled:true}")
+    private boolean dedupEnabled;
+    
+    @Value("${equitrack.dedup.recent-capacity:100000}")
+    private int dedupRecentCapacity;
+    
+    @Value("${equitrack.dedup.expected-transactions:10000000}")
+    private long dedupExpectedTransactions;
+    
+    @Value("${equitrack.dedup.false-positive-rate:0.01}")
+    private double dedupFalsePositiveRate;
+    
+    @Value("${equitrack.trade-history.max-kb:65536}")
+    private long tradeHistoryMaxKb;
+    
+    private PendingTransactionBuffer pendingTransactions;
+    
+    /** Seen transaction IDs; only loaded in jpa mode with dedup enabled, otherwise every check goes to the database */
+    private TransactionIdIndex transactionIdIndex;
+    
+    /** Version chains of recently used trades, kept in step with the rows as they commit */
+    private VersionChainCache versionChains;
+    
+    private final LongAdder staleTransactions = new LongAdder();
+    
+    /** Lowest transaction row ID written by each database transaction still open */
+    private final ConcurrentSkipListSet<Long> uncommittedRowIds = new ConcurrentSkipListSet<>();
+    
+    private volatile PositionListener positionListener = PositionListener.NONE;
+    
+    @Autowired
+    private TransactionMetrics metrics;
+
     @Autowired
     private TransactionRepository transactionRepository;
     
@@ -28,68 +104,192 @@ public class PositionServiceJPA {
     @Autowired
     private PositionRepository positionRepository;
 
+    @Autowired
+    private JournalStateRepository journalState;
+
+    /**
+     * Start up: create the in-memory structures and, in jpa mode, where this service is the engine,
+     * load what it needs from the stored rows
+     */
+    @PostConstruct
+    void start() {
+        createInMemoryState();
+        if (engineMode.equals("jpa")) {
+            if (dedupEnabled) {
+                loadTransactionIds();
+            }
+            // Rows written from here on do not follow the journal, so it must not be replayed onto them
+            clearJournalOffset();
+            forEachUnappliedTransaction(pendingTransactions::hold);
+        }
+    }
+
+    private void createInMemoryState() {
+        pendingTransactions = new PendingTransactionBuffer(pendingTtlMillis, pendingCapacity);
+        transactionIdIndex = new TransactionIdIndex(dedupRecentCapacity, dedupExpectedTransactions, dedupFalsePositiveRate);
+        versionChains = new VersionChainCache(tradeHistoryMaxKb * 1024);
+    }
+
+    private void loadTransactionIds() {
+        transactionIdIndex.rebuild(transactionRepository.findAllTransactionIds());
+    }
+
     /**
-     * Process a transaction and update positions accordingly
+     * Visit the stored early versions still waiting for the version before them, oldest first, with
+     * how many milliseconds ago each was stored, so they can be held again after a restart for what is
+     * left of the pending TTL. Versions stored longer ago than the TTL had expired and are skipped.
+     */
+    @Transactional(readOnly = true)
+    public void forEachUnappliedTransaction(ObjLongConsumer<com.equitrack.model.Transaction> consumer) {
+        LocalDateTime now = LocalDateTime.now();
+        transactionRepository.findUnappliedTransactions(now.minus(Duration.ofMillis(pendingTtlMillis)),
+                        PageRequest.of(0, Math.max(1, pendingCapacity)))
+                .forEach(transaction -> consumer.accept(convertToModel(transaction),
+                        Math.max(0, Duration.between(transaction.getRecordedAt(), now).toMillis())));
+    }
+
+    /**
+     * Process a transaction and update positions accordingly.
+     * Versions are applied in order per trade: early UPDATE/CANCEL events are held in memory
+     * until the gap fills, and versions at or below the trade's current version are ignored.
      */
     public void processTransaction(com.equitrack.model.Transaction transactionModel) {
+        long start = metrics.start();
+
         // Convert model to entity
         Transaction transaction = convertToEntity(transactionModel);
         
-        // Check if transaction already exists
-        if (transactionRepository.existsByTransactionId(transaction.getTransactionId())) {
-            throw new IllegalArgumentException("Transaction with ID " + transaction.getTransactionId() + " already exists");
+        // Check if transaction already exists; the index only sends doubtful IDs to the database
+        TransactionIdIndex.Seen seen = transactionIdIndex.claim(transaction.getTransactionId());
+        if (seen != TransactionIdIndex.Seen.YES) {
+            releaseOnRollback(List.of(transaction.getTransactionId()));
+        }
+        if (seen == TransactionIdIndex.Seen.YES
+                || (seen == TransactionIdIndex.Seen.MAYBE && transactionRepository.existsByTransactionId(transaction.getTransactionId()))) {
+            metrics.recordDuplicate();
+            throw new DuplicateTransactionException(transaction.getTransactionId());
         }
         
         // Save transaction
         transactionRepository.save(transaction);
+        trackUncommitted(transaction);
+        appendVersionsOnCommit(List.of(transactionModel));
         
-        // Process based on action
-        Trade existingTrade = tradeRepository.findByTradeId(transaction.getTradeId()).orElse(null);
-        
+        // Process based on action, then apply any held versions the trade can now reach
+        PositionDeltas positions = new PositionDeltas();
+        Trade trade = applyInOrder(transactionModel, tradeRepository.findByTradeId(transaction.getTradeId()).orElse(null), positions);
+        while (trade != null) {
+            com.equitrack.model.Transaction next = takePending(trade.getTradeId(), trade.getCurrentVersion() + 1);
+            if (next == null) {
+                break;
+            }
+            trade = applyInOrder(next, trade, positions);
+        }
+        applyPositionDeltas(positions);
+        notifyTradesChanged(List.of(transaction.getTradeId()));
+        metrics.recordTransaction(transactionModel, start);
+    }
+
+    /**
+     * Apply a transaction if it is the trade's next version, hold it if it is early, ignore it if it is stale
+     */
+    private Trade applyInOrder(com.equitrack.model.Transaction transactionModel, Trade existingTrade,
+                               PositionDeltas positions) {
+        if (isHeldOrStale(transactionModel, existingTrade)) {
+            return existingTrade;
+        }
+
+        Transaction transaction = convertToEntity(transactionModel);
         if (transaction.getAction() == TransactionAction.INSERT) {
-            handleInsert(transaction);
+            return handleInsert(transaction, existingTrade, positions);
         } else if (transaction.getAction() == TransactionAction.UPDATE) {
-            handleUpdate(transaction, existingTrade);
+            return handleUpdate(transaction, existingTrade, positions);
         } else if (transaction.getAction() == TransactionAction.CANCEL) {
-            handleCancel(transaction, existingTrade);
+            return handleCancel(transaction, existingTrade, positions);
         }
+        return existingTrade;
     }
 
     /**
-     * Handle INSERT transaction
+     * Hold early versions and skip stale ones; returns true if the transaction must not be applied now
      */
-    private void handleInsert(Transaction transaction) {
-        // Remove any existing position impact from this trade
-        Trade existingTrade = tradeRepository.findByTradeId(transaction.getTradeId()).orElse(null);
-        if (existingTrade != null) {
-            removeTradeImpact(existingTrade);
+    private boolean isHeldOrStale(com.equitrack.model.Transaction transaction, Trade existingTrade) {
+        if (existingTrade == null) {
+            if (transaction.getAction() != TransactionAction.INSERT) {
+                holdPending(transaction);
+                return true;
+            }
+            return false;
+        }
+        if (transaction.getVersion() <= existingTrade.getCurrentVersion()) {
+            staleTransactions.increment();
+            return true;
+        }
+        if (transaction.getAction() != TransactionAction.INSERT
+                && transaction.getVersion() > existingTrade.getCurrentVersion() + 1) {
+            holdPending(transaction);
+            return true;
         }
+        return false;
+    }
 
-        // Create new trade
-        Trade trade = new Trade(
-            transaction.getTradeId(),
-            transaction.getVersion(),
-            transaction.getSecurityCode(),
-            transaction.getQuantity(),
-            transaction.getSide()
-        );
+    /**
+     * Hold an early transaction; it is released again if the surrounding transaction does not commit,
+     * since its row is then not stored either
+     */
+    private void holdPending(com.equitrack.model.Transaction transaction) {
+        if (pendingTransactions.hold(transaction)) {
+            onRollback(() -> pendingTransactions.release(transaction));
+        }
+    }
 
-        tradeRepository.save(trade);
-        addTradeImpact(trade);
+    /**
+     * Take a held transaction; it is held again if the surrounding transaction does not commit,
+     * since it was then not applied
+     */
+    private com.equitrack.model.Transaction takePending(Long tradeId, int version) {
+        com.equitrack.model.Transaction taken = pendingTransactions.take(tradeId, version);
+        if (taken != null) {
+            onRollback(() -> pendingTransactions.hold(taken));
+        }
+        return taken;
     }
 
     /**
-     * Handle UPDATE transaction
+     * Handle INSERT transaction
      */
-    private void handleUpdate(Transaction transaction, Trade existingTrade) {
-        if (existingTrade == null) {
-            // If we don't have the original trade yet, store this update for later processing
-            // In a real system, you might want to queue this transaction
-            return;
+    private Trade handleInsert(Transaction transaction, Trade existingTrade, PositionDeltas positions) {
+        // Replace any existing trade in place, removing its position impact first
+        Trade trade = existingTrade;
+        if (trade != null) {
+            positions.remove(trade);
+            trade.setCurrentVersion(transaction.getVersion());
+            trade.setSecurityCode(transaction.getSecurityCode());
+            trade.setQuantity(transaction.getQuantity());
+            trade.setSide(transaction.getSide());
+            trade.setIsCancelled(false);
+        } else {
+            // Create new trade
+            trade = new Trade(
+                transaction.getTradeId(),
+                transaction.getVersion(),
+                transaction.getSecurityCode(),
+                transaction.getQuantity(),
+                transaction.getSide()
+            );
         }
 
+        tradeRepository.save(trade);
+        positions.add(trade);
+        return trade;
+    }
+
+    /**
+     * Handle UPDATE transaction
+     */
+    private Trade handleUpdate(Transaction transaction, Trade existingTrade, PositionDeltas positions) {
         // Remove impact of existing trade
-        removeTradeImpact(existingTrade);
+        positions.remove(existingTrade);
 
         // Update trade with new values
         existingTrade.setCurrentVersion(transaction.getVersion());
@@ -98,60 +298,184 @@ public class PositionServiceJPA {
         existingTrade.setSide(transaction.getSide());
 
         tradeRepository.save(existingTrade);
-        addTradeImpact(existingTrade);
+        positions.add(existingTrade);
+        return existingTrade;
     }
 
     /**
      * Handle CANCEL transaction
      */
-    private void handleCancel(Transaction transaction, Trade existingTrade) {
-        if (existingTrade == null) {
-            // If we don't have the original trade yet, store this cancel for later processing
-            return;
-        }
-
+    private Trade handleCancel(Transaction transaction, Trade existingTrade, PositionDeltas positions) {
         // Remove impact of existing trade
-        removeTradeImpact(existingTrade);
+        positions.remove(existingTrade);
 
         // Mark trade as cancelled
         existingTrade.setIsCancelled(true);
         existingTrade.setCurrentVersion(transaction.getVersion());
         
         tradeRepository.save(existingTrade);
+        return existingTrade;
     }
 
     /**
-     * Add the impact of a trade to positions
+     * Net position changes of one call, applied together at its end
      */
-    private void addTradeImpact(Trade trade) {
-        if (trade.getIsCancelled()) return;
+    private static class PositionDeltas {
+        private final Map<String, Long> deltas = new HashMap<>();
+        private final Set<String> openedSecurities = new HashSet<>();
 
-        String securityCode = trade.getSecurityCode();
-        Position position = positionRepository.findBySecurityCode(securityCode).orElse(
-            new Position(securityCode, 0)
-        );
-        
-        int impact = trade.getSide() == TransactionSide.Buy ? trade.getQuantity() : -trade.getQuantity();
-        position.setQuantity(position.getQuantity() + impact);
-        
-        positionRepository.save(position);
+        /**
+         * Add the impact of a trade; its security gets a position if it has none
+         */
+        void add(Trade trade) {
+            if (trade.getIsCancelled()) return;
+
+            deltas.merge(trade.getSecurityCode(), impactOf(trade), Long::sum);
+            openedSecurities.add(trade.getSecurityCode());
+        }
+
+        /**
+         * Remove the impact of a trade; ignored at apply time for a security without a position
+         */
+        void remove(Trade trade) {
+            if (trade.getIsCancelled()) return;
+
+            deltas.merge(trade.getSecurityCode(), -impactOf(trade), Long::sum);
+        }
+
+        private static long impactOf(Trade trade) {
+            return trade.getSide() == TransactionSide.Buy ? trade.getQuantity() : -trade.getQuantity();
+        }
+    }
+
+    /**
+     * Apply netted deltas with one atomic add per security, so concurrent calls never lose an update
+     */
+    private void applyPositionDeltas(PositionDeltas positions) {
+        if (positions.deltas.isEmpty()) {
+            return;
+        }
+        // Pending entity changes (e.g. a position deleted earlier in this transaction) must reach
+        // the database first, and managed positions are stale afterwards
+        entityManager.flush();
+        positionRepository.addToQuantities(positions.deltas, positions.openedSecurities);
+        entityManager.clear();
+        notifyPositionsChanged(positions.deltas.keySet());
+    }
+
+    /**
+     * Tell the listener about changed positions once they are committed, so it never reads them early
+     */
+    private void notifyPositionsChanged(Collection<String> securityCodes) {
+        PositionListener listener = positionListener;
+        if (listener != PositionListener.NONE && !securityCodes.isEmpty()) {
+            afterCommit(() -> securityCodes.forEach(listener::positionChanged));
+        }
+    }
+
+    /**
+     * Tell the listener about changed trades once they are committed
+     */
+    private void notifyTradesChanged(Collection<Long> tradeIds) {
+        PositionListener listener = positionListener;
+        if (listener != PositionListener.NONE && !tradeIds.isEmpty()) {
+            afterCommit(() -> tradeIds.forEach(listener::tradeChanged));
+        }
     }
 
     /**
-     * Remove the impact of a trade from positions
+     * Take claimed IDs back out of the index if the surrounding transaction does not commit
      */
-    private void removeTradeImpact(Trade trade) {
-        if (trade.getIsCancelled()) return;
+    private void releaseOnRollback(Collection<Long> transactionIds) {
+        onRollback(() -> transactionIds.forEach(transactionIdIndex::release));
+    }
 
-        String securityCode = trade.getSecurityCode();
-        Position position = positionRepository.findBySecurityCode(securityCode).orElse(null);
-        if (position != null) {
-            int impact = trade.getSide() == TransactionSide.Buy ? trade.getQuantity() : -trade.getQuantity();
-            position.setQuantity(position.getQuantity() - impact);
-            
-            // Always save the position, even if quantity is 0
-            positionRepository.save(position);
+    /**
+     * Undo an in-memory change if the surrounding transaction does not commit
+     */
+    private static void onRollback(Runnable undo) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
         }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    undo.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Save transaction rows, tracking them as uncommitted from the first chunk on, so a long
+     * bulk load is covered while its later chunks are still being written
+     */
+    private void saveTransactions(List<Transaction> entities) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        List<Transaction> first = entities.subList(0, Math.min(batchSize, entities.size()));
+        saveInBatches(first, transactionRepository);
+        // Row IDs are handed out in ascending order, so the first row holds the lowest
+        trackUncommitted(first.get(0));
+        saveInBatches(entities.subList(first.size(), entities.size()), transactionRepository);
+    }
+
+    /**
+     * Count a saved row as uncommitted until the surrounding transaction completes either way
+     */
+    private void trackUncommitted(Transaction saved) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Long rowId = saved.getId();
+        uncommittedRowIds.add(rowId);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                uncommittedRowIds.remove(rowId);
+            }
+        });
+    }
+
+    /**
+     * Lowest transaction row ID written by a database transaction that has not completed yet
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public OptionalLong getLowestUncommittedRowId() {
+        Long lowest = uncommittedRowIds.ceiling(Long.MIN_VALUE);
+        return lowest == null ? OptionalLong.empty() : OptionalLong.of(lowest);
+    }
+
+    /**
+     * Extend the cached version chains with stored transactions once they are committed
+     */
+    private void appendVersionsOnCommit(List<com.equitrack.model.Transaction> transactions) {
+        if (!transactions.isEmpty()) {
+            afterCommit(() -> transactions.forEach(versionChains::append));
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Be told about every trade and position change from now on
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public synchronized void addPositionListener(PositionListener listener) {
+        this.positionListener = PositionListener.combine(positionListener, listener);
     }
 
     /**
@@ -184,29 +508,387 @@ public class PositionServiceJPA {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Visit every transaction in transaction ID order, streaming rows instead of loading the table
+     */
+    @Transactional(readOnly = true)
+    public void forEachTransaction(Consumer<com.equitrack.model.Transaction> consumer) {
+        try (Stream<Transaction> transactions = transactionRepository.streamAllByOrderByTransactionIdAsc()) {
+            transactions.forEach(entity -> {
+                consumer.accept(convertToModel(entity));
+                entityManager.detach(entity);
+            });
+        }
+    }
+
+    /**
+     * Keyset page of trades: the filter plus {@code tradeId > afterTradeId}, ordered and limited in the query
+     */
+    @Transactional(readOnly = true)
+    public List<com.equitrack.model.Trade> findTrades(TradeFilter filter, Long afterTradeId, int limit) {
+        Specification<Trade> specification = (root, query, builder) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (afterTradeId != null) {
+                predicates.add(builder.greaterThan(root.get("tradeId"), afterTradeId));
+            }
+            if (filter.getSecurityCode() != null) {
+                predicates.add(builder.equal(root.get("securityCode"), filter.getSecurityCode()));
+            }
+            if (filter.getSide() != null) {
+                predicates.add(builder.equal(root.get("side"), filter.getSide()));
+            }
+            if (filter.getCancelled() != null) {
+                predicates.add(builder.equal(root.get("isCancelled"), filter.getCancelled()));
+            }
+            return builder.and(predicates.toArray(new Predicate[0]));
+        };
+        return tradeRepository.findBy(specification, query -> query.sortBy(Sort.by("tradeId")).limit(limit).all())
+                .stream()
+                .map(this::convertToModel)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Keyset page of transactions: the filter plus {@code transactionId > afterTransactionId}, ordered and limited in the query
+     */
+    @Transactional(readOnly = true)
+    public List<com.equitrack.model.Transaction> findTransactions(TransactionFilter filter, Long afterTransactionId, int limit) {
+        Specification<Transaction> specification = (root, query, builder) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (afterTransactionId != null) {
+                predicates.add(builder.greaterThan(root.get("transactionId"), afterTransactionId));
+            }
+            if (filter.getTradeId() != null) {
+                predicates.add(builder.equal(root.get("tradeId"), filter.getTradeId()));
+            }
+            if (filter.getSecurityCode() != null) {
+                predicates.add(builder.equal(root.get("securityCode"), filter.getSecurityCode()));
+            }
+            if (filter.getSide() != null) {
+                predicates.add(builder.equal(root.get("side"), filter.getSide()));
+            }
+            if (filter.getAction() != null) {
+                predicates.add(builder.equal(root.get("action"), filter.getAction()));
+            }
+            return builder.and(predicates.toArray(new Predicate[0]));
+        };
+        return transactionRepository.findBy(specification, query -> query.sortBy(Sort.by("transactionId")).limit(limit).all())
+                .stream()
+                .map(this::convertToModel)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the IDs of all stored transactions
+     */
+    @Transactional(readOnly = true)
+    public List<Long> getTransactionIds() {
+        return transactionRepository.findAllTransactionIds();
+    }
+
+    /**
+     * Persist transactions together with the latest state of the trades and positions they touched.
+     * Used by the write-behind queue of the in-memory engine; trades and positions are upserted.
+     */
+    public void persistState(List<com.equitrack.model.Transaction> transactions,
+                             Collection<com.equitrack.model.Trade> trades,
+                             Collection<com.equitrack.model.Position> positions) {
+        // Load and modify managed entities first so their updates go out with the first batch flush
+        Map<Long, com.equitrack.model.Trade> tradesById = new HashMap<>();
+        trades.forEach(trade -> tradesById.put(trade.getTradeId(), trade));
+        for (Trade entity : findInChunks(tradesById.keySet(), tradeRepository::findByTradeIdIn)) {
+            copyToEntity(tradesById.remove(entity.getTradeId()), entity);
+        }
+        List<Trade> newTrades = new ArrayList<>(tradesById.size());
+        for (com.equitrack.model.Trade trade : tradesById.values()) {
+            Trade entity = new Trade();
+            copyToEntity(trade, entity);
+            newTrades.add(entity);
+        }
+
+        Map<String, Long> quantities = new HashMap<>();
+        positions.forEach(position -> quantities.put(position.getSecurityCode(), position.getQuantity()));
+        for (Position entity : findInChunks(quantities.keySet(), positionRepository::findBySecurityCodeIn)) {
+            entity.setQuantity(quantities.remove(entity.getSecurityCode()));
+        }
+        List<Position> newPositions = new ArrayList<>(quantities.size());
+        quantities.forEach((securityCode, quantity) -> newPositions.add(new Position(securityCode, quantity)));
+
+        List<Transaction> transactionEntities = transactions.stream()
+                .map(this::convertToEntity)
+                .collect(Collectors.toList());
+
+        saveTransactions(transactionEntities);
+        appendVersionsOnCommit(transactions);
+        saveInBatches(newTrades, tradeRepository);
+        saveInBatches(newPositions, positionRepository);
+        entityManager.flush();
+    }
+
+    /**
+     * {@link #persistState(List, Collection, Collection)} and record, in the same database transaction,
+     * the journal offset the stored rows now reach
+     */
+    public void persistState(List<com.equitrack.model.Transaction> transactions,
+                             Collection<com.equitrack.model.Trade> trades,
+                             Collection<com.equitrack.model.Position> positions,
+                             long journalOffset) {
+        persistState(transactions, trades, positions);
+        journalState.save(journalOffset);
+    }
+
+    /**
+     * Journal offset the stored rows reach, empty if they were not written from the journal
+     */
+    @Transactional(readOnly = true)
+    public OptionalLong getJournalOffset() {
+        return journalState.find();
+    }
+
+    /**
+     * Record the journal offset the stored rows reach
+     */
+    public void saveJournalOffset(long journalOffset) {
+        journalState.save(journalOffset);
+    }
+
+    /**
+     * Forget the journal offset, once rows are written that do not follow the journal
+     */
+    public void clearJournalOffset() {
+        journalState.delete();
+    }
+
+    /**
+     * Whether no transactions, trades or positions are stored
+     */
+    @Transactional(readOnly = true)
+    public boolean isEmpty() {
+        return transactionRepository.count() == 0 && tradeRepository.count() == 0 && positionRepository.count() == 0;
+    }
+
+    /**
+     * Number of trades
+     */
+    public long getTradeCount() {
+        return tradeRepository.count();
+    }
+
+    /**
+     * Number of securities with a position
+     */
+    public long getSecurityCount() {
+        return positionRepository.count();
+    }
+
+    /**
+     * Number of early transactions waiting for their previous version
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int getPendingCount() {
+        return pendingTransactions.size();
+    }
+
+    /**
+     * Number of transactions ignored because their trade already had that version or a later one
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long getStaleCount() {
+        return staleTransactions.sum();
+    }
+
+    /**
+     * Early transactions dropped because they outlived the TTL or the buffer was full
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long getDroppedPendingCount() {
+        return pendingTransactions.getExpiredCount() + pendingTransactions.getRejectedCount();
+    }
+
+    /**
+     * Expire early transactions whose gap never filled
+     */
+    @Scheduled(fixedDelayString = "${equitrack.pending.sweep-interval-ms:1000}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void expirePending() {
+        pendingTransactions.expire();
+    }
+
     /**
      * Clear all data (for testing/reset)
      */
     public void clear() {
+        pendingTransactions.clear();
+        transactionIdIndex.clear();
+        afterCommit(versionChains::clear);
         positionRepository.deleteAll();
         tradeRepository.deleteAll();
         transactionRepository.deleteAll();
+        journalState.delete();
+        // Inserts flush before deletes, so push the deletes out before anything reuses their IDs
+        entityManager.flush();
+        PositionListener listener = positionListener;
+        if (listener != PositionListener.NONE) {
+            afterCommit(listener::cleared);
+        }
     }
 
     /**
-     * Process multiple transactions in sequence
+     * Process multiple transactions as one bulk load, in arrival order.
+     * Trades and positions touched by the batch are pre-loaded with set-based queries,
+     * position impacts are netted per security in memory and everything is written
+     * back through JDBC batching, instead of several round trips per transaction.
      */
     public void processTransactions(List<com.equitrack.model.Transaction> transactions) {
-        // Sort transactions by version to ensure proper order
-        List<com.equitrack.model.Transaction> sortedTransactions = transactions.stream()
-                .sorted(Comparator
-                        .comparing(com.equitrack.model.Transaction::getTradeId)
-                        .thenComparing(com.equitrack.model.Transaction::getVersion))
-                .collect(Collectors.toList());
+        long start = metrics.startBatch();
+
+        // Reject duplicates within the batch and against the index; only doubtful IDs go to the database
+        List<Long> claimedIds = new ArrayList<>(transactions.size());
+        releaseOnRollback(claimedIds);
+        Set<Long> doubtfulIds = new HashSet<>();
+        Set<Long> tradeIds = new HashSet<>();
+        for (com.equitrack.model.Transaction transaction : transactions) {
+            TransactionIdIndex.Seen seen = transactionIdIndex.claim(transaction.getTransactionId());
+            if (seen == TransactionIdIndex.Seen.YES) {
+                metrics.recordDuplicate();
+                throw new DuplicateTransactionException(transaction.getTransactionId());
+            }
+            claimedIds.add(transaction.getTransactionId());
+            if (seen == TransactionIdIndex.Seen.MAYBE) {
+                doubtfulIds.add(transaction.getTransactionId());
+            }
+            tradeIds.add(transaction.getTradeId());
+        }
+        List<Long> existingIds = findInChunks(doubtfulIds, transactionRepository::findExistingTransactionIds);
+        if (!existingIds.isEmpty()) {
+            metrics.recordDuplicate();
+            throw new DuplicateTransactionException(existingIds.get(0));
+        }
 
-        for (com.equitrack.model.Transaction transaction : sortedTransactions) {
-            processTransaction(transaction);
+        // Pre-load every trade the batch touches
+        BatchState batch = new BatchState();
+        for (Trade trade : findInChunks(tradeIds, tradeRepository::findByTradeIdIn)) {
+            batch.trades.put(trade.getTradeId(), trade);
         }
+
+        // Apply the batch in memory, netting position impacts per security
+        List<Transaction> transactionEntities = new ArrayList<>(transactions.size());
+        for (com.equitrack.model.Transaction transactionModel : transactions) {
+            transactionEntities.add(convertToEntity(transactionModel));
+
+            Trade trade = batch.applyInOrder(transactionModel);
+            while (trade != null) {
+                com.equitrack.model.Transaction next = takePending(trade.getTradeId(), trade.getCurrentVersion() + 1);
+                if (next == null) {
+                    break;
+                }
+                trade = batch.applyInOrder(next);
+            }
+        }
+
+        // Flush everything through JDBC batches; changes to pre-loaded trades are managed
+        // entities and go out with the first flush. Positions get one netted delta per security.
+        saveTransactions(transactionEntities);
+        appendVersionsOnCommit(transactions);
+        saveInBatches(batch.newTrades, tradeRepository);
+        applyPositionDeltas(batch.positions);
+        notifyTradesChanged(batch.trades.keySet());
+        metrics.recordBatch(transactions, start);
+    }
+
+    /**
+     * In-memory trade state and netted position deltas of one bulk load
+     */
+    private class BatchState {
+        private final Map<Long, Trade> trades = new HashMap<>();
+        private final Set<Trade> newTrades = new LinkedHashSet<>();
+        private final PositionDeltas positions = new PositionDeltas();
+
+        /**
+         * Same version rules as the single-transaction path, against the batch's trades
+         */
+        Trade applyInOrder(com.equitrack.model.Transaction transaction) {
+            Trade existingTrade = trades.get(transaction.getTradeId());
+            if (isHeldOrStale(transaction, existingTrade)) {
+                return existingTrade;
+            }
+
+            if (transaction.getAction() == TransactionAction.INSERT) {
+                Trade trade = existingTrade;
+                if (trade != null) {
+                    positions.remove(trade);
+                    trade.setCurrentVersion(transaction.getVersion());
+                    trade.setSecurityCode(transaction.getSecurityCode());
+                    trade.setQuantity(transaction.getQuantity());
+                    trade.setSide(transaction.getSide());
+                    trade.setIsCancelled(false);
+                } else {
+                    trade = new Trade(
+                        transaction.getTradeId(),
+                        transaction.getVersion(),
+                        transaction.getSecurityCode(),
+                        transaction.getQuantity(),
+                        transaction.getSide()
+                    );
+                    trades.put(trade.getTradeId(), trade);
+                    newTrades.add(trade);
+                }
+                positions.add(trade);
+                return trade;
+            } else if (transaction.getAction() == TransactionAction.UPDATE) {
+                positions.remove(existingTrade);
+                existingTrade.setCurrentVersion(transaction.getVersion());
+                existingTrade.setSecurityCode(transaction.getSecurityCode());
+                existingTrade.setQuantity(transaction.getQuantity());
+                existingTrade.setSide(transaction.getSide());
+                positions.add(existingTrade);
+            } else if (transaction.getAction() == TransactionAction.CANCEL) {
+                positions.remove(existingTrade);
+                existingTrade.setIsCancelled(true);
+                existingTrade.setCurrentVersion(transaction.getVersion());
+            }
+            return existingTrade;
+        }
+    }
+
+    /**
+     * Save entities in JDBC-batch sized chunks, clearing the persistence context between chunks
+     */
+    private <T> void saveInBatches(Collection<T> entities, JpaRepository<T, Long> repository) {
+        List<T> chunk = new ArrayList<>(batchSize);
+        for (T entity : entities) {
+            chunk.add(entity);
+            if (chunk.size() == batchSize) {
+                repository.saveAll(chunk);
+                entityManager.flush();
+                entityManager.clear();
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            repository.saveAll(chunk);
+            entityManager.flush();
+            entityManager.clear();
+        }
+    }
+
+    /**
+     * Run an IN query over a large key set in bounded chunks
+     */
+    private static <K, R> List<R> findInChunks(Collection<K> keys, Function<Collection<K>, List<R>> finder) {
+        List<R> results = new ArrayList<>();
+        List<K> chunk = new ArrayList<>(IN_CLAUSE_CHUNK_SIZE);
+        for (K key : keys) {
+            chunk.add(key);
+            if (chunk.size() == IN_CLAUSE_CHUNK_SIZE) {
+                results.addAll(finder.apply(chunk));
+                chunk = new ArrayList<>(IN_CLAUSE_CHUNK_SIZE);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            results.addAll(finder.apply(chunk));
+        }
+        return results;
     }
 
     /**
@@ -224,6 +906,18 @@ public class PositionServiceJPA {
         );
     }
 
+    /**
+     * Copy model state onto a trade entity
+     */
+    private void copyToEntity(com.equitrack.model.Trade model, Trade entity) {
+        entity.setTradeId(model.getTradeId());
+        entity.setCurrentVersion(model.getCurrentVersion());
+        entity.setSecurityCode(model.getSecurityCode());
+        entity.setQuantity(model.getQuantity());
+        entity.setSide(model.getSide());
+        entity.setIsCancelled(model.getIsCancelled());
+    }
+
     /**
      * Convert entity to model
      */
@@ -278,6 +972,43 @@ public class PositionServiceJPA {
                 .map(this::convertToModel);
     }
 
+    /**
+     * Every stored version of a trade in version order, from the version chain cache when it holds the trade
+     */
+    @Transactional(readOnly = true)
+    public List<com.equitrack.model.Transaction> getTradeHistory(Long tradeId) {
+        return versionChains.history(tradeId).orElseGet(() -> loadTradeHistory(tradeId));
+    }
+
+    private List<com.equitrack.model.Transaction> loadTradeHistory(Long tradeId) {
+        long stamp = versionChains.stamp(tradeId);
+        List<com.equitrack.model.Transaction> versions = transactionRepository.findByTradeIdOrderByVersionAsc(tradeId).stream()
+                .map(this::convertToModel)
+                .collect(Collectors.toList());
+        versionChains.load(tradeId, versions, stamp);
+        return versions;
+    }
+
+    /**
+     * Latest stored version of a trade; read from its cached chain without a query when it is held
+     */
+    @Transactional(readOnly = true)
+    public Optional<com.equitrack.model.Transaction> getLatestVersion(Long tradeId) {
+        Optional<com.equitrack.model.Transaction> cached = versionChains.latest(tradeId);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        List<com.equitrack.model.Transaction> versions = loadTradeHistory(tradeId);
+        return versions.isEmpty() ? Optional.empty() : Optional.of(versions.get(versions.size() - 1));
+    }
+
+    /**
+     * The version chain cache, for its gauges
+     */
+    public VersionChainCache getVersionChains() {
+        return versionChains;
+    }
+
     /**
      * Get position by security code
      */
@@ -287,11 +1018,29 @@ public class PositionServiceJPA {
                 .map(this::convertToModel);
     }
 
+    /**
+     * Positions of the given securities, one query per {@value #IN_CLAUSE_CHUNK_SIZE} codes
+     */
+    @Transactional(readOnly = true)
+    public List<com.equitrack.model.Position> getPositionsBySecurityCodes(Collection<String> securityCodes) {
+        return findInChunks(securityCodes, positionRepository::findBySecurityCodeIn).stream()
+                .map(this::convertToModel)
+                .collect(Collectors.toList());
+    }
+
     /**
      * Delete transaction by ID
      */
     public void deleteTransaction(Long transactionId) {
-        transactionRepository.findByTransactionId(transactionId).ifPresent(transactionRepository::delete);
+        transactionRepository.findByTransactionId(transactionId).ifPresent(transaction -> {
+            transactionRepository.delete(transaction);
+            afterCommit(() -> versionChains.invalidate(transaction.getTradeId()));
+            PositionListener listener = positionListener;
+            if (listener != PositionListener.NONE) {
+                afterCommit(() -> listener.transactionDeleted(transactionId));
+            }
+        });
+        transactionIdIndex.release(transactionId);
     }
 
     /**
@@ -299,15 +1048,38 @@ public class PositionServiceJPA {
      */
     public void deleteTrade(Long tradeId) {
         tradeRepository.findByTradeId(tradeId).ifPresent(trade -> {
-            removeTradeImpact(trade);
+            PositionDeltas positions = new PositionDeltas();
+            positions.remove(trade);
             tradeRepository.delete(trade);
+            applyPositionDeltas(positions);
+            notifyTradesChanged(List.of(tradeId));
         });
     }
 
+    /**
+     * Reset a security's stored position to the net quantity of its active trades, creating it if
+     * it is missing. The position row is locked before the trades are summed, so a concurrent
+     * transaction either is already counted or adds its delta on top of the corrected value.
+     */
+    public long repairPosition(String securityCode) {
+        Optional<Position> position = positionRepository.findBySecurityCodeForUpdate(securityCode);
+        long quantity = tradeRepository.sumActiveQuantity(securityCode);
+        if (position.isPresent()) {
+            position.get().setQuantity(quantity);
+        } else if (quantity != 0) {
+            positionRepository.addToQuantities(Map.of(securityCode, quantity), Set.of(securityCode));
+        }
+        notifyPositionsChanged(List.of(securityCode));
+        return quantity;
+    }
+
     /**
      * Delete position by security code
      */
     public void deletePosition(String securityCode) {
-        positionRepository.findBySecurityCode(securityCode).ifPresent(positionRepository::delete);
+        positionRepository.findBySecurityCode(securityCode).ifPresent(position -> {
+            positionRepository.delete(position);
+            notifyPositionsChanged(List.of(securityCode));
+        });
     }
 }
@@ -0,0 +1,210 @@
+package com.equitrack.service;
+
+import com.equitrack.model.Position;
+import com.equitrack.model.Trade;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Service;
+
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Cached, versioned views of all positions and all trades for the polling read endpoints.
+ * <p>
+ * Each view is an immutable list, sorted like the database queries it replaces, with a
+ * version that grows whenever its content changes and its JSON serialized at most once per
+ * version. Changes are only recorded as dirty keys on the processing path; the next read
+ * re-reads just those keys and merges them into the previous list, falling back to a full
+ * reload after a reset or when too many keys changed. Reads with nothing dirty return the
+ * cached view without touching the engine or the database.
+ */
+@Service
+public class ReadModel implements PositionListener {
+
+    /** Changed keys beyond which one full read is cheaper than looking each of them up */
+    private static final int MAX_INCREMENTAL_KEYS = 1024;
+
+    /** Part of every ETag, so versions from before a restart never match */
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+    private final PositionManager positionManager;
+    private final ObjectMapper objectMapper;
+    private final Table<String, Position> positions;
+    private final Table<Long, Trade> trades;
+
+    public ReadModel(PositionManager positionManager, ObjectMapper objectMapper) {
+        this.positionManager = positionManager;
+        this.objectMapper = objectMapper;
+        this.positions = new Table<>("p", Position::getSecurityCode, Comparator.naturalOrder(),
+                positionManager::getPositions, positionManager::getPositionBySecurityCode);
+        this.trades = new Table<>("t", Trade::getTradeId, Comparator.naturalOrder(),
+                positionManager::getTrades, positionManager::getTradeById);
+    }
+
+    @PostConstruct
+    void register() {
+        positionManager.addPositionListener(this);
+    }
+
+    /**
+     * All positions, sorted by security code
+     */
+    public View<Position> getPositions() {
+        return positions.current();
+    }
+
+    /**
+     * All trades, sorted by trade ID
+     */
+    public View<Trade> getTrades() {
+        return trades.current();
+    }
+
+    @Override
+    public void positionChanged(String securityCode) {
+        positions.changed(securityCode);
+    }
+
+    @Override
+    public void tradeChanged(Long tradeId) {
+        trades.changed(tradeId);
+    }
+
+    @Override
+    public void cleared() {
+        positions.invalidate();
+        trades.invalidate();
+    }
+
+    /**
+     * One cached view and the keys that changed since it was built
+     */
+    private class Table<K, V> {
+        private final String tag;
+        private final Function<V, K> keyOf;
+        private final Comparator<K> order;
+        private final Supplier<List<V>> loadAll;
+        private final Function<K, Optional<V>> loadOne;
+
+        private final Set<K> changedKeys = ConcurrentHashMap.newKeySet();
+        // Built lazily on first read, since the engine may still be loading at startup
+        private volatile boolean stale = true;
+        private volatile View<V> view;
+
+        Table(String tag, Function<V, K> keyOf, Comparator<K> order,
+              Supplier<List<V>> loadAll, Function<K, Optional<V>> loadOne) {
+            this.tag = tag;
+            this.keyOf = keyOf;
+            this.order = order;
+            this.loadAll = loadAll;
+            this.loadOne = loadOne;
+            this.view = new View<>(tag, 0, List.of());
+        }
+
+        void changed(K key) {
+            changedKeys.add(key);
+        }
+
+        void invalidate() {
+            stale = true;
+        }
+
+        View<V> current() {
+            View<V> current = view;
+            if (!stale && changedKeys.isEmpty()) {
+                return current;
+            }
+            synchronized (this) {
+                current = view;
+                if (stale) {
+                    // Cleared before reading, so a reset during the load invalidates it again
+                    stale = false;
+                    changedKeys.clear();
+                    List<V> all = new ArrayList<>(loadAll.get());
+                    all.sort(Comparator.comparing(keyOf, order));
+                    view = new View<>(tag, current.version + 1, all);
+                } else if (!changedKeys.isEmpty()) {
+                    view = new View<>(tag, current.version + 1, merge(current.items, drainChangedKeys()));
+                }
+                return view;
+            }
+        }
+
+        private List<K> drainChangedKeys() {
+            List<K> keys = new ArrayList<>();
+            for (Iterator<K> it = changedKeys.iterator(); it.hasNext(); ) {
+                keys.add(it.next());
+                it.remove();
+            }
+            keys.sort(order);
+            return keys;
+        }
+
+        /**
+         * Previous items with the changed keys re-read: replaced, inserted in order or dropped
+         */
+        private List<V> merge(List<V> items, List<K> keys) {
+            if (keys.size() > MAX_INCREMENTAL_KEYS && keys.size() > items.size() / 4) {
+                List<V> all = new ArrayList<>(loadAll.get());
+                all.sort(Comparator.comparing(keyOf, order));
+                return all;
+            }
+            List<V> merged = new ArrayList<>(items.size() + keys.size());
+            int i = 0;
+            for (K key : keys) {
+                while (i < items.size() && order.compare(keyOf.apply(items.get(i)), key) < 0) {
+                    merged.add(items.get(i++));
+                }
+                if (i < items.size() && order.compare(keyOf.apply(items.get(i)), key) == 0) {
+                    i++;
+                }
+                loadOne.apply(key).ifPresent(merged::add);
+            }
+            while (i < items.size()) {
+                merged.add(items.get(i++));
+            }
+            return merged;
+        }
+    }
+
+    /**
+     * Immutable sorted items at one version, with their JSON serialized on first use
+     */
+    public class View<V> {
+        private final String eTag;
+        private final long version;
+        private final List<V> items;
+        private volatile byte[] json;
+
+        private View(String tag, long version, List<V> items) {
+            this.eTag = "\"" + tag + EPOCH + "-" + version + "\"";
+            this.version = version;
+            this.items = Collections.unmodifiableList(items);
+        }
+
+        public long getVersion() { return version; }
+        public List<V> getItems() { return items; }
+        public String getETag() { return eTag; }
+
+        /**
+         * Items as a JSON array, serialized once per version
+         */
+        public byte[] getJson() {
+            byte[] bytes = json;
+            if (bytes == null) {
+                try {
+                    bytes = objectMapper.writeValueAsBytes(items);
+                } catch (JsonProcessingException e) {
+                    throw new UncheckedIOException(e);
+                }
+                json = bytes;
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.equitrack.service;
+
+import com.equitrack.model.Transaction;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parallel bulk processor for {@link PositionService}.
+ * Ordering only matters within a trade, so transactions are hashed by trade ID onto
+ * single-threaded shards. Each shard owns the trades that hash to it and applies them
+ * in arrival order (the engine holds early versions until their gap fills); position
+ * impacts land in the engine's shared per-security accumulators.
+ */
+@Component
+public class ShardedTransactionProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedTransactionProcessor.class);
+
+    private final PositionService engine;
+    private final Shard[] shards;
+    private final int minBatchSize;
+
+    public ShardedTransactionProcessor(PositionService engine,
+                                       @Value("${equitrack.sharding.shards:0}") int shardCount,
+                                       @Value("${equitrack.sharding.queue-depth:16}") int queueDepth,
+                                       @Value("${equitrack.sharding.min-batch-size:1024}") int minBatchSize) {
+        this.engine = engine;
+        this.minBatchSize = minBatchSize;
+        int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(i, queueDepth);
+        }
+    }
+
+    /**
+     * Process a batch across all shards and wait for it to complete.
+     * Batches smaller than {@code equitrack.sharding.min-batch-size} run on the caller's thread.
+     */
+    public void processTransactions(List<Transaction> transactions) {
+        processTransactions(transactions, new boolean[transactions.size()]);
+    }
+
+    /**
+     * Process a batch like {@link #processTransactions(List)}, setting {@code applied[i]} once the
+     * engine has taken transaction {@code i}. When a transaction fails, its shard stops there and
+     * the others finish their slices before the failure is rethrown, so {@code applied} is final by then.
+     */
+    public void processTransactions(List<Transaction> transactions, boolean[] applied) {
+        if (transactions.size() < minBatchSize) {
+            for (int i = 0; i < transactions.size(); i++) {
+                engine.processTransaction(transactions.get(i));
+                applied[i] = true;
+            }
+            return;
+        }
+
+        List<List<Integer>> slices = new ArrayList<>(shards.length);
+        int expectedSliceSize = transactions.size() / shards.length + 1;
+        for (int i = 0; i < shards.length; i++) {
+            slices.add(new ArrayList<>(expectedSliceSize));
+        }
+        for (int i = 0; i < transactions.size(); i++) {
+            slices.get(shardFor(transactions.get(i).getTradeId())).add(i);
+        }
+
+        List<Future<?>> futures = new ArrayList<>(shards.length);
+        try {
+            for (int i = 0; i < shards.length; i++) {
+                List<Integer> slice = slices.get(i);
+                if (!slice.isEmpty()) {
+                    futures.add(shards[i].submit(transactions, slice, applied));
+                }
+            }
+        } finally {
+            awaitAll(futures);
+        }
+
+        if (log.isDebugEnabled()) {
+            for (ShardStats stats : getShardStats()) {
+                log.debug("Shard {}: {} transactions, {} tx/s", stats.getShard(), stats.getProcessed(), stats.getThroughputPerSecond());
+            }
+        }
+    }
+
+    /**
+     * Shard that owns a trade
+     */
+    public int shardFor(Long tradeId) {
+        return Math.floorMod(Long.hashCode(tradeId) * 0x9E3779B9, shards.length);
+    }
+
+    /**
+     * Number of shards
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Cumulative per-shard counters
+     */
+    public List<ShardStats> getShardStats() {
+        List<ShardStats> stats = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            stats.add(shard.stats());
+        }
+        return stats;
+    }
+
+    /**
+     * Wait for every slice, even after one fails or the caller is interrupted, then rethrow the first failure
+     */
+    private void awaitAll(List<Future<?>> futures) {
+        RuntimeException failure = null;
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (failure == null) {
+                        failure = cause instanceof RuntimeException
+                                ? (RuntimeException) cause
+                                : new IllegalStateException("Shard failed", cause);
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Shard shard : shards) {
+            shard.executor.shutdown();
+        }
+    }
+
+    /**
+     * Single-threaded executor with a bounded queue of pending slices; submitters block when it is full
+     */
+    private class Shard {
+        private final int index;
+        private final ThreadPoolExecutor executor;
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+
+        Shard(int index, int queueDepth) {
+            this.index = index;
+            this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueDepth),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "equitrack-shard-" + index);
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    (runnable, pool) -> {
+                        try {
+                            pool.getQueue().put(runnable);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new RejectedExecutionException("Interrupted while queueing on shard " + index, e);
+                        }
+                    });
+        }
+
+        Future<?> submit(List<Transaction> transactions, List<Integer> slice, boolean[] applied) {
+            return executor.submit(() -> {
+                long start = System.nanoTime();
+                int done = 0;
+                try {
+                    for (int index : slice) {
+                        engine.processTransaction(transactions.get(index));
+                        applied[index] = true;
+                        done++;
+                    }
+                } finally {
+                    busyNanos.addAndGet(System.nanoTime() - start);
+                    processed.addAndGet(done);
+                }
+            });
+        }
+
+        ShardStats stats() {
+            long nanos = busyNanos.get();
+            long count = processed.get();
+            long throughput = nanos == 0 ? 0 : count * 1_000_000_000L / nanos;
+            return new ShardStats(index, count, TimeUnit.NANOSECONDS.toMillis(nanos), throughput, executor.getQueue().size());
+        }
+    }
+
+    /**
+     * Throughput counters for one shard
+     */
+    public static class ShardStats {
+        private final int shard;
+        private final long processed;
+        private final long busyMillis;
+        private final long throughputPerSecond;
+        private final int queuedBatches;
+
+        public ShardStats(int shard, long processed, long busyMillis, long throughputPerSecond, int queuedBatches) {
+            this.shard = shard;
+            this.processed = processed;
+            this.busyMillis = busyMillis;
+            this.throughputPerSecond = throughputPerSecond;
+            this.queuedBatches = queuedBatches;
+        }
+
+        public int getShard() { return shard; }
+        public long getProcessed() { return processed; }
+        public long getBusyMillis() { return busyMillis; }
+        public long getThroughputPerSecond() { return throughputPerSecond; }
+        public int getQueuedBatches() { return queuedBatches; }
+    }
+}
@@ -0,0 +1,210 @@
+package com.equitrack.service;
+
+import com.equitrack.model.Transaction;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single writer for transactions posted one at a time.
+ * <p>
+ * Callers queue a transaction and get a future back instead of running it on their own
+ * thread. One writer thread drains whatever has queued up, up to
+ * {@code equitrack.ingest.single-writer.max-batch}, and applies it in arrival order. In JPA
+ * mode the whole batch is one database transaction (group commit), so concurrent requests
+ * share a commit and never contend for the same position rows. If the batch fails, it is
+ * rolled back and retried one transaction per request, so only the failing request sees the
+ * error. The hybrid engine already batches its database writes, so there the writer only
+ * serializes the calls. The futures handed out complete on a separate callback pool, so
+ * whatever callers chain onto them (building a response, reading positions) never runs on,
+ * or holds up, the writer thread.
+ * <p>
+ * Disabled by default, in which case {@link #submit} runs the transaction on the caller's thread.
+ */
+@Component
+public class SingleWriterIngestor {
+
+    private static final Logger log = LoggerFactory.getLogger(SingleWriterIngestor.class);
+
+    /** How often an idle writer checks whether it has been stopped */
+    private static final long POLL_MILLIS = 100;
+
+    private final PositionManager positionManager;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final boolean groupCommit;
+    private final int maxBatch;
+    private final BlockingQueue<Request> queue;
+    private final Thread writer;
+    private final ExecutorService callbacks;
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private volatile boolean running = true;
+
+    public SingleWriterIngestor(PositionManager positionManager, PlatformTransactionManager transactionManager,
+                                @Value("${equitrack.ingest.single-writer.enabled:false}") boolean enabled,
+                                @Value("${equitrack.ingest.single-writer.queue-depth:4096}") int queueDepth,
+                                @Value("${equitrack.ingest.single-writer.max-batch:256}") int maxBatch,
+                                @Value("${equitrack.ingest.single-writer.callback-threads:4}") int callbackThreads) {
+        this.positionManager = positionManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.groupCommit = !(positionManager instanceof HybridPositionService);
+        this.maxBatch = Math.max(1, maxBatch);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueDepth));
+        this.writer = new Thread(this::run, "equitrack-writer");
+        writer.setDaemon(true);
+        AtomicInteger threads = new AtomicInteger();
+        this.callbacks = Executors.newFixedThreadPool(Math.max(1, callbackThreads), runnable -> {
+            Thread thread = new Thread(runnable, "equitrack-writer-callback-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (enabled) {
+            writer.start();
+        }
+    }
+
+    /**
+     * Queue a transaction for the writer; the future completes, on a callback thread, once it is
+     * committed, or exceptionally with whatever processing it threw. Blocks while the queue is full.
+     */
+    public CompletableFuture<Transaction> submit(Transaction transaction) {
+        if (!enabled) {
+            try {
+                positionManager.processTransaction(transaction);
+                return CompletableFuture.completedFuture(transaction);
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        if (!running) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Writer is stopped"));
+        }
+        Request request = new Request(transaction);
+        try {
+            queue.put(request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Interrupted while queueing", e));
+        }
+        return request.future.whenCompleteAsync((processed, failure) -> { }, callbacks);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Requests waiting for the writer */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /** Batches the writer has committed */
+    public long getCommitCount() {
+        return commits.get();
+    }
+
+    /** Transactions the writer has applied, successfully or not */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            writer.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Anything the writer did not reach is failed rather than left hanging
+        List<Request> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        abandoned.forEach(request -> request.future.completeExceptionally(new RejectedExecutionException("Writer is stopped")));
+        callbacks.shutdown();
+    }
+
+    private void run() {
+        List<Request> batch = new ArrayList<>(maxBatch);
+        while (running) {
+            try {
+                Request first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, maxBatch - 1);
+            try {
+                write(batch);
+            } catch (RuntimeException e) {
+                log.error("Writer failed on a batch of {}", batch.size(), e);
+                batch.forEach(request -> request.future.completeExceptionally(e));
+            }
+            written.addAndGet(batch.size());
+            batch.clear();
+        }
+    }
+
+    private void write(List<Request> batch) {
+        if (!groupCommit || batch.size() == 1) {
+            batch.forEach(this::writeAlone);
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Request request : batch) {
+                    positionManager.processTransaction(request.transaction);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.debug("Batch of {} rolled back, retrying one by one: {}", batch.size(), e.getMessage());
+            batch.forEach(this::writeAlone);
+            return;
+        }
+        commits.incrementAndGet();
+        batch.forEach(request -> request.future.complete(request.transaction));
+    }
+
+    private void writeAlone(Request request) {
+        try {
+            if (groupCommit) {
+                transactionTemplate.executeWithoutResult(status -> positionManager.processTransaction(request.transaction));
+            } else {
+                positionManager.processTransaction(request.transaction);
+            }
+            commits.incrementAndGet();
+            request.future.complete(request.transaction);
+        } catch (RuntimeException e) {
+            request.future.completeExceptionally(e);
+        }
+    }
+
+    private static class Request {
+        private final Transaction transaction;
+        private final CompletableFuture<Transaction> future = new CompletableFuture<>();
+
+        Request(Transaction transaction) {
+            this.transaction = transaction;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.equitrack.service;
+
+import com.equitrack.model.Transaction;
+import com.equitrack.model.TransactionAction;
+import com.equitrack.model.TransactionSide;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Streams NDJSON/JSON-array or CSV transaction bodies into the engine.
+ * Records are parsed one at a time and handed to {@link PositionManager#processTransactions}
+ * in fixed-size chunks; the next chunk is only read once the previous one is processed,
+ * so heap use is bounded by the chunk size rather than the body size.
+ */
+@Service
+public class StreamingIngestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamingIngestionService.class);
+
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    private static final List<String> DEFAULT_CSV_COLUMNS = List.of(
+            "transactionId", "tradeId", "version", "securityCode", "quantity", "action", "side");
+
+    public enum Format {
+        JSON,
+        CSV
+    }
+
+    private final PositionManager positionManager;
+    private final JsonFactory jsonFactory;
+    private final Validator validator;
+    private final int chunkSize;
+
+    public StreamingIngestionService(PositionManager positionManager,
+                                     ObjectMapper objectMapper,
+                                     Validator validator,
+                                     @Value("${equitrack.ingest.chunk-size:5000}") int chunkSize) {
+        this.positionManager = positionManager;
+        this.jsonFactory = objectMapper.getFactory();
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Ingest a streamed body and report what happened
+     */
+    public IngestionSummary ingest(InputStream body, Format format) throws IOException {
+        long start = System.nanoTime();
+        IngestionSummary summary = new IngestionSummary();
+        ChunkWriter writer = new ChunkWriter(summary);
+
+        if (format == Format.CSV) {
+            readCsv(body, writer, summary);
+        } else {
+            readJson(body, writer, summary);
+        }
+        writer.flush();
+
+        summary.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        log.info("Streamed ingestion: {} received, {} processed, {} rejected in {} ms",
+                summary.received, summary.processed, summary.rejected, summary.elapsedMillis);
+        return summary;
+    }
+
+    /**
+     * Read root-level JSON objects (NDJSON), or the elements of a single root array
+     */
+    private void readJson(InputStream body, ChunkWriter writer, IngestionSummary summary) throws IOException {
+        boolean inRecord = false;
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            JsonToken token = parser.nextToken();
+            boolean inArray = token == JsonToken.START_ARRAY;
+            if (inArray) {
+                token = parser.nextToken();
+            }
+            while (token != null && !(inArray && token == JsonToken.END_ARRAY)) {
+                long line = parser.currentTokenLocation().getLineNr();
+                summary.received++;
+                inRecord = true;
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    summary.reject(line, "Expected a transaction object");
+                } else {
+                    RecordReader record = new RecordReader();
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = parser.currentName();
+                        JsonToken value = parser.nextToken();
+                        if (value.isStructStart()) {
+                            parser.skipChildren();
+                            record.error = "Unexpected nested value for " + field;
+                        } else if (value != JsonToken.VALUE_NULL) {
+                            record.set(field, parser.getText());
+                        }
+                    }
+                    writer.accept(record, line);
+                }
+                inRecord = false;
+                token = parser.nextToken();
+            }
+        } catch (JsonParseException e) {
+            // The parser cannot resynchronise after a syntax error, so the rest of the body is abandoned
+            if (!inRecord) {
+                summary.received++;
+            }
+            summary.completed = false;
+            summary.reject(e.getLocation() == null ? -1 : e.getLocation().getLineNr(),
+                    "Malformed JSON, ingestion stopped: " + e.getOriginalMessage());
+        }
+    }
+
+    /**
+     * Read CSV rows; an optional header row names the columns, otherwise the default column order applies
+     */
+    private void readCsv(InputStream body, ChunkWriter writer, IngestionSummary summary) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        List<String> columns = DEFAULT_CSV_COLUMNS;
+        String line;
+        long lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] cells = line.split(",", -1);
+            if (lineNumber == 1 && !cells[0].isBlank() && !Character.isDigit(cells[0].trim().charAt(0))) {
+                columns = Arrays.stream(cells).map(String::trim).collect(Collectors.toList());
+                continue;
+            }
+            summary.received++;
+            RecordReader record = new RecordReader();
+            for (int i = 0; i < cells.length && i < columns.size(); i++) {
+                String cell = cells[i].trim();
+                if (!cell.isEmpty()) {
+                    record.set(columns.get(i), cell);
+                }
+            }
+            writer.accept(record, lineNumber);
+        }
+    }
+
+    /**
+     * Field-by-field builder for one record; conversion errors are collected rather than thrown
+     */
+    private static class RecordReader {
+        private final Transaction transaction = new Transaction();
+        private String error;
+
+        void set(String field, String text) {
+            try {
+                switch (field) {
+                    case "transactionId": transaction.setTransactionId(Long.parseLong(text)); break;
+                    case "tradeId": transaction.setTradeId(Long.parseLong(text)); break;
+                    case "version": transaction.setVersion(Integer.parseInt(text)); break;
+                    case "securityCode": transaction.setSecurityCode(text); break;
+                    case "quantity": transaction.setQuantity(Integer.parseInt(text)); break;
+                    case "action": transaction.setAction(TransactionAction.valueOf(text)); break;
+                    case "side": transaction.setSide(TransactionSide.valueOf(text)); break;
+                    default: break;
+                }
+            } catch (IllegalArgumentException e) {
+                error = "Invalid " + field + ": " + text;
+            }
+        }
+    }
+
+    /**
+     * Validates records and feeds them to the engine in fixed-size chunks
+     */
+    private class ChunkWriter {
+        private final IngestionSummary summary;
+        private List<Transaction> chunk = new ArrayList<>(chunkSize);
+        /** Source line of each record in the chunk, for rejects found when it falls back to row by row */
+        private long[] lines = new long[chunkSize];
+
+        ChunkWriter(IngestionSummary summary) {
+            this.summary = summary;
+        }
+
+        void accept(RecordReader record, long line) {
+            String error = record.error != null ? record.error : validate(record.transaction);
+            if (error != null) {
+                summary.reject(line, error);
+                return;
+            }
+            lines[chunk.size()] = line;
+            chunk.add(record.transaction);
+            if (chunk.size() == chunkSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            List<Transaction> transactions = chunk;
+            long[] transactionLines = lines;
+            chunk = new ArrayList<>(chunkSize);
+            lines = new long[chunkSize];
+            try {
+                positionManager.processTransactions(transactions);
+                summary.processed += transactions.size();
+            } catch (RuntimeException e) {
+                // Isolate the offending rows instead of rejecting the whole chunk; a failed chunk applied
+                // nothing, or names the rows it did apply, which must not be sent again as duplicates
+                Set<Long> applied = e instanceof PartiallyAppliedBatchException
+                        ? ((PartiallyAppliedBatchException) e).getAppliedTransactionIds()
+                        : Set.of();
+                for (int i = 0; i < transactions.size(); i++) {
+                    Transaction transaction = transactions.get(i);
+                    if (applied.contains(transaction.getTransactionId())) {
+                        summary.processed++;
+                        continue;
+                    }
+                    try {
+                        positionManager.processTransaction(transaction);
+                        summary.processed++;
+                    } catch (RuntimeException rowError) {
+                        summary.reject(transactionLines[i], "Transaction " + transaction.getTransactionId() + ": " + rowError.getMessage());
+                    }
+                }
+            }
+        }
+
+        private String validate(Transaction transaction) {
+            if (transaction.getTransactionId() == null) {
+                return "Transaction ID is required";
+            }
+            Set<ConstraintViolation<Transaction>> violations = validator.validate(transaction);
+            if (violations.isEmpty()) {
+                return null;
+            }
+            return violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+        }
+    }
+
+    /**
+     * Outcome of one streamed ingestion
+     */
+    public static class IngestionSummary {
+        private long received;
+        private long processed;
+        private long rejected;
+        private long elapsedMillis;
+        private boolean completed = true;
+        private final List<String> errors = new ArrayList<>();
+
+        void reject(long line, String message) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(line > 0 ? "Line " + line + ": " + message : message);
+            }
+        }
+
+        public long getReceived() { return received; }
+        public long getProcessed() { return processed; }
+        public long getRejected() { return rejected; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public boolean isCompleted() { return completed; }
+        public List<String> getErrors() { return errors; }
+    }
+}
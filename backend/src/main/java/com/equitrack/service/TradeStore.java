@@ -0,0 +1,529 @@
+package com.equitrack.service;
+
+import com.equitrack.model.Trade;
+import com.equitrack.model.TransactionSide;
+import com.equitrack.symbol.SymbolTable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Columnar trade state for the in-memory engine, keyed by primitive trade ID.
+ * <p>
+ * Each trade is one row across parallel primitive columns (trade ID, version, quantity,
+ * security ID, side and cancel flags), found through an open-addressing index from trade ID
+ * to row. That is under 40 bytes a trade, against a boxed key, a map node and a {@link Trade}
+ * with boxed fields for a {@code Map<Long, Trade>}. Securities are held as {@link SymbolTable}
+ * IDs, and {@link Trade} objects are only built when a trade leaves the engine.
+ * <p>
+ * Trades are split into segments by trade ID. Callers hold a segment's monitor around any use
+ * of its rows, so a read-modify-write of one trade is atomic while other segments carry on.
+ * Segments keep their rows either in heap arrays ({@link HeapSegment}) or in buffers outside
+ * the Java heap ({@link OffHeapSegment}).
+ */
+final class TradeStore {
+
+    static final int SEGMENTS = 64;
+
+    private static final TransactionSide[] SIDES = TransactionSide.values();
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final SymbolTable symbols;
+
+    TradeStore(SymbolTable symbols) {
+        this(symbols, index -> new HeapSegment());
+    }
+
+    TradeStore(SymbolTable symbols, IntFunction<Segment> segmentFactory) {
+        this.symbols = symbols;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = segmentFactory.apply(i);
+        }
+    }
+
+    /**
+     * Segment holding a trade; lock it before touching its rows
+     */
+    Segment segmentFor(long tradeId) {
+        return segments[(int) (mix(tradeId) >>> (64 - 6))];
+    }
+
+    Segment segment(int index) {
+        return segments[index];
+    }
+
+    /**
+     * Copy of a row as a {@link Trade}; the caller holds the segment's monitor
+     */
+    Trade toTrade(Segment segment, int row) {
+        return new Trade(segment.tradeId(row), segment.version(row), symbols.code(segment.securityId(row)),
+                segment.quantity(row), segment.side(row), segment.isCancelled(row));
+    }
+
+    /**
+     * Copies of every trade, each consistent on its own
+     */
+    List<Trade> toTrades() {
+        List<Trade> trades = new ArrayList<>(size());
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (int row = 0; row < segment.size; row++) {
+                    trades.add(toTrade(segment, row));
+                }
+            }
+        }
+        return trades;
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    /**
+     * Bytes held by the columns and indexes of every segment, including spare capacity
+     */
+    long footprintBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                bytes += segment.footprintBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Drop every trade
+     */
+    void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.reset();
+            }
+        }
+    }
+
+    private static long mix(long tradeId) {
+        return tradeId * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * One share of the trades: dense rows plus a linear-probing index holding {@code row + 1}
+     * (0 marks an empty slot). Deletes move the last row into the hole so rows stay dense.
+     * Subclasses only decide where the rows and the index live.
+     */
+    abstract static class Segment {
+
+        static final int INITIAL_ROWS = 8;
+        private static final byte SIDE_MASK = 0x3;
+        private static final byte CANCELLED = 0x4;
+
+        volatile int size;
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Row of a trade, or -1 if the segment does not hold it
+         */
+        int find(long tradeId) {
+            int slot = slotOf(tradeId);
+            return slot < 0 ? -1 : slot(slot) - 1;
+        }
+
+        /**
+         * Add a row for a trade the segment does not hold yet; its other columns are zero
+         */
+        int insert(long tradeId) {
+            if (size == capacity()) {
+                // Grow by a quarter rather than doubling to keep spare capacity, and so bytes per trade, low
+                growRows(capacity() + Math.max(INITIAL_ROWS, capacity() >> 2));
+            }
+            if ((size + 1) * 4L > slots() * 3L) {
+                rebuildIndex(slots() * 2);
+            }
+            int row = size;
+            setRow(row, tradeId, 0, 0, 0, (byte) 0);
+            place(row);
+            size = row + 1;
+            return row;
+        }
+
+        /**
+         * Remove a row, moving the last row into its place
+         */
+        void remove(int row) {
+            deleteSlot(slotOf(tradeId(row)));
+            int last = size - 1;
+            if (row != last) {
+                setSlot(slotOf(tradeId(last)), row + 1);
+                setRow(row, tradeId(last), version(last), quantity(last), securityId(last), flags(last));
+            }
+            size = last;
+        }
+
+        void set(int row, int version, int securityId, int quantity, TransactionSide side, boolean cancelled) {
+            setRow(row, tradeId(row), version, quantity, securityId,
+                    (byte) ((side == null ? 0 : side.ordinal() + 1) | (cancelled ? CANCELLED : 0)));
+        }
+
+        void cancel(int row, int version) {
+            setRow(row, tradeId(row), version, quantity(row), securityId(row), (byte) (flags(row) | CANCELLED));
+        }
+
+        TransactionSide side(int row) {
+            int side = flags(row) & SIDE_MASK;
+            return side == 0 ? null : SIDES[side - 1];
+        }
+
+        boolean isCancelled(int row) {
+            return (flags(row) & CANCELLED) != 0;
+        }
+
+        abstract long tradeId(int row);
+
+        abstract int version(int row);
+
+        abstract int quantity(int row);
+
+        abstract int securityId(int row);
+
+        /** Side ordinal + 1 in the low bits (0 when there is none), plus {@link #CANCELLED} */
+        abstract byte flags(int row);
+
+        abstract void setRow(int row, long tradeId, int version, int quantity, int securityId, byte flags);
+
+        /** Rows the segment can hold before it grows */
+        abstract int capacity();
+
+        abstract void growRows(int capacity);
+
+        abstract int slots();
+
+        abstract int slot(int slot);
+
+        abstract void setSlot(int slot, int entry);
+
+        /** Replace the index with an empty one of the given number of slots */
+        abstract void newIndex(int slots);
+
+        abstract long footprintBytes();
+
+        /** Drop every row */
+        abstract void reset();
+
+        private int home(long tradeId) {
+            return (int) (mix(tradeId) >>> 26) & (slots() - 1);
+        }
+
+        /**
+         * Index slot holding a trade, or -1
+         */
+        private int slotOf(long tradeId) {
+            int mask = slots() - 1;
+            for (int slot = home(tradeId); ; slot = (slot + 1) & mask) {
+                int entry = slot(slot);
+                if (entry == 0) {
+                    return -1;
+                }
+                if (tradeId(entry - 1) == tradeId) {
+                    return slot;
+                }
+            }
+        }
+
+        private void place(int row) {
+            int mask = slots() - 1;
+            int slot = home(tradeId(row));
+            while (slot(slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            setSlot(slot, row + 1);
+        }
+
+        /**
+         * Empty a slot, shifting later entries of the probe run back so no lookup stops short
+         */
+        private void deleteSlot(int slot) {
+            int mask = slots() - 1;
+            int hole = slot;
+            for (int next = (hole + 1) & mask; slot(next) != 0; next = (next + 1) & mask) {
+                int home = home(tradeId(slot(next) - 1));
+                // The entry may move back only if the hole lies between its home slot and where it sits
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    setSlot(hole, slot(next));
+                    hole = next;
+                }
+            }
+            setSlot(hole, 0);
+        }
+
+        /**
+         * Index the first {@code size} rows afresh
+         */
+        void rebuildIndex(int slots) {
+            newIndex(slots);
+            for (int row = 0; row < size; row++) {
+                place(row);
+            }
+        }
+    }
+
+    /**
+     * Rows in parallel heap arrays
+     */
+    static final class HeapSegment extends Segment {
+
+        private int[] index;
+        private long[] tradeIds;
+        private int[] versions;
+        private int[] quantities;
+        private int[] securityIds;
+        private byte[] flags;
+
+        HeapSegment() {
+            reset();
+        }
+
+        @Override
+        void reset() {
+            index = new int[INITIAL_ROWS * 2];
+            tradeIds = new long[INITIAL_ROWS];
+            versions = new int[INITIAL_ROWS];
+            quantities = new int[INITIAL_ROWS];
+            securityIds = new int[INITIAL_ROWS];
+            flags = new byte[INITIAL_ROWS];
+            size = 0;
+        }
+
+        @Override
+        long tradeId(int row) {
+            return tradeIds[row];
+        }
+
+        @Override
+        int version(int row) {
+            return versions[row];
+        }
+
+        @Override
+        int quantity(int row) {
+            return quantities[row];
+        }
+
+        @Override
+        int securityId(int row) {
+            return securityIds[row];
+        }
+
+        @Override
+        byte flags(int row) {
+            return flags[row];
+        }
+
+        @Override
+        void setRow(int row, long tradeId, int version, int quantity, int securityId, byte flags) {
+            tradeIds[row] = tradeId;
+            versions[row] = version;
+            quantities[row] = quantity;
+            securityIds[row] = securityId;
+            this.flags[row] = flags;
+        }
+
+        @Override
+        int capacity() {
+            return tradeIds.length;
+        }
+
+        @Override
+        void growRows(int capacity) {
+            tradeIds = Arrays.copyOf(tradeIds, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            securityIds = Arrays.copyOf(securityIds, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+
+        @Override
+        int slots() {
+            return index.length;
+        }
+
+        @Override
+        int slot(int slot) {
+            return index[slot];
+        }
+
+        @Override
+        void setSlot(int slot, int entry) {
+            index[slot] = entry;
+        }
+
+        @Override
+        void newIndex(int slots) {
+            index = new int[slots];
+        }
+
+        @Override
+        long footprintBytes() {
+            return index.length * 4L + tradeIds.length * (8L + 4 + 4 + 4 + 1);
+        }
+    }
+
+    /**
+     * Rows packed into a direct buffer outside the Java heap, or into a memory-mapped file so
+     * they outlive the process. The index is always a direct buffer; it is rebuilt from the
+     * rows when a file-backed segment is reopened.
+     */
+    static final class OffHeapSegment extends Segment {
+
+        static final int ROW_BYTES = 21;
+        private static final int VERSION = 8;
+        private static final int QUANTITY = 12;
+        private static final int SECURITY = 16;
+        private static final int FLAGS = 20;
+
+        /** Backing file, or null for plain direct memory */
+        private final FileChannel file;
+        private ByteBuffer rows;
+        private ByteBuffer index;
+
+        OffHeapSegment(FileChannel file) {
+            this.file = file;
+            reset();
+        }
+
+        /**
+         * Take up the first {@code rows} rows already in the backing file
+         */
+        void resume(int rows) {
+            if (file == null) {
+                throw new IllegalStateException("Only a file-backed segment can be resumed");
+            }
+            growRows(Math.max(rows, INITIAL_ROWS));
+            size = rows;
+            int slots = INITIAL_ROWS * 2;
+            while (rows * 4L > slots * 3L) {
+                slots *= 2;
+            }
+            rebuildIndex(slots);
+        }
+
+        /**
+         * Write the rows through to the backing file
+         */
+        void force() {
+            if (rows instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) rows).force();
+            }
+        }
+
+        @Override
+        void reset() {
+            // A mapped file keeps its capacity: the file must not shrink under the live mapping
+            if (file == null || rows == null) {
+                rows = null;
+                growRows(INITIAL_ROWS);
+            }
+            newIndex(INITIAL_ROWS * 2);
+            size = 0;
+        }
+
+        @Override
+        long tradeId(int row) {
+            return rows.getLong(row * ROW_BYTES);
+        }
+
+        @Override
+        int version(int row) {
+            return rows.getInt(row * ROW_BYTES + VERSION);
+        }
+
+        @Override
+        int quantity(int row) {
+            return rows.getInt(row * ROW_BYTES + QUANTITY);
+        }
+
+        @Override
+        int securityId(int row) {
+            return rows.getInt(row * ROW_BYTES + SECURITY);
+        }
+
+        @Override
+        byte flags(int row) {
+            return rows.get(row * ROW_BYTES + FLAGS);
+        }
+
+        @Override
+        void setRow(int row, long tradeId, int version, int quantity, int securityId, byte flags) {
+            int offset = row * ROW_BYTES;
+            rows.putLong(offset, tradeId)
+                    .putInt(offset + VERSION, version)
+                    .putInt(offset + QUANTITY, quantity)
+                    .putInt(offset + SECURITY, securityId)
+                    .put(offset + FLAGS, flags);
+        }
+
+        @Override
+        int capacity() {
+            return rows.capacity() / ROW_BYTES;
+        }
+
+        @Override
+        void growRows(int capacity) {
+            if (file != null) {
+                try {
+                    // Mapping past the end extends the file, and the rows already there stay put
+                    rows = file.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * ROW_BYTES)
+                            .order(ByteOrder.nativeOrder());
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot map trade rows", e);
+                }
+                return;
+            }
+            ByteBuffer grown = ByteBuffer.allocateDirect(capacity * ROW_BYTES).order(ByteOrder.nativeOrder());
+            if (rows != null) {
+                grown.put(0, rows, 0, size * ROW_BYTES);
+            }
+            rows = grown;
+        }
+
+        @Override
+        int slots() {
+            return index.capacity() / 4;
+        }
+
+        @Override
+        int slot(int slot) {
+            return index.getInt(slot * 4);
+        }
+
+        @Override
+        void setSlot(int slot, int entry) {
+            index.putInt(slot * 4, entry);
+        }
+
+        @Override
+        void newIndex(int slots) {
+            index = ByteBuffer.allocateDirect(slots * 4).order(ByteOrder.nativeOrder());
+        }
+
+        @Override
+        long footprintBytes() {
+            return index.capacity() + (long) rows.capacity();
+        }
+    }
+}
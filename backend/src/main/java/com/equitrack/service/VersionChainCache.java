@@ -0,0 +1,334 @@
+package com.equitrack.service;
+
+import com.equitrack.model.Transaction;
+import com.equitrack.model.TransactionAction;
+import com.equitrack.model.TransactionSide;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Stored versions of recently used trades, in version order, kept as compact delta chains.
+ * <p>
+ * A chain encodes each version against the one before it: the header byte flags which of
+ * security, quantity, side and action changed, the transaction ID and version follow as
+ * zig-zag varint differences, and only the changed fields come after. A trade's versions
+ * usually differ in one or two fields, so a version costs a few bytes. The latest version is
+ * also held decoded, so it is read without walking the chain.
+ * <p>
+ * Chains are loaded from the database on a miss and appended to as versions commit. They are
+ * evicted least recently used first once their estimated size passes {@code maxBytes}; the
+ * database still holds every version, so an evicted trade is simply loaded again. A version
+ * that does not extend its chain in version order drops the chain instead. A load racing with
+ * an append or invalidation of the same trade is returned but not cached.
+ * <p>
+ * Thread-safe; every call is a short critical section.
+ */
+public class VersionChainCache {
+
+    private static final int SECURITY_CHANGED = 1;
+    private static final int QUANTITY_CHANGED = 2;
+    private static final int SIDE_CHANGED = 4;
+    private static final int ACTION_CHANGED = 8;
+
+    /** Stripes of the per-trade modification stamps that guard loads */
+    private static final int STAMP_STRIPES = 1024;
+
+    private static final TransactionAction[] ACTIONS = TransactionAction.values();
+    private static final TransactionSide[] SIDES = TransactionSide.values();
+
+    private final long maxBytes;
+    private final Map<Long, Chain> chains = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMP_STRIPES);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public VersionChainCache(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+
+    /**
+     * A trade's versions in version order, if its chain is cached
+     */
+    public synchronized Optional<List<Transaction>> history(long tradeId) {
+        Chain chain = chains.get(tradeId);
+        if (chain == null) {
+            misses++;
+            return Optional.empty();
+        }
+        hits++;
+        return Optional.of(chain.decode(tradeId));
+    }
+
+    /**
+     * A trade's latest version, if its chain is cached
+     */
+    public synchronized Optional<Transaction> latest(long tradeId) {
+        Chain chain = chains.get(tradeId);
+        if (chain == null) {
+            misses++;
+            return Optional.empty();
+        }
+        hits++;
+        return Optional.of(chain.latest(tradeId));
+    }
+
+    /**
+     * Stamp to take before reading a trade's versions from the database, for {@link #load}
+     */
+    public long stamp(long tradeId) {
+        return stamps.get(stripe(tradeId));
+    }
+
+    /**
+     * Cache a trade's versions read from the database, unless the trade changed since {@code stamp}
+     */
+    public synchronized void load(long tradeId, List<Transaction> versions, long stamp) {
+        if (versions.isEmpty() || stamps.get(stripe(tradeId)) != stamp || chains.containsKey(tradeId)) {
+            return;
+        }
+        Chain chain = new Chain();
+        for (Transaction version : versions) {
+            if (!chain.isEmpty() && version.getVersion() < chain.version) {
+                return;
+            }
+            chain.append(version);
+        }
+        chains.put(tradeId, chain);
+        bytes += chain.sizeBytes();
+        evict();
+    }
+
+    /**
+     * Add a committed version to its trade's chain, if cached. It extends the chain when it is
+     * newer than the latest version and is ignored when it already is the latest; anything else
+     * drops the chain.
+     */
+    public synchronized void append(Transaction version) {
+        long tradeId = version.getTradeId();
+        stamps.incrementAndGet(stripe(tradeId));
+        Chain chain = chains.get(tradeId);
+        if (chain == null) {
+            return;
+        }
+        if (version.getVersion() > chain.version) {
+            bytes -= chain.sizeBytes();
+            chain.append(version);
+            bytes += chain.sizeBytes();
+            evict();
+        } else if (version.getVersion() != chain.version || version.getTransactionId() != chain.transactionId) {
+            remove(tradeId);
+        }
+    }
+
+    /**
+     * Drop a trade's chain, e.g. after one of its versions was deleted
+     */
+    public synchronized void invalidate(long tradeId) {
+        stamps.incrementAndGet(stripe(tradeId));
+        remove(tradeId);
+    }
+
+    /**
+     * Drop every chain
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < STAMP_STRIPES; i++) {
+            stamps.incrementAndGet(i);
+        }
+        chains.clear();
+        bytes = 0;
+    }
+
+    /** Trades with a cached chain */
+    public synchronized int getTradeCount() {
+        return chains.size();
+    }
+
+    /** Estimated size of the cached chains */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /** Lookups answered from a cached chain */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /** Lookups that found no cached chain */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /** Chains evicted to stay within the size limit */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    private void remove(long tradeId) {
+        Chain chain = chains.remove(tradeId);
+        if (chain != null) {
+            bytes -= chain.sizeBytes();
+        }
+    }
+
+    private void evict() {
+        Iterator<Chain> eldest = chains.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().sizeBytes();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private static int stripe(long tradeId) {
+        return (int) ((tradeId ^ (tradeId >>> 32)) & (STAMP_STRIPES - 1));
+    }
+
+    /**
+     * One trade's versions as deltas, with the latest version decoded
+     */
+    private static final class Chain {
+        /** Object headers, fields and array headers, roughly */
+        private static final int OVERHEAD_BYTES = 96;
+
+        private byte[] data = new byte[16];
+        private int length;
+        /** Security codes used by the chain; deltas refer to them by index */
+        private String[] codes = new String[1];
+        private int codeCount;
+        private int codeBytes;
+
+        private int count;
+        private long transactionId;
+        private int version;
+        private int code = -1;
+        private int quantity;
+        private TransactionSide side;
+        private TransactionAction action;
+
+        boolean isEmpty() {
+            return count == 0;
+        }
+
+        long sizeBytes() {
+            return OVERHEAD_BYTES + data.length + 8L * codes.length + codeBytes;
+        }
+
+        void append(Transaction next) {
+            int nextCode = codeIndex(next.getSecurityCode());
+            int flags = (nextCode != code ? SECURITY_CHANGED : 0)
+                    | (count == 0 || next.getQuantity() != quantity ? QUANTITY_CHANGED : 0)
+                    | (next.getSide() != side ? SIDE_CHANGED : 0)
+                    | (next.getAction() != action ? ACTION_CHANGED : 0);
+            writeByte(flags);
+            writeVarLong(zigZag(next.getTransactionId() - transactionId));
+            writeVarLong(zigZag((long) next.getVersion() - version));
+            if ((flags & SECURITY_CHANGED) != 0) {
+                writeVarLong(nextCode);
+            }
+            if ((flags & QUANTITY_CHANGED) != 0) {
+                writeVarLong(zigZag((long) next.getQuantity() - quantity));
+            }
+            if ((flags & SIDE_CHANGED) != 0) {
+                writeVarLong(next.getSide().ordinal());
+            }
+            if ((flags & ACTION_CHANGED) != 0) {
+                writeVarLong(next.getAction().ordinal());
+            }
+            count++;
+            transactionId = next.getTransactionId();
+            version = next.getVersion();
+            code = nextCode;
+            quantity = next.getQuantity();
+            side = next.getSide();
+            action = next.getAction();
+        }
+
+        Transaction latest(long tradeId) {
+            return new Transaction(transactionId, tradeId, version, codes[code], quantity, action, side);
+        }
+
+        List<Transaction> decode(long tradeId) {
+            List<Transaction> versions = new ArrayList<>(count);
+            int[] position = {0};
+            long decodedId = 0;
+            long decodedVersion = 0;
+            int decodedCode = -1;
+            long decodedQuantity = 0;
+            TransactionSide decodedSide = null;
+            TransactionAction decodedAction = null;
+            for (int i = 0; i < count; i++) {
+                int flags = data[position[0]++];
+                decodedId += unZigZag(readVarLong(position));
+                decodedVersion += unZigZag(readVarLong(position));
+                if ((flags & SECURITY_CHANGED) != 0) {
+                    decodedCode = (int) readVarLong(position);
+                }
+                if ((flags & QUANTITY_CHANGED) != 0) {
+                    decodedQuantity += unZigZag(readVarLong(position));
+                }
+                if ((flags & SIDE_CHANGED) != 0) {
+                    decodedSide = SIDES[(int) readVarLong(position)];
+                }
+                if ((flags & ACTION_CHANGED) != 0) {
+                    decodedAction = ACTIONS[(int) readVarLong(position)];
+                }
+                versions.add(new Transaction(decodedId, tradeId, (int) decodedVersion, codes[decodedCode],
+                        (int) decodedQuantity, decodedAction, decodedSide));
+            }
+            return versions;
+        }
+
+        private int codeIndex(String securityCode) {
+            for (int i = 0; i < codeCount; i++) {
+                if (codes[i].equals(securityCode)) {
+                    return i;
+                }
+            }
+            if (codeCount == codes.length) {
+                codes = Arrays.copyOf(codes, codeCount * 2);
+            }
+            codes[codeCount] = securityCode;
+            codeBytes += 40 + securityCode.length();
+            return codeCount++;
+        }
+
+        private void writeByte(int value) {
+            if (length == data.length) {
+                data = Arrays.copyOf(data, length * 2);
+            }
+            data[length++] = (byte) value;
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        private long readVarLong(int[] position) {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position[0]++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        private static long zigZag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+
+        private static long unZigZag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
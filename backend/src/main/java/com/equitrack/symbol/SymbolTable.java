@@ -0,0 +1,106 @@
+package com.equitrack.symbol;
+
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dense int IDs for security codes, shared by the in-memory engine and the journal.
+ * <p>
+ * IDs are handed out in first-seen order starting at 0 and are never removed or reused,
+ * so they can index arrays and be written to disk. Lookups by code are one hash probe and
+ * decoding an ID is an array read; both are lock-free. Only assigning a new ID locks.
+ * <p>
+ * The table is persisted by the {@code TransactionJournal}, which writes each ID before
+ * the first record that uses it and restores them with {@link #restore} when it is opened.
+ */
+@Component
+public class SymbolTable {
+
+    /** Longest security code in UTF-8 bytes, so every code fits a one-byte length on disk and the VARCHAR(255) columns */
+    public static final int MAX_CODE_LENGTH = 255;
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] codes = new String[256];
+    private volatile int size;
+
+    /**
+     * ID of a security code, assigned on first use; codes over {@link #MAX_CODE_LENGTH} bytes are rejected
+     */
+    public int intern(String securityCode) {
+        Integer id = ids.get(securityCode);
+        return id != null ? id : assign(securityCode);
+    }
+
+    /**
+     * Reject a security code over {@link #MAX_CODE_LENGTH} bytes, so callers can check before they change anything
+     */
+    public static void checkCode(String securityCode) {
+        if (securityCode.getBytes(StandardCharsets.UTF_8).length > MAX_CODE_LENGTH) {
+            throw new IllegalArgumentException("Security code too long: " + securityCode);
+        }
+    }
+
+    /**
+     * ID of a security code, or -1 if it has never been seen
+     */
+    public int find(String securityCode) {
+        Integer id = ids.get(securityCode);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Security code of an ID
+     */
+    public String code(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("Unknown symbol ID " + id);
+        }
+        return codes[id];
+    }
+
+    /**
+     * Number of IDs assigned; every ID below it is valid
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Re-register an ID read back from disk. IDs must come back in order and agree with any already assigned.
+     */
+    public synchronized void restore(int id, String securityCode) {
+        if (id < size) {
+            if (!codes[id].equals(securityCode)) {
+                throw new IllegalStateException("Symbol ID " + id + " is " + codes[id] + ", not " + securityCode);
+            }
+            return;
+        }
+        if (id != size || ids.containsKey(securityCode)) {
+            throw new IllegalStateException("Cannot restore symbol " + securityCode + " as ID " + id
+                    + " into a table of " + size);
+        }
+        assign(securityCode);
+    }
+
+    private synchronized int assign(String securityCode) {
+        Integer existing = ids.get(securityCode);
+        if (existing != null) {
+            return existing;
+        }
+        checkCode(securityCode);
+        int id = size;
+        String[] table = codes;
+        if (id == table.length) {
+            table = Arrays.copyOf(table, table.length * 2);
+        }
+        table[id] = securityCode;
+        codes = table;
+        // Publish the code before the ID, so whoever sees the ID can decode it
+        size = id + 1;
+        ids.put(securityCode, id);
+        return id;
+    }
+}
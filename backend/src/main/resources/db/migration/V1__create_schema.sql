@@ -0,0 +1,51 @@
+-- Sequences step by the entities' @SequenceGenerator allocation size
+CREATE SEQUENCE transactions_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE trades_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE positions_seq START WITH 1 INCREMENT BY 50;
+
+-- Append-only event log: no timestamps, enums stored as their ordinal
+CREATE TABLE transactions (
+    id             BIGINT       NOT NULL,
+    transaction_id BIGINT       NOT NULL,
+    trade_id       BIGINT       NOT NULL,
+    version        INTEGER      NOT NULL,
+    security_code  VARCHAR(255) NOT NULL,
+    quantity       INTEGER      NOT NULL,
+    action         SMALLINT     NOT NULL,
+    side           SMALLINT     NOT NULL,
+    CONSTRAINT pk_transactions PRIMARY KEY (id),
+    CONSTRAINT uk_transactions_transaction_id UNIQUE (transaction_id)
+);
+
+-- findByTradeIdOrderByVersionAsc, findByTradeIdAndVersion, countByTradeId
+CREATE INDEX ix_transactions_trade_id_version ON transactions (trade_id, version);
+
+-- findBySecurityCodeOrderByTransactionIdAsc, security code filter when paging
+CREATE INDEX ix_transactions_security_code ON transactions (security_code, transaction_id);
+
+CREATE TABLE trades (
+    id              BIGINT       NOT NULL,
+    trade_id        BIGINT       NOT NULL,
+    current_version INTEGER      NOT NULL,
+    security_code   VARCHAR(255) NOT NULL,
+    quantity        INTEGER      NOT NULL,
+    side            SMALLINT     NOT NULL,
+    is_cancelled    BOOLEAN      NOT NULL,
+    created_at      TIMESTAMP(6),
+    updated_at      TIMESTAMP(6),
+    CONSTRAINT pk_trades PRIMARY KEY (id),
+    CONSTRAINT uk_trades_trade_id UNIQUE (trade_id)
+);
+
+-- countBySecurityCode[AndIsCancelledFalse], findBySecurityCode...OrderByTradeIdAsc, filtered trade pages
+CREATE INDEX ix_trades_security_code_cancelled ON trades (security_code, is_cancelled, trade_id);
+
+CREATE TABLE positions (
+    id            BIGINT       NOT NULL,
+    security_code VARCHAR(255) NOT NULL,
+    quantity      BIGINT       NOT NULL,
+    created_at    TIMESTAMP(6),
+    updated_at    TIMESTAMP(6),
+    CONSTRAINT pk_positions PRIMARY KEY (id),
+    CONSTRAINT uk_positions_security_code UNIQUE (security_code)
+);
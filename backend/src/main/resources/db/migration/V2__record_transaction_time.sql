@@ -0,0 +1,3 @@
+-- When each transaction was stored, filled in by the database so inserts stay unchanged;
+-- resolves as-of position queries by time. Rows stored before this migration get its time.
+ALTER TABLE transactions ADD COLUMN recorded_at TIMESTAMP DEFAULT LOCALTIMESTAMP NOT NULL;
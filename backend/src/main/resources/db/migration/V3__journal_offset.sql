@@ -0,0 +1,8 @@
+-- Hybrid mode with the journal: the journal offset the stored rows reach, written in the same
+-- database transaction as each write-behind batch. Startup replays only the journal after it;
+-- with no row the rows are not known to follow the journal.
+CREATE TABLE journal_state (
+    id             INTEGER NOT NULL,
+    journal_offset BIGINT  NOT NULL,
+    CONSTRAINT pk_journal_state PRIMARY KEY (id)
+);
@@ -0,0 +1,136 @@
+package com.equitrack.controller;
+
+import com.equitrack.model.Trade;
+import com.equitrack.model.TradeFilter;
+import com.equitrack.model.Transaction;
+import com.equitrack.model.TransactionAction;
+import com.equitrack.model.TransactionFilter;
+import com.equitrack.model.TransactionSide;
+import com.equitrack.service.PositionManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class PositionControllerPagingTest {
+
+    @SpyBean
+    private PositionManager positionManager;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        positionManager.clear();
+        // Trades 1-10, REL for odd IDs and ITC for even ones, Buy below 6; trade 3 cancelled
+        List<Transaction> transactions = new ArrayList<>();
+        for (long tradeId = 1; tradeId <= 10; tradeId++) {
+            transactions.add(new Transaction(tradeId, tradeId, 1, tradeId % 2 == 1 ? "REL" : "ITC", 10,
+                    TransactionAction.INSERT, tradeId < 6 ? TransactionSide.Buy : TransactionSide.Sell));
+        }
+        transactions.add(new Transaction(11L, 3L, 2, "REL", 10, TransactionAction.CANCEL, TransactionSide.Buy));
+        positionManager.processTransactions(transactions);
+    }
+
+    @Test
+    void testKeysetPagesWalkFilteredTrades() {
+        // Given
+        TradeFilter filter = new TradeFilter("REL", null, false);
+
+        // When
+        List<Trade> first = positionManager.findTrades(filter, null, 2);
+        List<Trade> second = positionManager.findTrades(filter, first.get(first.size() - 1).getTradeId(), 2);
+        List<Trade> last = positionManager.findTrades(filter, second.get(second.size() - 1).getTradeId(), 2);
+
+        // Then
+        assertEquals(List.of(1L, 5L), first.stream().map(Trade::getTradeId).toList());
+        assertEquals(List.of(7L, 9L), second.stream().map(Trade::getTradeId).toList());
+        assertTrue(last.isEmpty());
+    }
+
+    @Test
+    void testTransactionFiltersCombine() {
+        // When
+        List<Transaction> sells = positionManager.findTransactions(
+                new TransactionFilter(null, "ITC", TransactionSide.Sell, TransactionAction.INSERT), 6L, 10);
+        List<Transaction> cancels = positionManager.findTransactions(
+                new TransactionFilter(3L, null, null, TransactionAction.CANCEL), null, 10);
+
+        // Then
+        assertEquals(List.of(8L, 10L), sells.stream().map(Transaction::getTransactionId).toList());
+        assertEquals(List.of(11L), cancels.stream().map(Transaction::getTransactionId).toList());
+    }
+
+    @Test
+    void testPagedTradesCarryNextCursor() throws Exception {
+        // When / Then - first page
+        String cursor = mockMvc.perform(get("/api/trades").param("limit", "4").param("side", "Buy"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].tradeId").value(org.hamcrest.Matchers.contains(1, 2, 3, 4)))
+                .andReturn().getResponse().getHeader(PositionController.NEXT_CURSOR_HEADER);
+        assertEquals("4", cursor);
+
+        // When / Then - last page
+        mockMvc.perform(get("/api/trades").param("limit", "4").param("side", "Buy").param("after", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].tradeId").value(org.hamcrest.Matchers.contains(5)))
+                .andExpect(header().doesNotExist(PositionController.NEXT_CURSOR_HEADER));
+
+        // When / Then - out of range limit
+        mockMvc.perform(get("/api/trades").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testUnpagedTransactionsAreStreamed() throws Exception {
+        // When
+        MvcResult result = mockMvc.perform(get("/api/transactions"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(11))
+                .andExpect(jsonPath("$[10].action").value("CANCEL"));
+    }
+
+    @Test
+    void testFailedStreamIsNotClosedAsAnArray() throws Exception {
+        // Given - the read fails after the first transaction
+        doAnswer(invocation -> {
+            Consumer<Transaction> consumer = invocation.getArgument(0);
+            consumer.accept(new Transaction(1L, 1L, 1, "REL", 10, TransactionAction.INSERT, TransactionSide.Buy));
+            throw new IllegalStateException("connection lost");
+        }).when(positionManager).forEachTransaction(any());
+
+        // When
+        MvcResult result = mockMvc.perform(get("/api/transactions"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult();
+
+        // Then - no closing bracket makes the partial list look complete
+        assertFalse(result.getResponse().getContentAsString().endsWith("]"));
+    }
+}
@@ -0,0 +1,89 @@
+package com.equitrack.controller;
+
+import com.equitrack.model.Transaction;
+import com.equitrack.model.TransactionAction;
+import com.equitrack.model.TransactionSide;
+import com.equitrack.service.PositionManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class TradeHistoryControllerTest {
+
+    @Autowired
+    private PositionManager positionManager;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        positionManager.clear();
+        // Trade 3 inserted then cancelled, trade 4 inserted once
+        positionManager.processTransactions(List.of(
+            new Transaction(3L, 3L, 1, "REL", 10, TransactionAction.INSERT, TransactionSide.Buy),
+            new Transaction(4L, 4L, 1, "ITC", 10, TransactionAction.INSERT, TransactionSide.Sell),
+            new Transaction(11L, 3L, 2, "REL", 10, TransactionAction.CANCEL, TransactionSide.Buy)
+        ));
+    }
+
+    @Test
+    void testTradeHistoryFollowsNewAndDeletedVersions() throws Exception {
+        // When / Then - served from the database, then from the cached chain as versions commit
+        mockMvc.perform(get("/api/trades/3/history"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].version").value(org.hamcrest.Matchers.contains(1, 2)))
+                .andExpect(jsonPath("$[1].action").value("CANCEL"));
+        positionManager.processTransaction(new Transaction(12L, 3L, 3, "ITC", 25, TransactionAction.INSERT, TransactionSide.Sell));
+        mockMvc.perform(get("/api/trades/3/history"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].transactionId").value(org.hamcrest.Matchers.contains(3, 11, 12)))
+                .andExpect(jsonPath("$[2].securityCode").value("ITC"))
+                .andExpect(jsonPath("$[2].quantity").value(25));
+
+        // When / Then - deleting a version drops the chain
+        positionManager.deleteTransaction(11L);
+        mockMvc.perform(get("/api/trades/3/history"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].transactionId").value(org.hamcrest.Matchers.contains(3, 12)));
+        mockMvc.perform(get("/api/trades/99/history"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testLatestVersionFollowsNewAndDeletedVersions() throws Exception {
+        // When / Then - read from the database, then from the cached chain as versions commit
+        mockMvc.perform(get("/api/trades/3/latest"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactionId").value(11))
+                .andExpect(jsonPath("$.action").value("CANCEL"));
+        positionManager.processTransaction(new Transaction(12L, 3L, 3, "ITC", 25, TransactionAction.INSERT, TransactionSide.Sell));
+        mockMvc.perform(get("/api/trades/3/latest"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(3))
+                .andExpect(jsonPath("$.securityCode").value("ITC"));
+
+        // When / Then - deleting the latest version falls back to the one before
+        positionManager.deleteTransaction(12L);
+        mockMvc.perform(get("/api/trades/3/latest"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactionId").value(11));
+        mockMvc.perform(get("/api/trades/4/latest"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(1));
+        mockMvc.perform(get("/api/trades/99/latest"))
+                .andExpect(status().isNotFound());
+    }
+}
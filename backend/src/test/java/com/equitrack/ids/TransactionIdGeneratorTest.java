@@ -0,0 +1,52 @@
+package com.equitrack.ids;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionIdGeneratorTest {
+
+    @Test
+    void testIdsKeepIncreasingWhenTheClockStallsOrStepsBack() {
+        // Given - a clock we move by hand
+        AtomicLong clock = new AtomicLong(TransactionIdGenerator.EPOCH_MILLIS + 1_000);
+        TransactionIdGenerator generator = new TransactionIdGenerator(5, clock::get);
+
+        // When - more IDs than one second holds, then the clock steps back
+        long previous = generator.nextId();
+        for (int i = 0; i < 10_000; i++) {
+            if (i == 5_000) {
+                clock.addAndGet(-500);
+            }
+            long next = generator.nextId();
+
+            // Then
+            assertTrue(next > previous, "ID " + next + " after " + previous);
+            assertEquals(5, (next >>> TransactionIdGenerator.SEQUENCE_BITS) & TransactionIdGenerator.MAX_NODE);
+            previous = next;
+        }
+    }
+
+    @Test
+    void testIdsStayExactAsJavaScriptNumbers() {
+        // Given - the last second the layout holds, on the highest node
+        long lastSecond = (1L << TransactionIdGenerator.SECOND_BITS) - 1;
+        TransactionIdGenerator generator = new TransactionIdGenerator(TransactionIdGenerator.MAX_NODE,
+                () -> TransactionIdGenerator.EPOCH_MILLIS + lastSecond * 1000);
+
+        // When
+        long id = generator.nextId();
+
+        // Then - at most Number.MAX_SAFE_INTEGER
+        assertTrue(id <= (1L << 53) - 1, "ID " + id);
+        assertTrue(new TransactionIdGenerator(0).nextId() < (1L << 53));
+    }
+
+    @Test
+    void testNodeMustFitItsBits() {
+        assertThrows(IllegalArgumentException.class, () -> new TransactionIdGenerator(1024));
+        assertThrows(IllegalArgumentException.class, () -> new TransactionIdGenerator(-1));
+    }
+}
@@ -0,0 +1,79 @@
+package com.equitrack.ids;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionIdIndexTest {
+
+    @Test
+    void testRecentIdsAreExactAndOlderOnesFallBackToTheFilter() {
+        // Given - room for 100 recent IDs
+        TransactionIdIndex index = new TransactionIdIndex(100, 10_000, 0.01);
+        index.rebuild(List.of());
+
+        // When
+        for (long id = 1; id <= 1_000; id++) {
+            assertEquals(TransactionIdIndex.Seen.NO, index.claim(id));
+        }
+
+        // Then - the last 100 are certain, evicted ones are doubtful, and unseen ones are mostly new
+        assertEquals(TransactionIdIndex.Seen.YES, index.check(1_000));
+        assertEquals(TransactionIdIndex.Seen.YES, index.check(901));
+        assertEquals(TransactionIdIndex.Seen.MAYBE, index.check(900));
+        assertEquals(TransactionIdIndex.Seen.MAYBE, index.check(1));
+        int definitelyNew = 0;
+        for (long id = 1_001; id <= 2_000; id++) {
+            if (index.check(id) == TransactionIdIndex.Seen.NO) {
+                definitelyNew++;
+            }
+        }
+        assertTrue(definitelyNew > 950, "false positives should stay near 1%: " + definitelyNew);
+    }
+
+    @Test
+    void testReleasedAndUnloadedIdsAreDoubtful() {
+        // Given
+        TransactionIdIndex index = new TransactionIdIndex(100, 10_000, 0.01);
+        assertEquals(TransactionIdIndex.Seen.MAYBE, index.check(7));
+        index.rebuild(List.of(7L, 8L));
+
+        // When
+        index.release(7);
+
+        // Then
+        assertEquals(TransactionIdIndex.Seen.MAYBE, index.check(7));
+        assertEquals(TransactionIdIndex.Seen.YES, index.claim(8));
+        index.clear();
+        assertEquals(TransactionIdIndex.Seen.NO, index.check(8));
+    }
+
+    @Test
+    void testLongHashSetMatchesHashSetUnderChurn() {
+        // Given
+        LongHashSet set = new LongHashSet();
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(11);
+
+        // When - adds and removes over a small range, so probe runs collide and shift
+        for (int i = 0; i < 200_000; i++) {
+            long value = random.nextInt(5_000) - 100;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), set.remove(value));
+            } else {
+                assertEquals(expected.add(value), set.add(value));
+            }
+        }
+
+        // Then
+        assertEquals(expected.size(), set.size());
+        for (long value = -100; value < 4_900; value++) {
+            assertEquals(expected.contains(value), set.contains(value), "value " + value);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.equitrack.journal;
+
+import com.equitrack.model.Transaction;
+import com.equitrack.model.TransactionAction;
+import com.equitrack.model.TransactionSide;
+import com.equitrack.symbol.SymbolTable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private TransactionJournal open(Path file, int regionSize) {
+        TransactionJournal journal = new TransactionJournal(file, regionSize, TransactionJournal.FsyncPolicy.ALWAYS);
+        journal.open();
+        return journal;
+    }
+
+    private static Transaction transaction(long id, long tradeId, int version, String code) {
+        return new Transaction(id, tradeId, version, code, (int) id * 10, TransactionAction.INSERT, TransactionSide.Buy);
+    }
+
+    private static List<Object> replay(TransactionJournal journal) {
+        List<Object> records = new ArrayList<>();
+        journal.replay(new TransactionJournal.ReplayHandler() {
+            @Override
+            public void onTransaction(Transaction transaction) {
+                records.add(transaction.getTransactionId());
+            }
+
+            @Override
+            public void onTradeDeleted(long tradeId) {
+                records.add("trade-" + tradeId);
+            }
+
+            @Override
+            public void onPositionDeleted(String securityCode) {
+                records.add("position-" + securityCode);
+            }
+        });
+        return records;
+    }
+
+    @Test
+    void testReplayAfterReopen() {
+        Path file = directory.resolve("transactions.journal");
+        TransactionJournal journal = open(file, 4096);
+        journal.sync(journal.append(transaction(1, 1, 1, "REL")));
+        journal.sync(journal.appendAll(List.of(transaction(2, 2, 1, "ITC"), transaction(3, 1, 2, "REL"))));
+        journal.sync(journal.appendTradeDeleted(2));
+        journal.sync(journal.appendPositionDeleted("ITC"));
+        journal.close();
+
+        TransactionJournal reopened = open(file, 4096);
+        assertEquals(List.of(1L, 2L, 3L, "trade-2", "position-ITC"), replay(reopened));
+
+        // Appends continue after the recovered tail
+        reopened.sync(reopened.append(transaction(4, 4, 1, "INF")));
+        reopened.close();
+        assertEquals(List.of(1L, 2L, 3L, "trade-2", "position-ITC", 4L), replay(open(file, 4096)));
+    }
+
+    @Test
+    void testRecordsSpanManyRegions() {
+        Path file = directory.resolve("transactions.journal");
+        TransactionJournal journal = open(file, 256);
+        for (long id = 1; id <= 1000; id++) {
+            journal.append(transaction(id, id, 1, "SEC" + id));
+        }
+        journal.close();
+
+        List<Object> records = replay(open(file, 256));
+        assertEquals(1000, records.size());
+        assertEquals(1L, records.get(0));
+        assertEquals(1000L, records.get(999));
+    }
+
+    @Test
+    void testTornTailIsTruncated() throws Exception {
+        Path file = directory.resolve("transactions.journal");
+        TransactionJournal journal = open(file, 4096);
+        journal.append(transaction(1, 1, 1, "REL"));
+        long secondRecord = journal.getPosition();
+        journal.append(transaction(2, 2, 1, "ITC"));
+        journal.close();
+
+        // Corrupt the payload of the second record as if the write was cut short
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(secondRecord + TransactionJournal.HEADER_SIZE + 3);
+            raf.write(0x7F);
+        }
+
+        TransactionJournal recovered = open(file, 4096);
+        assertEquals(secondRecord, recovered.getPosition());
+        assertEquals(List.of(1L), replay(recovered));
+
+        recovered.append(transaction(3, 3, 1, "INF"));
+        recovered.close();
+        assertEquals(List.of(1L, 3L), replay(open(file, 4096)));
+    }
+
+    @Test
+    void testResetDiscardsEverything() {
+        Path file = directory.resolve("transactions.journal");
+        TransactionJournal journal = open(file, 4096);
+        journal.append(transaction(1, 1, 1, "REL"));
+        journal.reset();
+        journal.append(transaction(2, 2, 1, "ITC"));
+        journal.close();
+
+        assertEquals(List.of(2L), replay(open(file, 4096)));
+    }
+
+    @Test
+    void testSymbolsAreWrittenOnceAndRestoredWithTheirIds() {
+        // Given - a code the table assigned before the journal ever saw it
+        Path file = directory.resolve("transactions.journal");
+        SymbolTable symbols = new SymbolTable();
+        symbols.intern("ITC");
+        TransactionJournal journal = new TransactionJournal(file, 4096, TransactionJournal.FsyncPolicy.ALWAYS, symbols);
+        journal.open();
+
+        // When - the first REL transaction writes symbols 0 and 1, the second none
+        journal.append(transaction(1, 1, 1, "REL"));
+        journal.append(transaction(2, 1, 2, "REL"));
+        journal.close();
+
+        // Then
+        assertEquals(4, journal.getAppendedCount());
+        SymbolTable restored = new SymbolTable();
+        TransactionJournal reopened = new TransactionJournal(file, 4096, TransactionJournal.FsyncPolicy.ALWAYS, restored);
+        reopened.open();
+        assertEquals(0, restored.find("ITC"));
+        assertEquals(1, restored.find("REL"));
+        List<String> codes = new ArrayList<>();
+        reopened.replay(transaction -> codes.add(transaction.getSecurityCode()));
+        assertEquals(List.of("REL", "REL"), codes);
+        reopened.close();
+    }
+}
@@ -0,0 +1,27 @@
+package com.equitrack.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EngineGaugesTest {
+
+    @Test
+    void testCachedCountOnlyReadsOnceStale() {
+        // Given
+        AtomicLong reads = new AtomicLong();
+        EngineGauges.CachedCount cached = new EngineGauges.CachedCount(reads::incrementAndGet, 3_600_000);
+        EngineGauges.CachedCount uncached = new EngineGauges.CachedCount(reads::incrementAndGet, 0);
+
+        // When / Then - the cached count keeps its first read
+        assertEquals(1.0, cached.get());
+        assertEquals(1.0, cached.get());
+        assertEquals(1, reads.get());
+
+        // When / Then - with no maximum age every read goes to the source
+        assertEquals(2.0, uncached.get());
+        assertEquals(3.0, uncached.get());
+    }
+}
@@ -0,0 +1,58 @@
+package com.equitrack.repository;
+
+import com.equitrack.EquiTrackApplication;
+import com.equitrack.model.Position;
+import com.equitrack.model.Transaction;
+import com.equitrack.model.TransactionAction;
+import com.equitrack.model.TransactionSide;
+import com.equitrack.service.PositionManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileStorageTest {
+
+    @TempDir
+    Path directory;
+
+    private ConfigurableApplicationContext start(String mode) {
+        return new SpringApplicationBuilder(EquiTrackApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("file")
+                .run("--equitrack.storage.directory=" + directory,
+                        "--equitrack.engine.mode=" + mode,
+                        "--logging.level.com.equitrack=WARN");
+    }
+
+    @Test
+    void testStateSurvivesRestart() {
+        // Given
+        try (ConfigurableApplicationContext context = start("jpa")) {
+            assertEquals(StorageBackend.FILE, context.getBean(StorageInfoContributor.class).getDetails().get("backend"));
+            PositionManager positionManager = context.getBean(PositionManager.class);
+            positionManager.clear();
+            positionManager.processTransactions(List.of(
+                new Transaction(1L, 1L, 1, "REL", 50, TransactionAction.INSERT, TransactionSide.Buy),
+                new Transaction(2L, 1L, 2, "REL", 60, TransactionAction.UPDATE, TransactionSide.Buy)
+            ));
+        }
+        assertTrue(Files.exists(directory.resolve("equitrack.mv.db")));
+
+        // When - restarted, in hybrid mode the engine is rebuilt from the file
+        try (ConfigurableApplicationContext context = start("hybrid")) {
+            PositionManager positionManager = context.getBean(PositionManager.class);
+
+            // Then - the sample data was not reloaded over it
+            assertEquals(List.of(new Position("REL", 60L)), positionManager.getPositions());
+            assertEquals(2, positionManager.getTradeById(1L).get().getCurrentVersion());
+        }
+    }
+}
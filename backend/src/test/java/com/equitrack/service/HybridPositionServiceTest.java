@@ -0,0 +1,249 @@
+package com.equitrack.service;
+
+import com.equitrack.model.Position;
+import com.equitrack.model.Trade;
+import com.equitrack.model.Transaction;
+import com.equitrack.model.TransactionAction;
+import com.equitrack.model.TransactionFilter;
+import com.equitrack.model.TransactionSide;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.reset;
+
+@SpringBootTest(properties = {"equitrack.engine.mode=hybrid", "equitrack.write-behind.flush-interval-ms=3600000",
+        "equitrack.write-behind.max-attempts=2", "equitrack.write-behind.retry-backoff-ms=1"})
+@ActiveProfiles("test")
+public class HybridPositionServiceTest {
+
+    @Autowired
+    private PositionManager positionManager;
+
+    @Autowired
+    private HybridPositionService hybridService;
+
+    @SpyBean
+    private PositionServiceJPA store;
+
+    @SpyBean
+    private PositionService engine;
+
+    private final List<Transaction> sampleTransactions = List.of(
+        new Transaction(1L, 1L, 1, "REL", 50, TransactionAction.INSERT, TransactionSide.Buy),
+        new Transaction(2L, 2L, 1, "ITC", 40, TransactionAction.INSERT, TransactionSide.Sell),
+        new Transaction(3L, 3L, 1, "INF", 70, TransactionAction.INSERT, TransactionSide.Buy),
+        new Transaction(4L, 1L, 2, "REL", 60, TransactionAction.UPDATE, TransactionSide.Buy),
+        new Transaction(5L, 2L, 2, "ITC", 30, TransactionAction.CANCEL, TransactionSide.Buy),
+        new Transaction(6L, 4L, 1, "INF", 20, TransactionAction.INSERT, TransactionSide.Sell)
+    );
+
+    @BeforeEach
+    void setUp() {
+        hybridService.clear();
+    }
+
+    @Test
+    void testHybridEngineIsSelected() {
+        assertSame(hybridService, positionManager);
+    }
+
+    @Test
+    void testWriteBehindPersistsInMemoryState() {
+        // When
+        hybridService.processTransactions(sampleTransactions);
+        hybridService.flush();
+
+        // Then - memory and database agree
+        assertEquals(0, hybridService.getBacklogSize());
+        assertEquals(hybridService.getPositions(), store.getPositions());
+        assertEquals(hybridService.getTrades(), store.getTrades());
+        assertEquals(6, store.getTransactions().size());
+    }
+
+    @Test
+    void testDatabaseReadsDoNotWaitForTheBacklog() {
+        // Given - transactions still in the write-behind queue
+        hybridService.processTransactions(sampleTransactions);
+
+        // When / Then - database reads see only what was flushed
+        assertTrue(hybridService.findTransactions(new TransactionFilter(), null, 10).isEmpty());
+        assertTrue(hybridService.getTradeHistory(1L).isEmpty());
+        hybridService.flush();
+        assertEquals(6, hybridService.findTransactions(new TransactionFilter(), null, 10).size());
+        assertEquals(2, hybridService.getTradeHistory(1L).size());
+    }
+
+    @Test
+    void testSecurityChangePersistsBothPositions() {
+        // Given
+        hybridService.processTransaction(new Transaction(1L, 1L, 1, "REL", 50, TransactionAction.INSERT, TransactionSide.Buy));
+        hybridService.flush();
+
+        // When - the update moves the trade to another security
+        hybridService.processTransaction(new Transaction(2L, 1L, 2, "ITC", 50, TransactionAction.UPDATE, TransactionSide.Buy));
+        hybridService.flush();
+
+        // Then
+        assertEquals(Optional.of(new Position("REL", 0L)), store.getPositionBySecurityCode("REL"));
+        assertEquals(Optional.of(new Position("ITC", 50L)), store.getPositionBySecurityCode("ITC"));
+    }
+
+    @Test
+    void testReleasedVersionPersistsItsPosition() {
+        // Given - an early version moving the trade to ITC, stored while it is still held
+        hybridService.processTransaction(new Transaction(2L, 1L, 2, "ITC", 50, TransactionAction.UPDATE, TransactionSide.Buy));
+        hybridService.flush();
+
+        // When - the version it waits for arrives in a later batch and releases it
+        hybridService.processTransaction(new Transaction(1L, 1L, 1, "REL", 50, TransactionAction.INSERT, TransactionSide.Buy));
+        hybridService.flush();
+
+        // Then
+        assertEquals(Optional.of(new Position("ITC", 50L)), store.getPositionBySecurityCode("ITC"));
+        assertEquals(hybridService.getPositions(), store.getPositions());
+        assertEquals(hybridService.getTrades(), store.getTrades());
+    }
+
+    @Test
+    void testRebuildRestoresStateFromDatabase() {
+        // Given
+        hybridService.processTransactions(sampleTransactions);
+        hybridService.flush();
+        List<Position> positions = hybridService.getPositions();
+        List<Trade> trades = hybridService.getTrades();
+
+        // When
+        hybridService.rebuild();
+
+        // Then
+        assertEquals(positions, hybridService.getPositions());
+        assertEquals(trades, hybridService.getTrades());
+        assertThrows(IllegalArgumentException.class, () -> {
+            hybridService.processTransaction(sampleTransactions.get(0));
+        });
+    }
+
+    @Test
+    void testRebuildHoldsStoredEarlyVersionsAgain() {
+        // Given - an update stored while it is held for its insert
+        hybridService.processTransaction(new Transaction(2L, 1L, 2, "ITC", 60, TransactionAction.UPDATE, TransactionSide.Buy));
+        hybridService.flush();
+
+        // When - the service restarts, then the insert arrives
+        hybridService.rebuild();
+        assertEquals(1, hybridService.getPendingCount());
+        hybridService.processTransaction(new Transaction(1L, 1L, 1, "REL", 50, TransactionAction.INSERT, TransactionSide.Buy));
+        hybridService.flush();
+
+        // Then
+        assertEquals(0, hybridService.getPendingCount());
+        assertEquals(Optional.of(new Position("ITC", 60L)), hybridService.getPositionBySecurityCode("ITC"));
+        assertEquals(hybridService.getPositions(), store.getPositions());
+    }
+
+    @Test
+    void testDuplicateTransactionIdInBatch() {
+        List<Transaction> batch = List.of(
+            new Transaction(1L, 1L, 1, "REL", 50, TransactionAction.INSERT, TransactionSide.Buy),
+            new Transaction(1L, 2L, 1, "ITC", 40, TransactionAction.INSERT, TransactionSide.Sell)
+        );
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            hybridService.processTransactions(batch);
+        });
+        assertTrue(hybridService.getTrades().isEmpty());
+    }
+
+    @Test
+    void testRejectedTransactionsLeaveNothingBehind() {
+        // Given - a code too long for the engine in the middle of a batch
+        Transaction tooLong = new Transaction(2L, 2L, 1, "X".repeat(300), 40, TransactionAction.INSERT, TransactionSide.Sell);
+        List<Transaction> batch = List.of(sampleTransactions.get(0), tooLong, sampleTransactions.get(2));
+
+        // When / Then - neither the batch nor the single transaction changes anything
+        assertThrows(IllegalArgumentException.class, () -> hybridService.processTransactions(batch));
+        assertThrows(IllegalArgumentException.class, () -> hybridService.processTransaction(tooLong));
+        assertTrue(hybridService.getTrades().isEmpty());
+        assertEquals(0, hybridService.getBacklogSize());
+
+        // When - the same IDs are sent again once corrected
+        hybridService.processTransactions(sampleTransactions.subList(0, 1));
+        hybridService.processTransaction(sampleTransactions.get(1));
+        hybridService.processTransactions(sampleTransactions.subList(2, 3));
+        hybridService.flush();
+
+        // Then
+        assertEquals(3, store.getTransactions().size());
+        assertEquals(hybridService.getPositions(), store.getPositions());
+    }
+
+    @Test
+    void testLongestSecurityCodeTheEngineTakesIsStored() {
+        // Given - a code as long as the symbol table allows
+        String securityCode = "X".repeat(255);
+
+        // When
+        hybridService.processTransaction(new Transaction(1L, 1L, 1, securityCode, 50, TransactionAction.INSERT, TransactionSide.Buy));
+        hybridService.flush();
+
+        // Then - the write-behind flush stores it and keeps accepting transactions
+        assertEquals(Optional.of(new Position(securityCode, 50L)), store.getPositionBySecurityCode(securityCode));
+        hybridService.processTransaction(sampleTransactions.get(1));
+    }
+
+    @Test
+    void testEngineFailurePartwayKeepsWhatWasApplied() {
+        // Given - the engine fails on the third transaction of a batch
+        doThrow(new IllegalStateException("engine failure"))
+                .when(engine).processTransaction(argThat(transaction -> transaction.getTransactionId() == 3L));
+
+        // When
+        PartiallyAppliedBatchException failure = assertThrows(PartiallyAppliedBatchException.class,
+                () -> hybridService.processTransactions(sampleTransactions));
+        reset(engine);
+        hybridService.flush();
+
+        // Then - what was applied is named and stored, and the rest can be sent again
+        assertEquals(Set.of(1L, 2L), failure.getAppliedTransactionIds());
+        assertEquals(List.of(1L, 2L), store.getTransactions().stream().map(Transaction::getTransactionId).toList());
+        hybridService.processTransactions(sampleTransactions.subList(2, sampleTransactions.size()));
+        hybridService.flush();
+        assertEquals(6, store.getTransactions().size());
+        assertEquals(hybridService.getPositions(), store.getPositions());
+        assertEquals(hybridService.getTrades(), store.getTrades());
+    }
+
+    @Test
+    void testFailedFlushIsRetriedInOrderAndBlocksIngestion() {
+        // Given - the database fails every attempt of a flush
+        hybridService.processTransactions(sampleTransactions.subList(0, 3));
+        doThrow(new IllegalStateException("database down")).when(store).persistState(any(), any(), any());
+
+        // When / Then - nothing is dropped, and new transactions are refused while it fails
+        assertThrows(IllegalStateException.class, hybridService::flush);
+        assertThrows(IllegalStateException.class, () -> hybridService.processTransaction(sampleTransactions.get(3)));
+        assertTrue(store.getTransactions().isEmpty());
+
+        // When - the database recovers
+        reset(store);
+        hybridService.flush();
+        hybridService.processTransaction(sampleTransactions.get(3));
+        hybridService.flush();
+
+        // Then
+        assertEquals(List.of(1L, 2L, 3L, 4L), store.getTransactions().stream().map(Transaction::getTransactionId).toList());
+        assertEquals(hybridService.getPositions(), store.getPositions());
+    }
+}
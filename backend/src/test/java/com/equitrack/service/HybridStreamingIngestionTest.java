@@ -0,0 +1,92 @@
+package com.equitrack.service;
+
+import com.equitrack.model.Position;
+import com.equitrack.model.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+
+@SpringBootTest(properties = {"equitrack.engine.mode=hybrid", "equitrack.write-behind.flush-interval-ms=3600000",
+        "equitrack.ingest.chunk-size=3"})
+@ActiveProfiles("test")
+public class HybridStreamingIngestionTest {
+
+    @Autowired
+    private StreamingIngestionService ingestionService;
+
+    @Autowired
+    private HybridPositionService hybridService;
+
+    @Autowired
+    private PositionServiceJPA store;
+
+    @SpyBean
+    private PositionService engine;
+
+    @BeforeEach
+    void setUp() {
+        hybridService.clear();
+    }
+
+    private static InputStream body(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String csv() {
+        return String.join("\n",
+                "1,1,1,REL,50,INSERT,Buy",
+                "2,2,1," + "X".repeat(300) + ",40,INSERT,Sell",
+                "3,3,1,INF,70,INSERT,Buy",
+                "");
+    }
+
+    @Test
+    void testBadRowInTheMiddleOfAChunkIsIsolated() throws Exception {
+        // When - the middle row of the only chunk has a code the engine cannot take
+        StreamingIngestionService.IngestionSummary summary =
+                ingestionService.ingest(body(csv()), StreamingIngestionService.Format.CSV);
+        hybridService.flush();
+
+        // Then - only that row is rejected, and the database matches the engine
+        assertEquals(2, summary.getProcessed());
+        assertEquals(1, summary.getRejected());
+        assertTrue(summary.getErrors().get(0).startsWith("Line 2: Transaction 2: Security code too long"),
+                summary.getErrors().get(0));
+        assertEquals(Optional.of(new Position("REL", 50L)), hybridService.getPositionBySecurityCode("REL"));
+        assertEquals(Optional.of(new Position("INF", 70L)), hybridService.getPositionBySecurityCode("INF"));
+        assertEquals(hybridService.getPositions(), store.getPositions());
+        assertEquals(List.of(1L, 3L), store.getTransactions().stream().map(Transaction::getTransactionId).toList());
+    }
+
+    @Test
+    void testRowsAppliedBeforeAnEngineFailureAreNotReportedAsDuplicates() throws Exception {
+        // Given - the engine fails on the middle row after taking the first
+        String rows = csv().replace("X".repeat(300), "ITC");
+        doThrow(new IllegalStateException("engine failure"))
+                .when(engine).processTransaction(argThat(transaction -> transaction.getTransactionId() == 2L));
+
+        // When
+        StreamingIngestionService.IngestionSummary summary =
+                ingestionService.ingest(body(rows), StreamingIngestionService.Format.CSV);
+        hybridService.flush();
+
+        // Then - the applied first row counts as processed, not as a duplicate
+        assertEquals(2, summary.getProcessed());
+        assertEquals(List.of("Line 2: Transaction 2: engine failure"), summary.getErrors());
+        assertEquals(hybridService.getPositions(), store.getPositions());
+        assertEquals(List.of(1L, 3L), store.getTransactions().stream().map(Transaction::getTransactionId).toList());
+    }
+}
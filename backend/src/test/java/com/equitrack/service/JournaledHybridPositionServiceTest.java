@@ -0,0 +1,162 @@
+package com.equitrack.service;
+
+import com.equitrack.model.Position;
+import com.equitrack.model.Trade;
+import com.equitrack.model.Transaction;
+import com.equitrack.model.TransactionAction;
+import com.equitrack.model.TransactionSide;
+import com.equitrack.journal.TransactionJournal;
+import com.equitrack.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    // Its own database, so rows left by other test contexts are not mistaken for data the journal lacks
+    "spring.datasource.url=jdbc:h2:mem:journaltest",
+    "equitrack.engine.mode=hybrid",
+    "equitrack.journal.enabled=true",
+    "equitrack.journal.directory=target/test-journal",
+    "equitrack.journal.region-size-mb=1",
+    "equitrack.journal.fsync=always",
+    "equitrack.snapshot.enabled=true",
+    "equitrack.snapshot.directory=target/test-snapshots",
+    "equitrack.snapshot.interval-ms=0",
+    "equitrack.snapshot.every-transactions=0"
+})
+@ActiveProfiles("test")
+public class JournaledHybridPositionServiceTest {
+
+    @Autowired
+    private HybridPositionService hybridService;
+
+    @Autowired
+    private PositionServiceJPA store;
+
+    @Autowired
+    private TransactionJournal journal;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @BeforeEach
+    void setUp() {
+        hybridService.clear();
+    }
+
+    @Test
+    void testRebuildReplaysJournalAfterDatabaseLoss() {
+        // Given
+        hybridService.processTransactions(List.of(
+            new Transaction(1L, 1L, 1, "REL", 50, TransactionAction.INSERT, TransactionSide.Buy),
+            new Transaction(2L, 2L, 1, "ITC", 40, TransactionAction.INSERT, TransactionSide.Sell),
+            new Transaction(3L, 3L, 1, "INF", 70, TransactionAction.INSERT, TransactionSide.Buy)
+        ));
+        hybridService.processTransaction(new Transaction(4L, 1L, 2, "REL", 60, TransactionAction.UPDATE, TransactionSide.Buy));
+        hybridService.deleteTrade(3L);
+        List<Position> positions = hybridService.getPositions();
+        List<Trade> trades = hybridService.getTrades();
+
+        // When - the database is lost and the engine restarts
+        hybridService.flush();
+        store.clear();
+        hybridService.rebuild();
+
+        // Then - memory and database are rebuilt from the journal
+        assertEquals(positions, hybridService.getPositions());
+        assertEquals(trades, hybridService.getTrades());
+        assertEquals(Optional.of(new Position("REL", 60L)), store.getPositionBySecurityCode("REL"));
+        assertFalse(store.getTradeById(3L).isPresent());
+        assertEquals(4, store.getTransactions().size());
+        assertThrows(IllegalArgumentException.class, () -> {
+            hybridService.processTransaction(new Transaction(4L, 5L, 1, "REL", 1, TransactionAction.INSERT, TransactionSide.Buy));
+        });
+    }
+
+    @Test
+    void testClearResetsJournal() {
+        // Given
+        hybridService.processTransaction(new Transaction(1L, 1L, 1, "REL", 50, TransactionAction.INSERT, TransactionSide.Buy));
+
+        // When
+        hybridService.clear();
+        hybridService.rebuild();
+
+        // Then
+        assertTrue(hybridService.getTrades().isEmpty());
+        assertTrue(hybridService.getPositions().isEmpty());
+    }
+
+    @Test
+    void testRebuildLoadsSnapshotAndReplaysTail() {
+        // Given - state before the snapshot, including an early version waiting for its gap
+        hybridService.processTransactions(List.of(
+            new Transaction(1L, 1L, 1, "REL", 50, TransactionAction.INSERT, TransactionSide.Buy),
+            new Transaction(2L, 2L, 1, "ITC", 40, TransactionAction.INSERT, TransactionSide.Sell),
+            new Transaction(3L, 3L, 3, "INF", 90, TransactionAction.UPDATE, TransactionSide.Buy)
+        ));
+        hybridService.takeSnapshot();
+
+        // And the journal tail written after it
+        hybridService.processTransaction(new Transaction(4L, 3L, 1, "INF", 70, TransactionAction.INSERT, TransactionSide.Buy));
+        hybridService.processTransaction(new Transaction(5L, 1L, 2, "REL", 60, TransactionAction.UPDATE, TransactionSide.Buy));
+        hybridService.processTransaction(new Transaction(6L, 3L, 2, "INF", 80, TransactionAction.UPDATE, TransactionSide.Buy));
+        hybridService.deleteTrade(2L);
+        List<Position> positions = hybridService.getPositions();
+        List<Trade> trades = hybridService.getTrades();
+
+        // When
+        hybridService.flush();
+        store.clear();
+        hybridService.rebuild();
+
+        // Then
+        assertEquals(positions, hybridService.getPositions());
+        assertEquals(trades, hybridService.getTrades());
+        assertEquals(Optional.of(new Position("INF", 90L)), hybridService.getPositionBySecurityCode("INF"));
+        assertEquals(positions, store.getPositions());
+        assertEquals(6, store.getTransactions().size());
+        assertThrows(IllegalArgumentException.class, () -> {
+            hybridService.processTransaction(new Transaction(2L, 9L, 1, "REL", 1, TransactionAction.INSERT, TransactionSide.Buy));
+        });
+    }
+
+    @Test
+    void testRestartOnlyStoresJournalTail() {
+        // Given - stored rows, and a journal record the database never got
+        hybridService.processTransactions(List.of(
+            new Transaction(1L, 1L, 1, "REL", 50, TransactionAction.INSERT, TransactionSide.Buy),
+            new Transaction(2L, 2L, 1, "ITC", 40, TransactionAction.INSERT, TransactionSide.Sell)
+        ));
+        hybridService.flush();
+        Long rowId = transactionRepository.findIdByTransactionId(1L).orElseThrow();
+        journal.append(new Transaction(3L, 1L, 2, "REL", 70, TransactionAction.UPDATE, TransactionSide.Buy));
+
+        // When
+        hybridService.rebuild();
+
+        // Then - the stored rows are kept as they are and the tail is added behind them
+        assertEquals(rowId, transactionRepository.findIdByTransactionId(1L).orElseThrow());
+        assertEquals(3, store.getTransactions().size());
+        assertEquals(Optional.of(new Position("REL", 70L)), store.getPositionBySecurityCode("REL"));
+        assertEquals(hybridService.getPositions(), store.getPositions());
+        assertEquals(journal.getPosition(), store.getJournalOffset().orElseThrow());
+    }
+
+    @Test
+    void testRebuildRefusesDataTheJournalDoesNotCover() {
+        // Given - rows written straight to the database, with an empty journal
+        store.processTransaction(new Transaction(1L, 1L, 1, "REL", 50, TransactionAction.INSERT, TransactionSide.Buy));
+
+        // When / Then - the rows are neither wiped nor silently kept out of the engine
+        assertThrows(IllegalStateException.class, () -> hybridService.rebuild());
+        assertEquals(1, store.getTransactions().size());
+    }
+}
@@ -0,0 +1,77 @@
+package com.equitrack.service;
+
+import com.equitrack.EquiTrackApplication;
+import com.equitrack.model.Position;
+import com.equitrack.model.Transaction;
+import com.equitrack.model.TransactionAction;
+import com.equitrack.model.TransactionSide;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedEngineRestartTest {
+
+    @TempDir
+    Path directory;
+
+    private ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(EquiTrackApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:file:" + directory.resolve("db").toAbsolutePath(),
+                        "--equitrack.engine.mode=hybrid",
+                        "--equitrack.engine.storage=off-heap",
+                        "--equitrack.engine.storage-directory=" + directory.resolve("engine"),
+                        "--equitrack.journal.enabled=true",
+                        "--equitrack.journal.directory=" + directory.resolve("journal"),
+                        "--equitrack.journal.region-size-mb=1",
+                        "--logging.level.com.equitrack=WARN");
+    }
+
+    @Test
+    void testEngineResumesFromMappedFilesAndJournalTail() {
+        // Given - state checkpointed on shutdown
+        try (ConfigurableApplicationContext context = start()) {
+            PositionManager positionManager = context.getBean(PositionManager.class);
+            positionManager.clear();
+            positionManager.processTransactions(List.of(
+                new Transaction(1L, 1L, 1, "REL", 50, TransactionAction.INSERT, TransactionSide.Buy),
+                new Transaction(2L, 2L, 1, "ITC", 40, TransactionAction.INSERT, TransactionSide.Sell),
+                new Transaction(3L, 1L, 2, "REL", 60, TransactionAction.UPDATE, TransactionSide.Buy)
+            ));
+        }
+        assertTrue(Files.exists(directory.resolve("engine").resolve("engine.checkpoint")));
+
+        // When - restarted, then stopped without a checkpoint after one more transaction
+        try (ConfigurableApplicationContext context = start()) {
+            PositionManager positionManager = context.getBean(PositionManager.class);
+            assertFalse(Files.exists(directory.resolve("engine").resolve("engine.checkpoint")));
+            assertEquals(List.of(new Position("ITC", -40L), new Position("REL", 60L)), positionManager.getPositions());
+            assertEquals(2, positionManager.getTrades().size());
+
+            positionManager.processTransaction(new Transaction(4L, 3L, 1, "INF", 70, TransactionAction.INSERT, TransactionSide.Buy));
+            // A held early transaction keeps the next shutdown from checkpointing
+            positionManager.processTransaction(new Transaction(5L, 3L, 3, "INF", 90, TransactionAction.UPDATE, TransactionSide.Buy));
+        }
+        assertFalse(Files.exists(directory.resolve("engine").resolve("engine.checkpoint")));
+
+        // Then - the next start rebuilds everything from the journal
+        try (ConfigurableApplicationContext context = start()) {
+            PositionManager positionManager = context.getBean(PositionManager.class);
+            assertEquals(List.of(new Position("INF", 70L), new Position("ITC", -40L), new Position("REL", 60L)),
+                    positionManager.getPositions());
+            assertEquals(1, positionManager.getPendingCount());
+            // The database kept its rows across every restart
+            PositionServiceJPA store = context.getBean(PositionServiceJPA.class);
+            assertEquals(positionManager.getPositions(), store.getPositions());
+            assertEquals(5, store.getTransactions().size());
+        }
+    }
+}
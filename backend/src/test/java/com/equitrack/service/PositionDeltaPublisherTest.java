@@ -0,0 +1,232 @@
+package com.equitrack.service;
+
+import com.equitrack.model.Position;
+import com.equitrack.model.Transaction;
+import com.equitrack.model.TransactionAction;
+import com.equitrack.model.TransactionSide;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest(properties = {
+    "equitrack.push.interval-ms=3600000",
+    "equitrack.push.max-rate=0",
+    "equitrack.push.buffer-size=2"
+})
+@ActiveProfiles("test")
+public class PositionDeltaPublisherTest {
+
+    @Autowired
+    private PositionDeltaPublisher publisher;
+
+    @SpyBean
+    private PositionManager positionManager;
+
+    private final List<String> eventNames = new ArrayList<>();
+    private final List<PositionDeltaPublisher.PositionUpdate> updates = new ArrayList<>();
+    private final CountDownLatch released = new CountDownLatch(1);
+    private volatile boolean blockDeltas;
+
+    private final PositionDeltaPublisher.Subscriber subscriber = (name, update) -> {
+        if (blockDeltas && name.equals(PositionDeltaPublisher.DELTA_EVENT)) {
+            // A slow client: the first delta does not finish writing until released
+            blockDeltas = false;
+            record(name, update);
+            try {
+                released.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+        record(name, update);
+    };
+
+    private synchronized void record(String name, PositionDeltaPublisher.PositionUpdate update) {
+        eventNames.add(name);
+        updates.add(update);
+        notifyAll();
+    }
+
+    private synchronized void awaitEvents(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (eventNames.size() < count && System.currentTimeMillis() < deadline) {
+            wait(100);
+        }
+        assertEquals(count, eventNames.size(), "events received: " + eventNames);
+    }
+
+    /**
+     * Keep pushing until the subscriber's in-flight send has returned and the next one arrived
+     */
+    private synchronized void publishUntilEvents(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (eventNames.size() < count && System.currentTimeMillis() < deadline) {
+            publisher.publish();
+            wait(50);
+        }
+        assertEquals(count, eventNames.size(), "events received: " + eventNames);
+    }
+
+    private void insert(long id, String securityCode, int quantity, TransactionSide side) {
+        positionManager.processTransaction(new Transaction(id, id, 1, securityCode, quantity, TransactionAction.INSERT, side));
+    }
+
+    @BeforeEach
+    void setUp() {
+        positionManager.clear();
+        insert(1L, "REL", 50, TransactionSide.Buy);
+        publisher.publish();
+    }
+
+    @AfterEach
+    void tearDown() {
+        released.countDown();
+        publisher.unsubscribe(subscriber);
+    }
+
+    @Test
+    void testSubscriberGetsSnapshotThenCoalescedDeltas() throws Exception {
+        // Given
+        publisher.subscribe(subscriber, 0);
+        awaitEvents(1);
+
+        // When - several changes to the same security between two pushes
+        positionManager.processTransaction(new Transaction(2L, 1L, 2, "REL", 60, TransactionAction.UPDATE, TransactionSide.Buy));
+        insert(3L, "REL", 10, TransactionSide.Sell);
+        positionManager.processTransactions(List.of(
+            new Transaction(4L, 4L, 1, "ITC", 40, TransactionAction.INSERT, TransactionSide.Sell),
+            new Transaction(5L, 5L, 1, "ITC", 15, TransactionAction.INSERT, TransactionSide.Buy)
+        ));
+        publisher.publish();
+        awaitEvents(2);
+        publisher.publish();
+
+        // Then
+        assertEquals(List.of(PositionDeltaPublisher.SNAPSHOT_EVENT, PositionDeltaPublisher.DELTA_EVENT), eventNames);
+        assertEquals(List.of(new Position("REL", 50L)), updates.get(0).getPositions());
+
+        PositionDeltaPublisher.PositionUpdate delta = updates.get(1);
+        assertEquals(updates.get(0).getSequence() + 1, delta.getSequence());
+        List<Position> positions = new ArrayList<>(delta.getPositions());
+        positions.sort(Comparator.comparing(Position::getSecurityCode));
+        assertEquals(List.of(new Position("ITC", -25L), new Position("REL", 50L)), positions);
+        assertTrue(delta.getRemoved().isEmpty());
+    }
+
+    @Test
+    void testChangedSecuritiesAreReadInOneCall() throws Exception {
+        // Given
+        publisher.subscribe(subscriber, 0);
+        awaitEvents(1);
+        insert(2L, "ITC", 40, TransactionSide.Sell);
+        insert(3L, "INF", 70, TransactionSide.Buy);
+        positionManager.deletePosition("REL");
+        clearInvocations(positionManager);
+
+        // When
+        publisher.publish();
+        awaitEvents(2);
+
+        // Then - one read for every changed security, none per security
+        verify(positionManager).getPositionsBySecurityCodes(Set.of("REL", "ITC", "INF"));
+        verify(positionManager, never()).getPositionBySecurityCode(any());
+        PositionDeltaPublisher.PositionUpdate delta = updates.get(1);
+        List<Position> positions = new ArrayList<>(delta.getPositions());
+        positions.sort(Comparator.comparing(Position::getSecurityCode));
+        assertEquals(List.of(new Position("INF", 70L), new Position("ITC", -40L)), positions);
+        assertEquals(List.of("REL"), delta.getRemoved());
+    }
+
+    @Test
+    void testDeletionsAndResetArePushed() throws Exception {
+        // Given
+        publisher.subscribe(subscriber, 0);
+        awaitEvents(1);
+
+        // When
+        positionManager.deletePosition("REL");
+        publisher.publish();
+        awaitEvents(2);
+        positionManager.clear();
+        publisher.publish();
+        awaitEvents(3);
+
+        // Then
+        assertEquals(List.of(PositionDeltaPublisher.SNAPSHOT_EVENT, PositionDeltaPublisher.DELTA_EVENT,
+                PositionDeltaPublisher.SNAPSHOT_EVENT), eventNames);
+        assertEquals(List.of("REL"), updates.get(1).getRemoved());
+        assertTrue(updates.get(1).getPositions().isEmpty());
+        assertTrue(updates.get(2).getPositions().isEmpty());
+        assertEquals(updates.get(1).getSequence() + 1, updates.get(2).getSequence());
+    }
+
+    @Test
+    void testSlowSubscriberGetsConflatedDelta() throws Exception {
+        // Given - a subscriber stuck writing its first delta
+        publisher.subscribe(subscriber, 0);
+        awaitEvents(1);
+        blockDeltas = true;
+        insert(2L, "ITC", 40, TransactionSide.Sell);
+        publisher.publish();
+        awaitEvents(2);
+
+        // When - two more pushes are buffered while it is stuck
+        insert(3L, "ITC", 10, TransactionSide.Buy);
+        publisher.publish();
+        insert(4L, "INF", 70, TransactionSide.Buy);
+        publisher.publish();
+        released.countDown();
+        publishUntilEvents(3);
+
+        // Then - they arrive as one delta with the latest quantities
+        assertEquals(PositionDeltaPublisher.DELTA_EVENT, eventNames.get(2));
+        PositionDeltaPublisher.PositionUpdate conflated = updates.get(2);
+        assertEquals(updates.get(1).getSequence() + 2, conflated.getSequence());
+        List<Position> positions = new ArrayList<>(conflated.getPositions());
+        positions.sort(Comparator.comparing(Position::getSecurityCode));
+        assertEquals(List.of(new Position("INF", 70L), new Position("ITC", -30L)), positions);
+    }
+
+    @Test
+    void testSubscriberThatFallsBehindIsResynced() throws Exception {
+        // Given - a subscriber stuck writing its first delta
+        publisher.subscribe(subscriber, 0);
+        awaitEvents(1);
+        long resyncs = publisher.getResyncCount();
+        blockDeltas = true;
+        insert(2L, "ITC", 40, TransactionSide.Sell);
+        publisher.publish();
+        awaitEvents(2);
+
+        // When - more pushes than its buffer holds
+        for (long id = 3; id <= 6; id++) {
+            insert(id, "SEC" + id, 10, TransactionSide.Buy);
+            publisher.publish();
+        }
+        released.countDown();
+        publishUntilEvents(3);
+
+        // Then - the backlog is replaced by the full book
+        assertEquals(PositionDeltaPublisher.RESYNC_EVENT, eventNames.get(2));
+        assertEquals(positionManager.getPositions(), updates.get(2).getPositions());
+        assertEquals(resyncs + 1, publisher.getResyncCount());
+    }
+}
@@ -0,0 +1,159 @@
+package com.equitrack.service;
+
+import com.equitrack.model.Position;
+import com.equitrack.model.Transaction;
+import com.equitrack.model.TransactionAction;
+import com.equitrack.model.TransactionSide;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"equitrack.history.every-transactions=2", "equitrack.history.check-interval-ms=3600000"})
+@ActiveProfiles("test")
+public class PositionHistoryTest {
+
+    @Autowired
+    private PositionHistory positionHistory;
+
+    @Autowired
+    private PositionServiceJPA positionService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        positionService.clear();
+    }
+
+    @Test
+    void testPositionsAsOfEachTransaction() {
+        // Given - REL 10 then updated to 30, ITC -20 then cancelled, INF +7, REL -5
+        positionService.processTransaction(new Transaction(1L, 1L, 1, "REL", 10, TransactionAction.INSERT, TransactionSide.Buy));
+        positionService.processTransaction(new Transaction(2L, 2L, 1, "ITC", 20, TransactionAction.INSERT, TransactionSide.Sell));
+        positionService.processTransaction(new Transaction(3L, 1L, 2, "REL", 30, TransactionAction.UPDATE, TransactionSide.Buy));
+        positionService.processTransaction(new Transaction(4L, 3L, 1, "INF", 7, TransactionAction.INSERT, TransactionSide.Buy));
+        positionService.processTransaction(new Transaction(5L, 2L, 2, "ITC", 20, TransactionAction.CANCEL, TransactionSide.Sell));
+        positionService.processTransaction(new Transaction(6L, 4L, 1, "REL", 5, TransactionAction.INSERT, TransactionSide.Sell));
+        List<List<Position>> expected = List.of(
+                List.of(new Position("REL", 10L)),
+                List.of(new Position("ITC", -20L), new Position("REL", 10L)),
+                List.of(new Position("ITC", -20L), new Position("REL", 30L)),
+                List.of(new Position("INF", 7L), new Position("ITC", -20L), new Position("REL", 30L)),
+                List.of(new Position("INF", 7L), new Position("ITC", 0L), new Position("REL", 30L)),
+                List.of(new Position("INF", 7L), new Position("ITC", 0L), new Position("REL", 25L)));
+
+        // When / Then - replayed from the start, then from checkpoints (built one check behind)
+        assertAsOfEachTransaction(expected);
+        positionHistory.checkpoint();
+        positionHistory.checkpoint();
+        assertAsOfEachTransaction(expected);
+        assertEquals(positionService.getPositions(), positionHistory.getPositionsAsOfTransaction(6L).orElseThrow());
+        assertEquals(Optional.empty(), positionHistory.getPositionsAsOfTransaction(99L));
+    }
+
+    private void assertAsOfEachTransaction(List<List<Position>> expected) {
+        for (int i = 0; i < expected.size(); i++) {
+            long transactionId = i + 1;
+            assertEquals(expected.get(i), positionHistory.getPositionsAsOfTransaction(transactionId).orElseThrow(),
+                    "as of transaction " + transactionId);
+        }
+    }
+
+    @Test
+    void testPositionsAsOfTime()throws InterruptedException {
+        // Given - two batches recorded either side of a time
+        LocalDateTime beforeAll = LocalDateTime.now().minusSeconds(1);
+        List<Transaction> first = new ArrayList<>();
+        first.add(new Transaction(1L, 1L, 1, "REL", 10, TransactionAction.INSERT, TransactionSide.Buy));
+        first.add(new Transaction(2L, 2L, 1, "ITC", 20, TransactionAction.INSERT, TransactionSide.Sell));
+        first.add(new Transaction(3L, 3L, 1, "REL", 5, TransactionAction.INSERT, TransactionSide.Buy));
+        positionService.processTransactions(first);
+        Thread.sleep(50);
+        LocalDateTime between = LocalDateTime.now();
+        Thread.sleep(50);
+        List<Transaction> second = new ArrayList<>();
+        second.add(new Transaction(4L, 1L, 2, "REL", 10, TransactionAction.CANCEL, TransactionSide.Buy));
+        second.add(new Transaction(5L, 4L, 1, "INF", 7, TransactionAction.INSERT, TransactionSide.Buy));
+        second.add(new Transaction(6L, 5L, 1, "ITC", 4, TransactionAction.INSERT, TransactionSide.Buy));
+        positionService.processTransactions(second);
+        List<Position> atBetween = List.of(new Position("ITC", -20L), new Position("REL", 15L));
+
+        // When / Then
+        assertEquals(atBetween, positionHistory.getPositionsAsOf(between));
+        assertEquals(List.of(), positionHistory.getPositionsAsOf(beforeAll));
+        assertEquals(positionService.getPositions(), positionHistory.getPositionsAsOf(LocalDateTime.now().plusSeconds(1)));
+
+        // Then - the same once checkpoints bound the search
+        positionHistory.checkpoint();
+        positionHistory.checkpoint();
+        assertEquals(atBetween, positionHistory.getPositionsAsOf(between));
+        assertEquals(List.of(), positionHistory.getPositionsAsOf(beforeAll));
+        assertEquals(positionService.getPositions(), positionHistory.getPositionsAsOf(LocalDateTime.now().plusSeconds(1)));
+    }
+
+    @Test
+    void testRewritingHistoryDropsCheckpoints() {
+        // Given - checkpoints over four transactions
+        for (long id = 1; id <= 4; id++) {
+            positionService.processTransaction(new Transaction(id, id, 1, "REL", 10, TransactionAction.INSERT, TransactionSide.Buy));
+        }
+        positionHistory.checkpoint();
+        positionHistory.checkpoint();
+
+        // When - a transaction is deleted, then everything is cleared and reloaded
+        positionService.deleteTransaction(1L);
+        List<Position> afterDelete = positionHistory.getPositionsAsOfTransaction(4L).orElseThrow();
+        positionService.clear();
+        positionService.processTransaction(new Transaction(1L, 1L, 1, "ITC", 3, TransactionAction.INSERT, TransactionSide.Sell));
+
+        // Then - nothing is served from the old checkpoints
+        assertEquals(List.of(new Position("REL", 30L)), afterDelete);
+        assertEquals(List.of(new Position("ITC", -3L)), positionHistory.getPositionsAsOfTransaction(1L).orElseThrow());
+    }
+
+    @Test
+    void testCheckpointsWaitForSlowTransactions() throws Exception {
+        // Given - a database transaction that writes the lowest row and commits after later ones
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> slow = CompletableFuture.runAsync(() -> new TransactionTemplate(transactionManager)
+                .executeWithoutResult(status -> {
+                    positionService.processTransaction(new Transaction(1L, 1L, 1, "REL", 10, TransactionAction.INSERT, TransactionSide.Buy));
+                    written.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+        assertTrue(written.await(10, TimeUnit.SECONDS));
+        for (long id = 2; id <= 5; id++) {
+            positionService.processTransaction(new Transaction(id, id, 1, "ITC", 1, TransactionAction.INSERT, TransactionSide.Buy));
+        }
+
+        // When - checkpoints are built while it is still open, then it commits
+        positionHistory.checkpoint();
+        positionHistory.checkpoint();
+        release.countDown();
+        slow.get(10, TimeUnit.SECONDS);
+
+        // Then - its row is not lost behind a checkpoint
+        assertEquals(List.of(new Position("ITC", 4L), new Position("REL", 10L)),
+                positionHistory.getPositionsAsOfTransaction(5L).orElseThrow());
+    }
+}
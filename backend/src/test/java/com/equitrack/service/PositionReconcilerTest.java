@@ -0,0 +1,90 @@
+package com.equitrack.service;
+
+import com.equitrack.model.Position;
+import com.equitrack.model.Transaction;
+import com.equitrack.model.TransactionAction;
+import com.equitrack.model.TransactionSide;
+import com.equitrack.repository.PositionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "equitrack.reconciliation.chunk-size=3")
+@ActiveProfiles("test")
+public class PositionReconcilerTest {
+
+    @Autowired
+    private PositionReconciler reconciler;
+
+    @Autowired
+    private PositionServiceJPA positionService;
+
+    @Autowired
+    private PositionRepository positionRepository;
+
+    @BeforeEach
+    void setUp() {
+        positionService.clear();
+        // REL +10 -5 +10 (one more cancelled), ITC -20 +5, INF +7: spread over several chunks of 3 trades
+        List<Transaction> transactions = new ArrayList<>();
+        transactions.add(new Transaction(1L, 1L, 1, "REL", 10, TransactionAction.INSERT, TransactionSide.Buy));
+        transactions.add(new Transaction(2L, 2L, 1, "ITC", 20, TransactionAction.INSERT, TransactionSide.Sell));
+        transactions.add(new Transaction(3L, 3L, 1, "REL", 5, TransactionAction.INSERT, TransactionSide.Sell));
+        transactions.add(new Transaction(4L, 4L, 1, "INF", 7, TransactionAction.INSERT, TransactionSide.Buy));
+        transactions.add(new Transaction(5L, 5L, 1, "ITC", 5, TransactionAction.INSERT, TransactionSide.Buy));
+        transactions.add(new Transaction(6L, 6L, 1, "REL", 10, TransactionAction.INSERT, TransactionSide.Buy));
+        transactions.add(new Transaction(7L, 7L, 1, "REL", 99, TransactionAction.INSERT, TransactionSide.Buy));
+        transactions.add(new Transaction(8L, 7L, 2, "REL", 99, TransactionAction.CANCEL, TransactionSide.Buy));
+        positionService.processTransactions(transactions);
+    }
+
+    @Test
+    void testConsistentPositionsHaveNoDrift() {
+        // When
+        PositionReconciler.Report report = reconciler.reconcile(false).orElseThrow();
+
+        // Then
+        assertEquals(0, report.getDriftCount());
+        assertEquals(3, report.getSecuritiesChecked());
+        assertEquals(6, report.getTradesScanned());
+        assertEquals(3, report.getChunks());
+    }
+
+    @Test
+    void testDriftIsReportedAndRepaired() {
+        // Given - one position deleted and one edited behind the engine's back
+        positionService.deletePosition("REL");
+        com.equitrack.entity.Position itc = positionRepository.findBySecurityCode("ITC").orElseThrow();
+        itc.setQuantity(100L);
+        positionRepository.save(itc);
+
+        // When
+        PositionReconciler.Report reported = reconciler.reconcile(false).orElseThrow();
+
+        // Then - reported without touching the positions
+        assertEquals(2, reported.getDriftCount());
+        assertEquals("ITC", reported.getDrifts().get(0).getSecurityCode());
+        assertEquals(100L, reported.getDrifts().get(0).getStoredQuantity());
+        assertEquals(-15L, reported.getDrifts().get(0).getExpectedQuantity());
+        assertEquals("REL", reported.getDrifts().get(1).getSecurityCode());
+        assertEquals(0L, reported.getDrifts().get(1).getStoredQuantity());
+        assertFalse(reported.getDrifts().get(1).isRepaired());
+        assertEquals(List.of(new Position("INF", 7L), new Position("ITC", 100L)), positionService.getPositions());
+
+        // When - repairing
+        PositionReconciler.Report repaired = reconciler.reconcile(true).orElseThrow();
+
+        // Then
+        assertEquals(2, repaired.getRepairedCount());
+        assertEquals(List.of(new Position("INF", 7L), new Position("ITC", -15L), new Position("REL", 15L)),
+                positionService.getPositions());
+        assertEquals(0, reconciler.reconcile(false).orElseThrow().getDriftCount());
+    }
+}
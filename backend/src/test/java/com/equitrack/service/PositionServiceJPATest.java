@@ -8,15 +8,30 @@ import com.equitrack.model.TransactionSide;
 import com.equitrack.repository.PositionRepository;
 import com.equitrack.repository.TradeRepository;
 import com.equitrack.repository.TransactionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -37,6 +52,15 @@ public class PositionServiceJPATest {
     @Autowired
     private PositionRepository positionRepository;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @BeforeEach
     void setUp() {
         // Clear all data before each test
@@ -312,4 +336,195 @@ public class PositionServiceJPATest {
             positionService.processTransaction(transaction2);
         });
     }
+
+    @Test
+    void testBulkProcessingMatchesInMemoryReplay() {
+        // Given - a mixed workload of inserts, updates and cancels across a few securities
+        Random random = new Random(42);
+        String[] securities = {"REL", "ITC", "INF", "TCS", "HDFC"};
+        List<com.equitrack.model.Transaction> transactions = new ArrayList<>();
+        long transactionId = 1;
+        for (long tradeId = 1; tradeId <= 500; tradeId++) {
+            transactions.add(new com.equitrack.model.Transaction(transactionId++, tradeId, 1,
+                securities[random.nextInt(securities.length)], 1 + random.nextInt(100),
+                TransactionAction.INSERT, random.nextBoolean() ? TransactionSide.Buy : TransactionSide.Sell));
+            int versions = random.nextInt(3);
+            for (int version = 2; version <= versions + 1; version++) {
+                TransactionAction action = version == versions + 1 && random.nextInt(4) == 0
+                    ? TransactionAction.CANCEL : TransactionAction.UPDATE;
+                transactions.add(new com.equitrack.model.Transaction(transactionId++, tradeId, version,
+                    securities[random.nextInt(securities.length)], 1 + random.nextInt(100),
+                    action, random.nextBoolean() ? TransactionSide.Buy : TransactionSide.Sell));
+            }
+        }
+        Collections.shuffle(transactions, random);
+
+        PositionService expected = new PositionService();
+        expected.processTransactions(transactions);
+
+        // When
+        positionService.processTransactions(transactions);
+
+        // Then
+        Map<String, Long> expectedPositions = new HashMap<>();
+        expected.getPositions().forEach(p -> expectedPositions.put(p.getSecurityCode(), p.getQuantity()));
+        Map<String, Long> actualPositions = new HashMap<>();
+        positionService.getPositions().forEach(p -> actualPositions.put(p.getSecurityCode(), p.getQuantity()));
+        assertEquals(expectedPositions, actualPositions);
+        assertEquals(transactions.size(), positionService.getTransactions().size());
+        assertEquals(500, positionService.getTrades().size());
+    }
+
+    @Test
+    void testBulkProcessingRejectsDuplicateTransactionId() {
+        // Given
+        positionService.processTransaction(new com.equitrack.model.Transaction(
+            1L, 1L, 1, "REL", 50, TransactionAction.INSERT, TransactionSide.Buy
+        ));
+
+        List<com.equitrack.model.Transaction> batch = List.of(
+            new com.equitrack.model.Transaction(2L, 2L, 1, "ITC", 40, TransactionAction.INSERT, TransactionSide.Sell),
+            new com.equitrack.model.Transaction(1L, 3L, 1, "INF", 70, TransactionAction.INSERT, TransactionSide.Buy)
+        );
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> {
+            positionService.processTransactions(batch);
+        });
+    }
+
+    @Test
+    void testOutOfOrderUpdateIsAppliedAfterInsert() {
+        // Given - the update arrives before its insert
+        positionService.processTransaction(new com.equitrack.model.Transaction(
+            2L, 1L, 2, "REL", 60, TransactionAction.UPDATE, TransactionSide.Buy
+        ));
+        assertTrue(positionService.getPositions().isEmpty());
+
+        // When
+        positionService.processTransaction(new com.equitrack.model.Transaction(
+            1L, 1L, 1, "REL", 50, TransactionAction.INSERT, TransactionSide.Buy
+        ));
+
+        // Then
+        assertEquals(60L, positionService.getPositionBySecurityCode("REL").get().getQuantity());
+        assertEquals(2, positionService.getTradeById(1L).get().getCurrentVersion());
+        assertEquals(0, positionService.getPendingCount());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testHeldVersionsSurviveRollbackAndRestart() {
+        // Given - an update held for its insert
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        positionService.processTransaction(new com.equitrack.model.Transaction(
+            2L, 1L, 2, "REL", 60, TransactionAction.UPDATE, TransactionSide.Buy
+        ));
+
+        // When - the insert that takes it, and a later early version, are rolled back
+        transaction.executeWithoutResult(status -> {
+            positionService.processTransaction(new com.equitrack.model.Transaction(
+                1L, 1L, 1, "REL", 50, TransactionAction.INSERT, TransactionSide.Buy
+            ));
+            positionService.processTransaction(new com.equitrack.model.Transaction(
+                3L, 1L, 4, "REL", 70, TransactionAction.UPDATE, TransactionSide.Buy
+            ));
+            status.setRollbackOnly();
+        });
+
+        // Then - only the stored update is still held
+        assertEquals(1, positionService.getPendingCount());
+
+        // When - the service restarts, then the insert arrives
+        ((PositionServiceJPA) AopTestUtils.getTargetObject(positionService)).start();
+        assertEquals(1, positionService.getPendingCount());
+        positionService.processTransaction(new com.equitrack.model.Transaction(
+            1L, 1L, 1, "REL", 50, TransactionAction.INSERT, TransactionSide.Buy
+        ));
+
+        // Then
+        assertEquals(60L, positionService.getPositionBySecurityCode("REL").get().getQuantity());
+        assertEquals(0, positionService.getPendingCount());
+        positionService.clear();
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testHeldVersionsPastTheTtlAreNotReloaded() {
+        // Given - two held updates, one stored longer ago than the pending TTL
+        positionService.processTransaction(new com.equitrack.model.Transaction(
+            2L, 1L, 2, "REL", 60, TransactionAction.UPDATE, TransactionSide.Buy
+        ));
+        positionService.processTransaction(new com.equitrack.model.Transaction(
+            4L, 2L, 2, "ITC", 30, TransactionAction.UPDATE, TransactionSide.Sell
+        ));
+        jdbcTemplate.update("UPDATE transactions SET recorded_at = DATEADD('HOUR', -1, recorded_at) WHERE transaction_id = 2");
+
+        // When - the service restarts
+        ((PositionServiceJPA) AopTestUtils.getTargetObject(positionService)).start();
+
+        // Then - only the recent one is held again
+        assertEquals(1, positionService.getPendingCount());
+        positionService.processTransaction(new com.equitrack.model.Transaction(
+            3L, 2L, 1, "ITC", 20, TransactionAction.INSERT, TransactionSide.Sell
+        ));
+        assertEquals(-30L, positionService.getPositionBySecurityCode("ITC").get().getQuantity());
+        assertEquals(0, positionService.getPendingCount());
+        positionService.clear();
+    }
+
+    @Test
+    void testProcessingIsMetered() {
+        // Given
+        double inserts = meterRegistry.get("equitrack.transactions").tag("action", "insert").counter().count();
+        double duplicates = meterRegistry.get("equitrack.transactions.duplicate").counter().count();
+        com.equitrack.model.Transaction transaction = new com.equitrack.model.Transaction(
+            1L, 1L, 1, "REL", 50, TransactionAction.INSERT, TransactionSide.Buy
+        );
+
+        // When
+        positionService.processTransaction(transaction);
+        assertThrows(IllegalArgumentException.class, () -> positionService.processTransaction(transaction));
+
+        // Then
+        assertEquals(inserts + 1, meterRegistry.get("equitrack.transactions").tag("action", "insert").counter().count());
+        assertEquals(duplicates + 1, meterRegistry.get("equitrack.transactions.duplicate").counter().count());
+        assertTrue(meterRegistry.get("equitrack.transaction.process").tag("action", "insert").timer().count() > 0);
+        assertEquals(1.0, meterRegistry.get("equitrack.trades").gauge().value());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testConcurrentTransactionsOnOneSecurityLoseNoUpdates() throws Exception {
+        // Given - each call commits on its own thread; the position row already exists
+        positionService.processTransaction(new com.equitrack.model.Transaction(
+            1L, 1L, 1, "REL", 5, TransactionAction.INSERT, TransactionSide.Buy
+        ));
+        int threads = 4;
+        int perThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        // When
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long firstId = 2 + (long) t * perThread;
+            futures.add(executor.submit(() -> {
+                for (long id = firstId; id < firstId + perThread; id++) {
+                    positionService.processTransaction(new com.equitrack.model.Transaction(
+                        id, id, 1, "REL", 10, TransactionAction.INSERT,
+                        id % 2 == 0 ? TransactionSide.Buy : TransactionSide.Sell
+                    ));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Then - buys and sells cancel out exactly
+        assertEquals(5L, positionService.getPositionBySecurityCode("REL").get().getQuantity());
+        assertEquals(1 + threads * perThread, positionService.getTradeCount());
+        positionService.clear();
+    }
 }
@@ -5,11 +5,26 @@ import com.equitrack.model.Trade;
 import com.equitrack.model.Transaction;
 import com.equitrack.model.TransactionAction;
 import com.equitrack.model.TransactionSide;
+import com.equitrack.symbol.SymbolTable;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -156,4 +171,311 @@ public class PositionServiceTest {
         assertEquals(0, positionService.getPositions().size());
         assertEquals(0, positionService.getTrades().size());
     }
+
+    @Test
+    void testConcurrentProcessingMatchesSingleThreadedReplay() throws Exception {
+        // A few hot securities so every thread contends on the same position cells
+        String[] securities = {"AAPL", "MSFT", "GOOG"};
+        int threads = 8;
+        int tradesPerThread = 2_000;
+        Random random = new Random(7);
+
+        List<List<Transaction>> perThread = new ArrayList<>();
+        List<Transaction> all = new ArrayList<>();
+        long transactionId = 1;
+        for (int t = 0; t < threads; t++) {
+            List<Transaction> transactions = new ArrayList<>();
+            for (int i = 0; i < tradesPerThread; i++) {
+                long tradeId = (long) t * tradesPerThread + i + 1;
+                transactions.add(new Transaction(transactionId++, tradeId, 1, securities[random.nextInt(securities.length)],
+                        1 + random.nextInt(1_000_000), TransactionAction.INSERT, random.nextBoolean() ? TransactionSide.Buy : TransactionSide.Sell));
+                transactions.add(new Transaction(transactionId++, tradeId, 2, securities[random.nextInt(securities.length)],
+                        1 + random.nextInt(1_000_000), TransactionAction.UPDATE, random.nextBoolean() ? TransactionSide.Buy : TransactionSide.Sell));
+                if (random.nextInt(5) == 0) {
+                    transactions.add(new Transaction(transactionId++, tradeId, 3, securities[0],
+                            1, TransactionAction.CANCEL, TransactionSide.Buy));
+                }
+            }
+            perThread.add(transactions);
+            all.addAll(transactions);
+        }
+
+        // Single-threaded replay
+        PositionService expected = new PositionService();
+        all.forEach(expected::processTransaction);
+
+        // Concurrent ingestion, each thread owning its own trades
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (List<Transaction> transactions : perThread) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                transactions.forEach(positionService::processTransaction);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Map<String, Long> expectedPositions = new HashMap<>();
+        expected.getPositions().forEach(p -> expectedPositions.put(p.getSecurityCode(), p.getQuantity()));
+        Map<String, Long> actualPositions = new HashMap<>();
+        positionService.getPositions().forEach(p -> actualPositions.put(p.getSecurityCode(), p.getQuantity()));
+        assertEquals(expectedPositions, actualPositions);
+        assertEquals(threads * tradesPerThread, positionService.getTrades().size());
+    }
+
+    @Test
+    void testPositionsBeyondIntegerRange() {
+        positionService.processTransaction(new Transaction(1L, 1L, 1, "AAPL", Integer.MAX_VALUE, TransactionAction.INSERT, TransactionSide.Buy));
+        positionService.processTransaction(new Transaction(2L, 2L, 1, "AAPL", Integer.MAX_VALUE, TransactionAction.INSERT, TransactionSide.Buy));
+
+        assertEquals(2L * Integer.MAX_VALUE, positionService.getPositions().get(0).getQuantity());
+    }
+
+    @Test
+    void testUpdateBeforeInsertIsAppliedOnceInsertArrives() {
+        Transaction update = new Transaction(2L, 1L, 2, "AAPL", 150, TransactionAction.UPDATE, TransactionSide.Buy);
+        Transaction insert = new Transaction(1L, 1L, 1, "AAPL", 100, TransactionAction.INSERT, TransactionSide.Buy);
+
+        positionService.processTransaction(update);
+        assertTrue(positionService.getPositions().isEmpty());
+        assertEquals(1, positionService.getPendingCount());
+
+        positionService.processTransaction(insert);
+
+        assertEquals(150L, positionService.getPositions().get(0).getQuantity());
+        assertEquals(2, positionService.getTrades().get(0).getCurrentVersion());
+        assertEquals(0, positionService.getPendingCount());
+    }
+
+    @Test
+    void testVersionGapIsResolvedInVersionOrder() {
+        positionService.processTransaction(new Transaction(1L, 1L, 1, "AAPL", 100, TransactionAction.INSERT, TransactionSide.Buy));
+        positionService.processTransaction(new Transaction(4L, 1L, 4, "AAPL", 10, TransactionAction.CANCEL, TransactionSide.Buy));
+        positionService.processTransaction(new Transaction(3L, 1L, 3, "AAPL", 300, TransactionAction.UPDATE, TransactionSide.Buy));
+        assertEquals(100L, positionService.getPositions().get(0).getQuantity());
+
+        // Version 2 fills the gap; 3 and then 4 follow
+        positionService.processTransaction(new Transaction(2L, 1L, 2, "AAPL", 200, TransactionAction.UPDATE, TransactionSide.Buy));
+
+        Trade trade = positionService.getTrades().get(0);
+        assertEquals(4, trade.getCurrentVersion());
+        assertTrue(trade.getIsCancelled());
+        assertEquals(0L, positionService.getPositions().get(0).getQuantity());
+        assertEquals(0, positionService.getPendingCount());
+    }
+
+    @Test
+    void testStaleVersionIsIgnored() {
+        positionService.processTransaction(new Transaction(1L, 1L, 1, "AAPL", 100, TransactionAction.INSERT, TransactionSide.Buy));
+        positionService.processTransaction(new Transaction(2L, 1L, 2, "AAPL", 150, TransactionAction.UPDATE, TransactionSide.Buy));
+        positionService.processTransaction(new Transaction(3L, 1L, 2, "AAPL", 999, TransactionAction.UPDATE, TransactionSide.Sell));
+
+        assertEquals(150L, positionService.getPositions().get(0).getQuantity());
+        assertEquals(1, positionService.getStaleCount());
+    }
+
+    @Test
+    void testPendingTransactionsExpireAfterTtl() throws InterruptedException {
+        PositionService shortTtl = new PositionService(1, 10);
+        shortTtl.processTransaction(new Transaction(2L, 1L, 2, "AAPL", 150, TransactionAction.UPDATE, TransactionSide.Buy));
+        assertEquals(1, shortTtl.getPendingCount());
+
+        Thread.sleep(5);
+        shortTtl.expirePending();
+
+        assertEquals(0, shortTtl.getPendingCount());
+        assertEquals(1, shortTtl.getDroppedPendingCount());
+        shortTtl.processTransaction(new Transaction(1L, 1L, 1, "AAPL", 100, TransactionAction.INSERT, TransactionSide.Buy));
+        assertEquals(100L, shortTtl.getPositions().get(0).getQuantity());
+    }
+
+    @Test
+    void testSnapshotSeesStateAtTheMomentItBegan() {
+        positionService.processTransaction(new Transaction(1L, 1L, 1, "AAPL", 100, TransactionAction.INSERT, TransactionSide.Buy));
+        positionService.processTransaction(new Transaction(2L, 2L, 1, "MSFT", 50, TransactionAction.INSERT, TransactionSide.Sell));
+        positionService.processTransaction(new Transaction(3L, 3L, 1, "GOOG", 70, TransactionAction.INSERT, TransactionSide.Buy));
+        positionService.processTransaction(new Transaction(5L, 3L, 3, "GOOG", 90, TransactionAction.UPDATE, TransactionSide.Buy));
+
+        PositionService.EngineSnapshot snapshot = positionService.beginSnapshot();
+
+        // Writers carry on while the snapshot is open
+        positionService.processTransaction(new Transaction(6L, 1L, 2, "AAPL", 300, TransactionAction.UPDATE, TransactionSide.Buy));
+        positionService.deleteTrade(2L);
+        positionService.processTransaction(new Transaction(7L, 4L, 1, "TSLA", 10, TransactionAction.INSERT, TransactionSide.Buy));
+
+        Map<Long, Trade> captured = new HashMap<>();
+        snapshot.forEachTrade(trade -> captured.put(trade.getTradeId(), trade));
+        snapshot.close();
+
+        assertEquals(Map.of(
+            1L, new Trade(1L, 1, "AAPL", 100, TransactionSide.Buy, false),
+            2L, new Trade(2L, 1, "MSFT", 50, TransactionSide.Sell, false),
+            3L, new Trade(3L, 1, "GOOG", 70, TransactionSide.Buy, false)
+        ), captured);
+        assertEquals(1, snapshot.getPendingTransactions().size());
+
+        // Restoring the snapshot rebuilds positions from the trades and re-holds the early version
+        PositionService restored = new PositionService();
+        restored.restoreSnapshot(captured.values(), snapshot.getPositionCodes(), snapshot.getPendingTransactions());
+        restored.processTransaction(new Transaction(4L, 3L, 2, "GOOG", 80, TransactionAction.UPDATE, TransactionSide.Buy));
+
+        assertEquals(Optional.of(new Position("AAPL", 100L)), restored.getPositionBySecurityCode("AAPL"));
+        assertEquals(Optional.of(new Position("MSFT", -50L)), restored.getPositionBySecurityCode("MSFT"));
+        assertEquals(Optional.of(new Position("GOOG", 90L)), restored.getPositionBySecurityCode("GOOG"));
+        assertEquals(Optional.empty(), restored.getPositionBySecurityCode("TSLA"));
+    }
+
+    @Test
+    void testTradesSurviveHeavyInsertAndDeleteChurn() {
+        // Given - a reference of what each trade should be, kept alongside the engine
+        Random random = new Random(7);
+        Map<Long, Trade> expected = new HashMap<>();
+        long transactionId = 0;
+
+        // When - trades are inserted, updated and deleted at random over a small ID range
+        for (int i = 0; i < 50_000; i++) {
+            long tradeId = random.nextInt(5_000);
+            Trade current = expected.get(tradeId);
+            if (current != null && random.nextInt(3) == 0) {
+                positionService.deleteTrade(tradeId);
+                expected.remove(tradeId);
+            } else {
+                int version = current == null ? 1 : current.getCurrentVersion() + 1;
+                TransactionAction action = current == null ? TransactionAction.INSERT : TransactionAction.UPDATE;
+                String securityCode = "SEC" + random.nextInt(20);
+                int quantity = random.nextInt(1_000);
+                TransactionSide side = random.nextBoolean() ? TransactionSide.Buy : TransactionSide.Sell;
+                positionService.processTransaction(new Transaction(++transactionId, tradeId, version, securityCode,
+                        quantity, action, side));
+                expected.put(tradeId, new Trade(tradeId, version, securityCode, quantity, side, false));
+            }
+        }
+
+        // Then
+        assertEquals(expected.size(), positionService.getTradeCount());
+        for (Trade trade : expected.values()) {
+            assertEquals(Optional.of(trade), positionService.getTradeById(trade.getTradeId()));
+        }
+        Map<String, Long> positions = new HashMap<>();
+        expected.values().forEach(trade -> positions.merge(trade.getSecurityCode(),
+                trade.getSide() == TransactionSide.Buy ? (long) trade.getQuantity() : -trade.getQuantity(), Long::sum));
+        positions.forEach((securityCode, quantity) ->
+                assertEquals(Optional.of(new Position(securityCode, quantity)), positionService.getPositionBySecurityCode(securityCode)));
+    }
+
+    @Test
+    void testTradeStoreStaysUnderFortyBytesPerTrade() {
+        // Given / When - enough trades that fixed per-segment overhead does not matter
+        for (int size : new int[] {100_000, 150_000, 200_000}) {
+            positionService.clear();
+            List<Transaction> transactions = new ArrayList<>(size);
+            for (long tradeId = 1; tradeId <= size; tradeId++) {
+                transactions.add(new Transaction(tradeId, tradeId, 1, "SEC" + tradeId % 1_000, 100,
+                        TransactionAction.INSERT, TransactionSide.Buy));
+            }
+            positionService.processTransactions(transactions);
+
+            // Then
+            double bytesPerTrade = (double) positionService.getTradeStoreBytes() / size;
+            assertTrue(bytesPerTrade < 40, size + " trades take " + bytesPerTrade + " bytes each");
+        }
+    }
+
+    /**
+     * Random inserts, updates, cancels and deletions over a small set of trades and securities
+     */
+    private static void applyRandomWorkload(PositionService engine, long seed) {
+        Random random = new Random(seed);
+        Map<Long, Integer> versions = new HashMap<>();
+        long transactionId = 0;
+        for (int i = 0; i < 20_000; i++) {
+            long tradeId = random.nextInt(2_000);
+            Integer version = versions.get(tradeId);
+            if (version != null && random.nextInt(10) == 0) {
+                engine.deleteTrade(tradeId);
+                versions.remove(tradeId);
+                continue;
+            }
+            int next = version == null ? 1 : version + 1;
+            TransactionAction action = version == null ? TransactionAction.INSERT
+                    : random.nextInt(8) == 0 ? TransactionAction.CANCEL : TransactionAction.UPDATE;
+            engine.processTransaction(new Transaction(++transactionId, tradeId, next, "SEC" + random.nextInt(5_000),
+                    random.nextInt(1_000), action, random.nextBoolean() ? TransactionSide.Buy : TransactionSide.Sell));
+            versions.put(tradeId, next);
+        }
+        engine.deletePosition("SEC1");
+    }
+
+    private static List<Trade> sortedTrades(PositionService engine) {
+        List<Trade> trades = engine.getTrades();
+        trades.sort(Comparator.comparing(Trade::getTradeId));
+        return trades;
+    }
+
+    private static List<Position> sortedPositions(PositionService engine) {
+        List<Position> positions = engine.getPositions();
+        positions.sort(Comparator.comparing(Position::getSecurityCode));
+        return positions;
+    }
+
+    @Test
+    void testOffHeapStorageMatchesHeap() {
+        // Given
+        PositionService offHeap = new PositionService(new SymbolTable(), PositionService.Storage.OFF_HEAP, null, 60_000L, 100_000);
+
+        // When
+        applyRandomWorkload(positionService, 11);
+        applyRandomWorkload(offHeap, 11);
+
+        // Then
+        assertEquals(sortedTrades(positionService), sortedTrades(offHeap));
+        assertEquals(sortedPositions(positionService), sortedPositions(offHeap));
+        assertEquals(positionService.getSecurityCount(), offHeap.getSecurityCount());
+        assertEquals(Optional.empty(), offHeap.getPositionBySecurityCode("SEC1"));
+
+        offHeap.clear();
+        assertEquals(0, offHeap.getTradeCount());
+        assertTrue(offHeap.getPositions().isEmpty());
+    }
+
+    @Test
+    void testMappedStorageResumesFromCheckpoint(@TempDir Path directory) {
+        // Given - a mapped engine shut down cleanly at journal offset 1000
+        PositionService first = new PositionService(new SymbolTable(), PositionService.Storage.OFF_HEAP, directory, 60_000L, 100_000);
+        applyRandomWorkload(first, 13);
+        List<Trade> trades = sortedTrades(first);
+        List<Position> positions = sortedPositions(first);
+        assertTrue(first.checkpoint(1000));
+        first.close();
+
+        // When
+        PositionService resumed = new PositionService(new SymbolTable(), PositionService.Storage.OFF_HEAP, directory, 60_000L, 100_000);
+
+        // Then - nothing is taken up against a journal shorter than the checkpoint
+        assertEquals(OptionalLong.empty(), resumed.resume(999));
+        assertEquals(OptionalLong.of(1000), resumed.resume(1000));
+        assertEquals(trades, sortedTrades(resumed));
+        assertEquals(positions, sortedPositions(resumed));
+
+        // And it carries on from there
+        resumed.processTransaction(new Transaction(100_000L, 99_999L, 1, "NEW", 10, TransactionAction.INSERT, TransactionSide.Buy));
+        assertEquals(Optional.of(new Position("NEW", 10L)), resumed.getPositionBySecurityCode("NEW"));
+        resumed.close();
+
+        // When - it stops without a checkpoint, as in a crash
+        PositionService afterCrash = new PositionService(new SymbolTable(), PositionService.Storage.OFF_HEAP, directory, 60_000L, 100_000);
+
+        // Then
+        assertEquals(OptionalLong.empty(), afterCrash.resume(Long.MAX_VALUE));
+        afterCrash.clear();
+        assertEquals(0, afterCrash.getTradeCount());
+        assertTrue(afterCrash.getPositions().isEmpty());
+        afterCrash.close();
+    }
 }
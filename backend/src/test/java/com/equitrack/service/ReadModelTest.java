@@ -0,0 +1,120 @@
+package com.equitrack.service;
+
+import com.equitrack.model.Position;
+import com.equitrack.model.Trade;
+import com.equitrack.model.Transaction;
+import com.equitrack.model.TransactionAction;
+import com.equitrack.model.TransactionSide;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class ReadModelTest {
+
+    @Autowired
+    private ReadModel readModel;
+
+    @Autowired
+    private PositionManager positionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        positionManager.clear();
+        positionManager.processTransactions(List.of(
+            new Transaction(1L, 1L, 1, "REL", 50, TransactionAction.INSERT, TransactionSide.Buy),
+            new Transaction(2L, 2L, 1, "ITC", 40, TransactionAction.INSERT, TransactionSide.Sell)
+        ));
+    }
+
+    @Test
+    void testUnchangedReadsReuseTheCachedView() throws Exception {
+        // Given
+        ReadModel.View<Position> first = readModel.getPositions();
+
+        // When
+        ReadModel.View<Position> second = readModel.getPositions();
+
+        // Then
+        assertSame(first, second);
+        assertSame(first.getJson(), second.getJson());
+        assertEquals(positionManager.getPositions(), first.getItems());
+        assertArrayEquals(objectMapper.writeValueAsBytes(positionManager.getPositions()), first.getJson());
+    }
+
+    @Test
+    void testChangesAreMergedIntoANewVersion() {
+        // Given
+        ReadModel.View<Position> positions = readModel.getPositions();
+        ReadModel.View<Trade> trades = readModel.getTrades();
+
+        // When
+        positionManager.processTransaction(new Transaction(3L, 1L, 2, "REL", 60, TransactionAction.UPDATE, TransactionSide.Buy));
+        positionManager.processTransaction(new Transaction(4L, 3L, 1, "INF", 70, TransactionAction.INSERT, TransactionSide.Buy));
+        positionManager.deleteTrade(2L);
+        positionManager.deletePosition("ITC");
+
+        // Then
+        ReadModel.View<Position> updatedPositions = readModel.getPositions();
+        ReadModel.View<Trade> updatedTrades = readModel.getTrades();
+        assertTrue(updatedPositions.getVersion() > positions.getVersion());
+        assertTrue(updatedTrades.getVersion() > trades.getVersion());
+        assertNotEquals(positions.getETag(), updatedPositions.getETag());
+        assertEquals(List.of(new Position("INF", 70L), new Position("REL", 60L)), updatedPositions.getItems());
+        assertEquals(positionManager.getTrades(), updatedTrades.getItems());
+        assertEquals(List.of(1L, 3L), updatedTrades.getItems().stream().map(Trade::getTradeId).toList());
+    }
+
+    @Test
+    void testResetReloadsEverything() {
+        // Given
+        readModel.getTrades();
+
+        // When
+        positionManager.clear();
+
+        // Then
+        assertTrue(readModel.getTrades().getItems().isEmpty());
+        assertTrue(readModel.getPositions().getItems().isEmpty());
+    }
+
+    @Test
+    void testPollWithCurrentETagGetsNotModified() throws Exception {
+        // Given
+        String eTag = mockMvc.perform(get("/api/positions"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"securityCode\":\"ITC\",\"quantity\":-40},{\"securityCode\":\"REL\",\"quantity\":50}]"))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotNull(eTag);
+
+        // When / Then - unchanged
+        mockMvc.perform(get("/api/positions").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", eTag));
+
+        // When / Then - changed
+        positionManager.processTransaction(new Transaction(3L, 3L, 1, "INF", 70, TransactionAction.INSERT, TransactionSide.Buy));
+        mockMvc.perform(get("/api/positions").header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3));
+    }
+}
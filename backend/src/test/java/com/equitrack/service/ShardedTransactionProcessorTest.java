@@ -0,0 +1,102 @@
+package com.equitrack.service;
+
+import com.equitrack.model.Position;
+import com.equitrack.model.Transaction;
+import com.equitrack.model.TransactionAction;
+import com.equitrack.model.TransactionSide;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedTransactionProcessorTest {
+
+    private PositionService positionService;
+    private ShardedTransactionProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        positionService = new PositionService();
+        processor = new ShardedTransactionProcessor(positionService, 4, 2, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        processor.shutdown();
+    }
+
+    @Test
+    void testShardedReplayMatchesSequentialReplay() {
+        // Given - shuffled batch; ordering only holds per trade after sharding
+        Random random = new Random(11);
+        String[] securities = {"REL", "ITC", "INF", "TCS"};
+        List<Transaction> transactions = new ArrayList<>();
+        long transactionId = 1;
+        for (long tradeId = 1; tradeId <= 20_000; tradeId++) {
+            transactions.add(new Transaction(transactionId++, tradeId, 1, securities[random.nextInt(securities.length)],
+                    1 + random.nextInt(100), TransactionAction.INSERT, random.nextBoolean() ? TransactionSide.Buy : TransactionSide.Sell));
+            transactions.add(new Transaction(transactionId++, tradeId, 2, securities[random.nextInt(securities.length)],
+                    1 + random.nextInt(100), random.nextInt(3) == 0 ? TransactionAction.CANCEL : TransactionAction.UPDATE,
+                    random.nextBoolean() ? TransactionSide.Buy : TransactionSide.Sell));
+        }
+        Collections.shuffle(transactions, random);
+
+        PositionService expected = new PositionService();
+        expected.processTransactions(transactions);
+
+        // When
+        processor.processTransactions(transactions);
+
+        // Then
+        assertEquals(toMap(expected.getPositions()), toMap(positionService.getPositions()));
+        assertEquals(20_000, positionService.getTrades().size());
+
+        long processed = processor.getShardStats().stream()
+                .mapToLong(ShardedTransactionProcessor.ShardStats::getProcessed)
+                .sum();
+        assertEquals(transactions.size(), processed);
+        assertTrue(processor.getShardStats().stream().allMatch(stats -> stats.getProcessed() > 0));
+    }
+
+    @Test
+    void testFailedSliceStillReportsWhatWasApplied() {
+        // Given - one trade per transaction, one of them rejected by the engine
+        List<Transaction> transactions = new ArrayList<>();
+        for (long tradeId = 1; tradeId <= 200; tradeId++) {
+            transactions.add(new Transaction(tradeId, tradeId, 1, tradeId == 100 ? "X".repeat(300) : "REL",
+                    10, TransactionAction.INSERT, TransactionSide.Buy));
+        }
+        boolean[] applied = new boolean[transactions.size()];
+
+        // When
+        assertThrows(IllegalArgumentException.class, () -> processor.processTransactions(transactions, applied));
+
+        // Then - the flags match the engine once the failure is thrown
+        long appliedCount = 0;
+        for (int i = 0; i < transactions.size(); i++) {
+            assertEquals(applied[i], positionService.getTradeById(transactions.get(i).getTradeId()).isPresent());
+            appliedCount += applied[i] ? 1 : 0;
+        }
+        assertFalse(applied[99]);
+        assertEquals(appliedCount, positionService.getTradeCount());
+        assertEquals(Optional.of(new Position("REL", appliedCount * 10)), positionService.getPositionBySecurityCode("REL"));
+    }
+
+    @Test
+    void testTradeAlwaysMapsToSameShard() {
+        for (long tradeId = 1; tradeId <= 1_000; tradeId++) {
+            int shard = processor.shardFor(tradeId);
+            assertEquals(shard, processor.shardFor(tradeId));
+            assertTrue(shard >= 0 && shard < processor.getShardCount());
+        }
+    }
+
+    private Map<String, Long> toMap(List<Position> positions) {
+        Map<String, Long> map = new HashMap<>();
+        positions.forEach(p -> map.put(p.getSecurityCode(), p.getQuantity()));
+        return map;
+    }
+}
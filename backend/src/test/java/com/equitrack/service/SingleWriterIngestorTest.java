@@ -0,0 +1,85 @@
+package com.equitrack.service;
+
+import com.equitrack.model.Position;
+import com.equitrack.model.Transaction;
+import com.equitrack.model.TransactionAction;
+import com.equitrack.model.TransactionSide;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "equitrack.ingest.single-writer.enabled=true")
+@ActiveProfiles("test")
+public class SingleWriterIngestorTest {
+
+    @Autowired
+    private SingleWriterIngestor writer;
+
+    @Autowired
+    private PositionManager positionManager;
+
+    @BeforeEach
+    void setUp() {
+        positionManager.clear();
+    }
+
+    @Test
+    void testQueuedTransactionsShareCommits() throws Exception {
+        // Given
+        long commitsBefore = writer.getCommitCount();
+        List<CompletableFuture<Transaction>> futures = new ArrayList<>();
+
+        // When - submitted faster than one commit per transaction can keep up with
+        for (long id = 1; id <= 200; id++) {
+            futures.add(writer.submit(new Transaction(id, id, 1, id % 2 == 0 ? "REL" : "ITC", 10,
+                    TransactionAction.INSERT, TransactionSide.Buy)));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture<?>[]::new)).get(30, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(List.of(new Position("ITC", 1000L), new Position("REL", 1000L)), positionManager.getPositions());
+        assertEquals(200, positionManager.getTradeCount());
+        assertTrue(writer.getCommitCount() - commitsBefore < 200, "transactions should have been committed in groups");
+    }
+
+    @Test
+    void testFailedTransactionOnlyFailsItsOwnRequest() throws Exception {
+        // Given - a duplicate transaction ID queued between two good transactions
+        CompletableFuture<Transaction> first = writer.submit(
+                new Transaction(1L, 1L, 1, "REL", 50, TransactionAction.INSERT, TransactionSide.Buy));
+        CompletableFuture<Transaction> duplicate = writer.submit(
+                new Transaction(1L, 2L, 1, "REL", 70, TransactionAction.INSERT, TransactionSide.Buy));
+        CompletableFuture<Transaction> last = writer.submit(
+                new Transaction(3L, 3L, 1, "ITC", 30, TransactionAction.INSERT, TransactionSide.Sell));
+
+        // When
+        first.get(10, TimeUnit.SECONDS);
+        last.get(10, TimeUnit.SECONDS);
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> duplicate.get(10, TimeUnit.SECONDS));
+
+        // Then
+        assertInstanceOf(IllegalArgumentException.class, failure.getCause());
+        assertEquals(List.of(new Position("ITC", -30L), new Position("REL", 50L)), positionManager.getPositions());
+    }
+
+    @Test
+    void testCallersAreCompletedOffTheWriterThread() throws Exception {
+        // When
+        String thread = writer.submit(new Transaction(1L, 1L, 1, "REL", 50, TransactionAction.INSERT, TransactionSide.Buy))
+                .thenApply(processed -> Thread.currentThread().getName())
+                .get(10, TimeUnit.SECONDS);
+
+        // Then - dependent work such as building the response stays off the writer
+        assertNotEquals("equitrack-writer", thread);
+    }
+}
@@ -0,0 +1,91 @@
+package com.equitrack.service;
+
+import com.equitrack.model.Position;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "equitrack.ingest.chunk-size=2")
+@ActiveProfiles("test")
+public class StreamingIngestionServiceTest {
+
+    @Autowired
+    private StreamingIngestionService ingestionService;
+
+    @Autowired
+    private PositionManager positionManager;
+
+    @BeforeEach
+    void setUp() {
+        positionManager.clear();
+    }
+
+    private static InputStream body(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testNdjsonIngestion() throws Exception {
+        String ndjson = String.join("\n",
+                "{\"transactionId\":1,\"tradeId\":1,\"version\":1,\"securityCode\":\"REL\",\"quantity\":50,\"action\":\"INSERT\",\"side\":\"Buy\"}",
+                "{\"transactionId\":2,\"tradeId\":2,\"version\":1,\"securityCode\":\"ITC\",\"quantity\":40,\"action\":\"INSERT\",\"side\":\"Sell\"}",
+                "{\"transactionId\":3,\"tradeId\":1,\"version\":2,\"securityCode\":\"REL\",\"quantity\":60,\"action\":\"UPDATE\",\"side\":\"Buy\"}",
+                "{\"transactionId\":4,\"tradeId\":3,\"version\":1,\"securityCode\":\"INF\",\"quantity\":70,\"action\":\"INSERT\",\"side\":\"Buy\"}",
+                "");
+
+        StreamingIngestionService.IngestionSummary summary =
+                ingestionService.ingest(body(ndjson), StreamingIngestionService.Format.JSON);
+
+        assertTrue(summary.isCompleted());
+        assertEquals(4, summary.getReceived());
+        assertEquals(4, summary.getProcessed());
+        assertEquals(0, summary.getRejected());
+        assertEquals(60L, positionManager.getPositionBySecurityCode("REL").map(Position::getQuantity).orElse(null));
+        assertEquals(-40L, positionManager.getPositionBySecurityCode("ITC").map(Position::getQuantity).orElse(null));
+        assertEquals(70L, positionManager.getPositionBySecurityCode("INF").map(Position::getQuantity).orElse(null));
+    }
+
+    @Test
+    void testCsvIngestionIsolatesRejects() throws Exception {
+        String csv = String.join("\n",
+                "transactionId,tradeId,version,securityCode,quantity,action,side",
+                "1,1,1,REL,50,INSERT,Buy",
+                "2,2,1,ITC,abc,INSERT,Sell",
+                "3,3,1,INF,70,INSERT,Buy",
+                "1,4,1,REL,10,INSERT,Buy",
+                "4,5,1,REL,-5,INSERT,Buy",
+                "");
+
+        StreamingIngestionService.IngestionSummary summary =
+                ingestionService.ingest(body(csv), StreamingIngestionService.Format.CSV);
+
+        // Line 3 fails to parse, line 5 duplicates a transaction ID, line 6 fails validation
+        assertEquals(5, summary.getReceived());
+        assertEquals(2, summary.getProcessed());
+        assertEquals(3, summary.getRejected());
+        assertEquals(3, summary.getErrors().size());
+        assertTrue(summary.getErrors().get(2).startsWith("Line 5: Transaction 1"), summary.getErrors().get(2));
+        assertEquals(50L, positionManager.getPositionBySecurityCode("REL").map(Position::getQuantity).orElse(null));
+        assertEquals(70L, positionManager.getPositionBySecurityCode("INF").map(Position::getQuantity).orElse(null));
+    }
+
+    @Test
+    void testMalformedJsonStopsIngestion() throws Exception {
+        String ndjson = "{\"transactionId\":1,\"tradeId\":1,\"version\":1,\"securityCode\":\"REL\",\"quantity\":50,\"action\":\"INSERT\",\"side\":\"Buy\"}\n{\"transactionId\":2,";
+
+        StreamingIngestionService.IngestionSummary summary =
+                ingestionService.ingest(body(ndjson), StreamingIngestionService.Format.JSON);
+
+        assertFalse(summary.isCompleted());
+        assertEquals(1, summary.getProcessed());
+        assertEquals(1, summary.getRejected());
+    }
+}
@@ -0,0 +1,80 @@
+package com.equitrack.service;
+
+import com.equitrack.model.Transaction;
+import com.equitrack.model.TransactionAction;
+import com.equitrack.model.TransactionSide;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VersionChainCacheTest {
+
+    @Test
+    void testChainsDecodeToTheVersionsAppended() {
+        // Given - a trade whose versions change security, quantity, side and action
+        VersionChainCache cache = new VersionChainCache(1 << 20);
+        List<Transaction> versions = new ArrayList<>();
+        versions.add(new Transaction(Long.MAX_VALUE - 5, 7L, 1, "REL", 100, TransactionAction.INSERT, TransactionSide.Buy));
+        versions.add(new Transaction(3L, 7L, 2, "REL", 40, TransactionAction.UPDATE, TransactionSide.Buy));
+        versions.add(new Transaction(9L, 7L, 3, "ITC", 40, TransactionAction.UPDATE, TransactionSide.Sell));
+        versions.add(new Transaction(12L, 7L, 3, "REL", -1, TransactionAction.INSERT, TransactionSide.Sell));
+
+        // When - loaded from the database, then extended by a commit
+        cache.load(7L, versions, cache.stamp(7L));
+        Transaction cancel = new Transaction(20L, 7L, 4, "REL", 40, TransactionAction.CANCEL, TransactionSide.Buy);
+        cache.append(cancel);
+        versions.add(cancel);
+
+        // Then
+        assertEquals(Optional.of(versions), cache.history(7L));
+        assertEquals(Optional.of(cancel), cache.latest(7L));
+        assertEquals(Optional.empty(), cache.history(8L));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void testOutOfOrderVersionsAndRacingLoadsAreNotCached() {
+        // Given
+        VersionChainCache cache = new VersionChainCache(1 << 20);
+        List<Transaction> versions = List.of(
+                new Transaction(1L, 1L, 1, "REL", 10, TransactionAction.INSERT, TransactionSide.Buy),
+                new Transaction(2L, 1L, 2, "REL", 20, TransactionAction.UPDATE, TransactionSide.Buy));
+        cache.load(1L, versions, cache.stamp(1L));
+
+        // When / Then - the latest version again is ignored, an older one drops the chain
+        cache.append(versions.get(1));
+        assertEquals(Optional.of(versions), cache.history(1L));
+        cache.append(new Transaction(3L, 1L, 1, "REL", 5, TransactionAction.INSERT, TransactionSide.Buy));
+        assertEquals(Optional.empty(), cache.history(1L));
+
+        // When / Then - a commit between taking the stamp and loading keeps the load out
+        long stamp = cache.stamp(1L);
+        cache.append(new Transaction(4L, 1L, 3, "REL", 30, TransactionAction.UPDATE, TransactionSide.Buy));
+        cache.load(1L, versions, stamp);
+        assertEquals(0, cache.getTradeCount());
+    }
+
+    @Test
+    void testLeastRecentlyUsedChainsAreEvicted() {
+        // Given - room for a few chains only
+        VersionChainCache cache = new VersionChainCache(1_000);
+        for (long tradeId = 1; tradeId <= 20; tradeId++) {
+            cache.load(tradeId, List.of(new Transaction(tradeId, tradeId, 1, "REL", 10,
+                    TransactionAction.INSERT, TransactionSide.Buy)), cache.stamp(tradeId));
+            // Keep trade 1 in use
+            cache.latest(1L);
+        }
+
+        // Then
+        assertTrue(cache.getBytes() <= 1_000);
+        assertTrue(cache.getEvictions() > 0);
+        assertTrue(cache.latest(1L).isPresent());
+        assertTrue(cache.latest(20L).isPresent());
+        assertTrue(cache.latest(2L).isEmpty());
+    }
+}
@@ -65,8 +65,8 @@ function App() {
   const handleTransactionSubmit = async (transaction: any) => {
     setLoading(true);
     try {
-      const response = await apiService.addTransaction(transaction);
-      setPositions(response.positions);
+      // Positions arrive through the position stream
+      await apiService.addTransaction(transaction, false);
       
       // Refresh trades data to show the new trade
       const tradesData = await apiService.getTrades();
@@ -114,6 +114,23 @@ function App() {
     fetchData();
   }, []);
 
+  useEffect(() => {
+    let lastSequence = -1;
+    return apiService.subscribePositions((kind, update) => {
+      if (kind === 'snapshot') {
+        setPositions(update.positions);
+      } else if (update.sequence > lastSequence) {
+        setPositions(current => {
+          const bySecurity = new Map(current.map(position => [position.securityCode, position]));
+          update.removed.forEach(securityCode => bySecurity.delete(securityCode));
+          update.positions.forEach(position => bySecurity.set(position.securityCode, position));
+          return Array.from(bySecurity.values()).sort((a, b) => a.securityCode.localeCompare(b.securityCode));
+        });
+      }
+      lastSequence = update.sequence;
+    });
+  }, []);
+
   const menuItems = [
     {
       key: 'dashboard',
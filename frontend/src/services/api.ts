@@ -1,5 +1,5 @@
 import axios from 'axios';
-import { Transaction, Position, Trade } from '../types';
+import { Transaction, Position, PositionUpdate, Trade } from '../types';
 
 const API_BASE_URL = process.env.REACT_APP_API_URL || 'http://localhost:3001/api';
 
@@ -24,16 +24,28 @@ export const apiService = {
   },
 
   // Transactions
-  addTransaction: async (transaction: Omit<Transaction, 'transactionId'>): Promise<{ transaction: Transaction; positions: Position[] }> => {
-    const response = await api.post('/transactions', transaction);
+  // Positions are omitted from the response when includePositions is false; use subscribePositions instead
+  addTransaction: async (transaction: Omit<Transaction, 'transactionId'>, includePositions = true): Promise<{ transaction: Transaction; positions?: Position[] }> => {
+    const response = await api.post('/transactions', transaction, { params: { includePositions } });
     return response.data;
   },
 
-  addBulkTransactions: async (transactions: Omit<Transaction, 'transactionId'>[]): Promise<{ positions: Position[] }> => {
-    const response = await api.post('/transactions/bulk', transactions);
+  addBulkTransactions: async (transactions: Omit<Transaction, 'transactionId'>[], includePositions = true): Promise<{ positions?: Position[] }> => {
+    const response = await api.post('/transactions/bulk', transactions, { params: { includePositions } });
     return response.data;
   },
 
+  // Position push: a snapshot on connect (or resync after falling behind), then conflated deltas;
+  // returns a function that closes the stream
+  subscribePositions: (onUpdate: (kind: 'snapshot' | 'delta', update: PositionUpdate) => void, maxRate?: number): (() => void) => {
+    const query = maxRate ? `?maxRate=${maxRate}` : '';
+    const source = new EventSource(`${API_BASE_URL}/positions/stream${query}`);
+    source.addEventListener('snapshot', (event) => onUpdate('snapshot', JSON.parse((event as MessageEvent).data)));
+    source.addEventListener('resync', (event) => onUpdate('snapshot', JSON.parse((event as MessageEvent).data)));
+    source.addEventListener('delta', (event) => onUpdate('delta', JSON.parse((event as MessageEvent).data)));
+    return () => source.close();
+  },
+
   // Data management
   resetData: async (): Promise<void> => {
     await api.post('/reset');
@@ -13,6 +13,12 @@ export interface Position {
   quantity: number;
 }
 
+export interface PositionUpdate {
+  sequence: number;
+  positions: Position[];
+  removed: string[];
+}
+
 export interface Trade {
   tradeId: number;
   currentVersion: number;